@@ -11,6 +11,8 @@ public class Arguments {
     public String inFilePath =
         "data" + File.separator + "pubchem1000000clean_10k_result.txt";
     public String graphgPath = "Outputs" + File.separator + "G.txt";
+    public String matchStorePath = "Outputs" + File.separator + "G.bin";
+    public Boolean exportTextMatches = true;
     public String TEDPath = "Outputs" + File.separator + "TED.txt";
     public String resultPath = null;
     public String queryFile = "data" + File.separator + "query.txt";
@@ -43,6 +45,11 @@ public class Arguments {
     public List<Integer> IDs = null;
     public Boolean verbose = true;
     public Boolean isRerun = false;
+    public MatchMode matchMode = MatchMode.EXISTS;
+    public SearchBudget budget = SearchBudget.defaults();
+    public SearchScheduler scheduler = SearchScheduler.defaults();
+    // receives partial top-k updates while mining runs; null to disable
+    public SuggestionListener suggestionListener = null;
 
     public String outputDir = "Outputs";
 
@@ -135,6 +142,8 @@ public class Arguments {
                 this.outputDir = args[6];
 
                 this.graphgPath = this.outputDir + File.separator + "G.txt";
+                this.matchStorePath =
+                    this.outputDir + File.separator + "G.bin";
                 this.TEDPath = this.outputDir + File.separator + "TED.txt";
                 this.candidateFilePath =
                     this.outputDir + File.separator + "candidate.txt";
@@ -148,7 +157,7 @@ public class Arguments {
             if (args.length > 7 && args[7].equalsIgnoreCase("reuse")) {
                 this.isRerun = true;
                 System.out.println(
-                    "Enable reuse mode: only check the last matching graph in G.txt"
+                    "Enable reuse mode: only check the graphs matched by the last query"
                 );
             } else {
                 this.isRerun = false;
@@ -156,6 +165,36 @@ public class Arguments {
                     "Reuse mode disabled: will search entire database"
                 );
             }
+
+            if (args.length > 8) {
+                try {
+                    this.matchMode = MatchMode.parse(args[8]);
+                } catch (IllegalArgumentException e) {
+                    System.err.println(
+                        e.getMessage() + ", using default: " + this.matchMode
+                    );
+                }
+            }
+
+            if (args.length > 9) {
+                try {
+                    this.budget = SearchBudget.parse(args[9]);
+                } catch (IllegalArgumentException e) {
+                    System.err.println(
+                        e.getMessage() + ", using default: " + this.budget
+                    );
+                }
+            }
+
+            if (args.length > 10) {
+                try {
+                    this.scheduler = SearchScheduler.parse(args[10]);
+                } catch (IllegalArgumentException e) {
+                    System.err.println(
+                        e.getMessage() + ", using default: " + this.scheduler
+                    );
+                }
+            }
         }
 
         printConfigurationSummary();
@@ -212,6 +251,15 @@ public class Arguments {
             "  7. <output_dir>     - Output directory (default: Outputs)"
         );
         System.out.println("  8. <reuse_mode>     - reuse (optional)");
+        System.out.println(
+            "  9. <match_mode>     - exists|first:K|count:CAP (default: exists)"
+        );
+        System.out.println(
+            " 10. <budget>         - e.g. 500ms, 2s, tasks:N or 2s,tasks:N (default: 600s,tasks:500000)"
+        );
+        System.out.println(
+            " 11. <scheduler>      - bfs|dfs|best|beam:B, optionally ,frontier:N (default: bfs,frontier:20000000)"
+        );
         System.out.println("\nExamples:");
         System.out.println("  # Basic usage");
         System.out.println(
@@ -259,7 +307,7 @@ public class Arguments {
     public void setIDs(List<Integer> IDs) {
         this.IDs = IDs;
 
-        this.gl = IDs.stream().mapToLong(Integer::longValue).toArray();
+        this.gl = IDs.stream().mapToLong(Integer::longValue).sorted().toArray();
     }
 
     public Boolean getIsRerun() {
@@ -0,0 +1,134 @@
+package QACMain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.TreeSet;
+import model.EdgeSet;
+
+/**
+ * Edge coverage of the current top-k patterns, kept up to date per Insert
+ * and Delete in time proportional to the edges of the changed pattern.
+ *
+ * For every edge the index keeps how many patterns cover it and the XOR of
+ * their slots, so when the count drops to one the remaining owner is known
+ * without a per-edge set. A pattern's loss score is the number of edges
+ * only it covers; patterns are ordered by (loss score, slot), so the
+ * cheapest pattern to swap out is always the first one.
+ */
+public class CoverageIndex {
+
+    private final ArrayList<EdgeSet> patterns = new ArrayList<EdgeSet>();
+    private final EdgeSet covered = new EdgeSet();
+    private int[] refCounts = new int[0];
+    private int[] owners = new int[0];
+    private int[] lossScores = new int[0];
+    // (loss score << 32 | slot) of every occupied slot
+    private final TreeSet<Long> byLoss = new TreeSet<Long>();
+
+    /**
+     * Put a pattern into slot, replacing the one there.
+     */
+    public void add(int slot, EdgeSet edges) {
+        if (slot < patterns.size() && patterns.get(slot) != null) {
+            remove(slot);
+        }
+        while (patterns.size() <= slot) {
+            patterns.add(null);
+        }
+        if (slot >= lossScores.length) {
+            lossScores = Arrays.copyOf(
+                lossScores,
+                Math.max(slot + 1, lossScores.length * 2)
+            );
+        }
+        patterns.set(slot, edges);
+
+        int own = 0;
+        for (int e = edges.next(0); e >= 0; e = edges.next(e + 1)) {
+            if (e >= refCounts.length) {
+                int length = Math.max(e + 1, refCounts.length * 2);
+                refCounts = Arrays.copyOf(refCounts, length);
+                owners = Arrays.copyOf(owners, length);
+            }
+            int count = ++refCounts[e];
+            owners[e] ^= slot;
+            if (count == 1) {
+                covered.add(e);
+                own++;
+            } else if (count == 2) {
+                int other = owners[e] ^ slot;
+                setLossScore(other, lossScores[other] - 1);
+            }
+        }
+        lossScores[slot] = own;
+        byLoss.add(key(own, slot));
+    }
+
+    /**
+     * Empty a slot; edges only it covered become uncovered.
+     */
+    public void remove(int slot) {
+        EdgeSet edges = slot < patterns.size() ? patterns.get(slot) : null;
+        if (edges == null) {
+            return;
+        }
+        byLoss.remove(key(lossScores[slot], slot));
+        patterns.set(slot, null);
+        lossScores[slot] = 0;
+
+        for (int e = edges.next(0); e >= 0; e = edges.next(e + 1)) {
+            int count = --refCounts[e];
+            owners[e] ^= slot;
+            if (count == 0) {
+                covered.remove(e);
+            } else if (count == 1) {
+                int owner = owners[e];
+                setLossScore(owner, lossScores[owner] + 1);
+            }
+        }
+    }
+
+    private void setLossScore(int slot, int score) {
+        byLoss.remove(key(lossScores[slot], slot));
+        lossScores[slot] = score;
+        byLoss.add(key(score, slot));
+    }
+
+    private static long key(int score, int slot) {
+        return ((long) score << 32) | slot;
+    }
+
+    /** Edges covered by the pattern in slot, or null when it is empty. */
+    public EdgeSet edges(int slot) {
+        return slot < patterns.size() ? patterns.get(slot) : null;
+    }
+
+    /** Union of the edges of all patterns; do not modify. */
+    public EdgeSet covered() {
+        return covered;
+    }
+
+    public boolean isCovered(int edge) {
+        return covered.contains(edge);
+    }
+
+    /** Edges lost if the pattern in slot were dropped. */
+    public int lossScore(int slot) {
+        return lossScores[slot];
+    }
+
+    /**
+     * @return the occupied slot with the smallest loss score (the lowest
+     *         slot on ties), or -1 when all slots are empty
+     */
+    public int minimumSlot() {
+        return byLoss.isEmpty() ? -1 : (int) (long) byLoss.first();
+    }
+
+    /**
+     * @return the smallest loss score, or -1 when all slots are empty
+     */
+    public int minimumScore() {
+        return byLoss.isEmpty() ? -1 : (int) (byLoss.first() >>> 32);
+    }
+}
@@ -0,0 +1,389 @@
+package QACMain;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import model.CSRGraph;
+import model.GraphTextParser;
+
+/**
+ * Immutable in-memory graph database shared by the VF2 stage and the mining
+ * stage. The gSpan text file is parsed once into CSR graphs; both stages read
+ * from the same instance instead of parsing the file again.
+ */
+public class GraphDatabase {
+
+    private static final Map<String, GraphDatabase> loaded =
+        new ConcurrentHashMap<>();
+
+    private final String path;
+    private final long lastModified;
+    private final long length;
+    // parsed graphs, or null when the graphs are decoded from file
+    private final CSRGraph[] graphs;
+    private final GraphDatabaseFile file;
+    // graphs decoded from file, dropped by the collector when memory runs low
+    private final SoftReference<CSRGraph>[] decoded;
+    private final long[] ids;
+    private final boolean idsSorted;
+    private volatile Map<Integer, Long> labelFrequency;
+    private volatile int[] labels;
+
+    GraphDatabase(
+        String path,
+        long lastModified,
+        long length,
+        CSRGraph[] graphs,
+        long[] ids
+    ) {
+        this.path = path;
+        this.lastModified = lastModified;
+        this.length = length;
+        this.graphs = graphs;
+        this.file = null;
+        this.decoded = null;
+        this.ids = ids;
+        this.idsSorted = isSorted(ids);
+    }
+
+    GraphDatabase(
+        String path,
+        long lastModified,
+        long length,
+        GraphDatabaseFile file
+    ) {
+        this.path = path;
+        this.lastModified = lastModified;
+        this.length = length;
+        this.graphs = null;
+        this.file = file;
+        this.decoded = newReferences(file.size());
+        this.ids = file.ids();
+        this.idsSorted = isSorted(ids);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SoftReference<CSRGraph>[] newReferences(int size) {
+        return (SoftReference<CSRGraph>[]) new SoftReference<?>[size];
+    }
+
+    private static boolean isSorted(long[] ids) {
+
+        boolean sorted = true;
+        for (int i = 1; i < ids.length && sorted; i++) {
+            sorted = ids[i - 1] < ids[i];
+        }
+        return sorted;
+    }
+
+    /**
+     * Return the database for a file, parsing it only if this JVM has not
+     * loaded the same unchanged file before. A fresh binary sibling
+     * (file + ".gdb") is mapped instead of parsing the text; otherwise the
+     * text is parsed and the binary form is written for the next process.
+     */
+    public static GraphDatabase load(String filePath) throws IOException {
+        File file = new File(filePath);
+        String key = file.getCanonicalPath();
+
+        GraphDatabase cached = loaded.get(key);
+        if (
+            cached != null &&
+            cached.lastModified == file.lastModified() &&
+            cached.length == file.length()
+        ) {
+            return cached;
+        }
+
+        File binary = new File(filePath + GraphDatabaseFile.EXTENSION);
+        GraphDatabase database = openBinary(filePath, file, binary);
+        if (database == null) {
+            database = read(filePath);
+            try {
+                GraphDatabaseFile.write(
+                    database,
+                    binary.getPath(),
+                    database.length,
+                    database.lastModified
+                );
+            } catch (IOException e) {
+                System.err.println(
+                    "Could not write " + binary + ": " + e.getMessage()
+                );
+            }
+        }
+        loaded.put(key, database);
+        return database;
+    }
+
+    private static GraphDatabase openBinary(
+        String filePath,
+        File file,
+        File binary
+    ) {
+        if (!binary.exists()) {
+            return null;
+        }
+        try {
+            GraphDatabaseFile mapped = GraphDatabaseFile.open(binary.getPath());
+            if (!mapped.isFreshFor(file)) {
+                mapped.close();
+                return null;
+            }
+            return new GraphDatabase(
+                filePath,
+                file.lastModified(),
+                file.length(),
+                mapped
+            );
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println(
+                "Ignoring unreadable " + binary + ": " + e.getMessage()
+            );
+            return null;
+        }
+    }
+
+    /**
+     * Parse a file without consulting or filling the shared cache. Used for
+     * small per-request inputs such as the query file.
+     */
+    public static GraphDatabase read(String filePath) throws IOException {
+        File file = new File(filePath);
+        long lastModified = file.lastModified();
+        long length = file.length();
+
+        Loader loader = new Loader();
+        GraphTextParser.parse(filePath, loader);
+
+        return new GraphDatabase(
+            filePath,
+            lastModified,
+            length,
+            loader.finish(),
+            Arrays.copyOf(loader.ids, loader.graphs.size())
+        );
+    }
+
+    private static class Loader implements GraphTextParser.Handler {
+
+        private final List<CSRGraph> graphs = new ArrayList<>();
+        private long[] ids = new long[1024];
+        private final CSRGraph.Builder builder = new CSRGraph.Builder(false);
+        private boolean inGraph = false;
+
+        @Override
+        public void graph(long id) {
+            if (inGraph) {
+                graphs.add(builder.build());
+            }
+            if (graphs.size() == ids.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+            }
+            ids[graphs.size()] = id == GraphTextParser.NO_ID
+                ? graphs.size()
+                : id;
+            builder.clear();
+            inGraph = true;
+        }
+
+        @Override
+        public void vertex(int id, int label) {
+            builder.addVertex(label);
+        }
+
+        @Override
+        public void edge(int from, int to, int eLabel) {
+            if (!builder.addEdge(from, to, eLabel)) {
+                System.out.println(
+                    "Format Error:  define vertex lists before edges"
+                );
+            }
+        }
+
+        CSRGraph[] finish() {
+            // a trailing "t # -1" only terminates the file
+            if (inGraph && !builder.isEmpty()) {
+                graphs.add(builder.build());
+            }
+            return graphs.toArray(new CSRGraph[0]);
+        }
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Distinct vertex and edge labels of the database, ascending. Taken
+     * from the dictionaries of a mapped file, otherwise collected once.
+     */
+    public int[] labels() {
+        int[] result = labels;
+        if (result == null) {
+            Set<Integer> distinct = new HashSet<>();
+            if (file != null) {
+                for (int label : file.vertexLabels()) {
+                    distinct.add(label);
+                }
+                for (int label : file.edgeLabels()) {
+                    distinct.add(label);
+                }
+            } else {
+                for (CSRGraph graph : graphs) {
+                    for (int v = 0; v < graph.size(); v++) {
+                        distinct.add(graph.label(v));
+                    }
+                    for (int s = 0; s < graph.slotCount(); s++) {
+                        distinct.add(graph.edgeLabel(s));
+                    }
+                }
+            }
+            result = new int[distinct.size()];
+            int i = 0;
+            for (int label : distinct) {
+                result[i++] = label;
+            }
+            Arrays.sort(result);
+            labels = result;
+        }
+        return result;
+    }
+
+    /**
+     * Number of vertices carrying a label over the whole database. Taken
+     * from the dictionary of a mapped file, otherwise counted once.
+     */
+    public long labelFrequency(int label) {
+        Map<Integer, Long> frequency = labelFrequency;
+        if (frequency == null) {
+            frequency = new HashMap<>();
+            if (file != null) {
+                int[] labels = file.vertexLabels();
+                long[] counts = file.vertexLabelCounts();
+                for (int i = 0; i < labels.length; i++) {
+                    frequency.put(labels[i], counts[i]);
+                }
+            } else {
+                for (CSRGraph graph : graphs) {
+                    for (int v = 0; v < graph.size(); v++) {
+                        frequency.merge(graph.label(v), 1L, Long::sum);
+                    }
+                }
+            }
+            labelFrequency = frequency;
+        }
+        return frequency.getOrDefault(label, 0L);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Graph at index. Graphs of a mapped file are decoded on use and only
+     * softly cached, so a database shared across requests does not end up
+     * on the heap as a whole; callers that need a graph for longer keep
+     * their own reference.
+     */
+    public CSRGraph graph(int index) {
+        if (graphs != null) {
+            return graphs[index];
+        }
+        SoftReference<CSRGraph> reference = decoded[index];
+        CSRGraph graph = reference == null ? null : reference.get();
+        if (graph == null) {
+            graph = file.decode(index);
+            decoded[index] = new SoftReference<>(graph);
+        }
+        return graph;
+    }
+
+    /**
+     * @return the id declared on the "t # id" line of the graph at index
+     */
+    public long graphId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * @return the index of the graph declared with this id, or -1
+     */
+    public int indexOf(long id) {
+        if (idsSorted) {
+            int index = Arrays.binarySearch(ids, id);
+            return index >= 0 ? index : -1;
+        }
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Indexes of the graphs declared with the given ids, ascending and
+     * without duplicates; ids not in the database are skipped. When the
+     * declared ids are sorted the cost follows the number of ids, otherwise
+     * every declared id is looked up once.
+     */
+    public int[] resolve(long[] selectedIds) {
+        if (idsSorted) {
+            int[] indexes = new int[selectedIds.length];
+            int count = 0;
+            for (long id : selectedIds) {
+                int index = indexOf(id);
+                if (index >= 0) {
+                    indexes[count++] = index;
+                }
+            }
+            Arrays.sort(indexes, 0, count);
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (unique == 0 || indexes[i] != indexes[unique - 1]) {
+                    indexes[unique++] = indexes[i];
+                }
+            }
+            return Arrays.copyOf(indexes, unique);
+        }
+
+        long[] wanted = selectedIds.clone();
+        Arrays.sort(wanted);
+        int[] indexes = new int[Math.min(wanted.length, ids.length)];
+        int count = 0;
+        for (int i = 0; i < ids.length && count < indexes.length; i++) {
+            if (Arrays.binarySearch(wanted, ids[i]) >= 0) {
+                indexes[count++] = i;
+            }
+        }
+        return Arrays.copyOf(indexes, count);
+    }
+
+    /**
+     * Graphs for the given ids, in database order; the i-th graph is the one
+     * at resolve(selectedIds)[i]. Only the selected graphs are decoded.
+     */
+    public List<CSRGraph> select(long[] selectedIds) {
+        int[] indexes = resolve(selectedIds);
+        List<CSRGraph> result = new ArrayList<>(indexes.length);
+        for (int index : indexes) {
+            result.add(graph(index));
+        }
+        return result;
+    }
+}
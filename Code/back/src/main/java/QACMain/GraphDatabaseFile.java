@@ -0,0 +1,368 @@
+package QACMain;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import model.CSRGraph;
+
+/**
+ * Memory-mapped binary form of a GraphDatabase.
+ *
+ * Layout (big endian):
+ *   header     magic, version, source length, source mtime, graph count,
+ *              vertex label count, edge label count, flags
+ *   dictionary (label, frequency) for vertex labels, then for edge labels
+ *   ids        long[graphCount] declared "t # id" of every graph
+ *   offsets    long[graphCount + 1] file offset of every graph block
+ *   blocks     per graph: vertex count, slot count, edge count, then
+ *              vertex label codes, CSR offsets, targets, edge label codes
+ *              and edge ids as int arrays
+ *
+ * Opening a file only reads the header, dictionaries and tables; a graph is
+ * decoded from the mapping the first time it is requested. The source
+ * length and mtime let a reader detect that the text file changed.
+ */
+public class GraphDatabaseFile {
+
+    public static final String EXTENSION = ".gdb";
+
+    private static final int MAGIC = 0x47444246; // "GDBF"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 4 + 4 + 4 + 4;
+    private static final int FLAG_DIRECTED = 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer mapped;
+    private final long sourceLength;
+    private final long sourceModified;
+    private final boolean directed;
+    private final int[] vertexLabels;
+    private final long[] vertexLabelCounts;
+    private final int[] edgeLabels;
+    private final long[] edgeLabelCounts;
+    private final long[] ids;
+    private final long[] blockOffsets;
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("args[0]: Graph file (gSpan text format)");
+            System.out.println(
+                "args[1]: (optional) output file (default: <graph file>" +
+                EXTENSION +
+                ")"
+            );
+            System.exit(1);
+        }
+
+        String output = args.length > 1 ? args[1] : args[0] + EXTENSION;
+        try {
+            long start = System.currentTimeMillis();
+            File source = new File(args[0]);
+            GraphDatabase database = GraphDatabase.read(args[0]);
+            write(database, output, source.length(), source.lastModified());
+            System.out.println(
+                "Converted " +
+                database.size() +
+                " graphs to " +
+                output +
+                " in " +
+                (System.currentTimeMillis() - start) +
+                " ms"
+            );
+        } catch (IOException e) {
+            System.err.println("Error converting graph file: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private GraphDatabaseFile(FileChannel channel, MappedByteBuffer mapped) {
+        this.channel = channel;
+        this.mapped = mapped;
+
+        ByteBuffer buffer = mapped.duplicate();
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IllegalArgumentException("not a graph database file");
+        }
+        sourceLength = buffer.getLong();
+        sourceModified = buffer.getLong();
+        int graphCount = buffer.getInt();
+        int vertexLabelCount = buffer.getInt();
+        int edgeLabelCount = buffer.getInt();
+        directed = (buffer.getInt() & FLAG_DIRECTED) != 0;
+
+        vertexLabels = new int[vertexLabelCount];
+        vertexLabelCounts = new long[vertexLabelCount];
+        for (int i = 0; i < vertexLabelCount; i++) {
+            vertexLabels[i] = buffer.getInt();
+            vertexLabelCounts[i] = buffer.getLong();
+        }
+        edgeLabels = new int[edgeLabelCount];
+        edgeLabelCounts = new long[edgeLabelCount];
+        for (int i = 0; i < edgeLabelCount; i++) {
+            edgeLabels[i] = buffer.getInt();
+            edgeLabelCounts[i] = buffer.getLong();
+        }
+
+        ids = new long[graphCount];
+        buffer.asLongBuffer().get(ids);
+        buffer.position(buffer.position() + graphCount * 8);
+        blockOffsets = new long[graphCount + 1];
+        buffer.asLongBuffer().get(blockOffsets);
+    }
+
+    /**
+     * Map a binary database file; only the tables are read eagerly.
+     */
+    public static GraphDatabaseFile open(String path) throws IOException {
+        FileChannel channel = FileChannel.open(
+            new File(path).toPath(),
+            StandardOpenOption.READ
+        );
+        try {
+            long size = channel.size();
+            MappedByteBuffer mapped = channel.map(
+                FileChannel.MapMode.READ_ONLY,
+                0,
+                Math.min(size, Integer.MAX_VALUE)
+            );
+            return new GraphDatabaseFile(channel, mapped);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e instanceof IOException
+                ? (IOException) e
+                : new IOException(path + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return true when this file was converted from the given text file as
+     *         it is now
+     */
+    public boolean isFreshFor(File source) {
+        return (
+            source.length() == sourceLength &&
+            source.lastModified() == sourceModified
+        );
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public long[] ids() {
+        return ids;
+    }
+
+    public int[] vertexLabels() {
+        return vertexLabels;
+    }
+
+    public long[] vertexLabelCounts() {
+        return vertexLabelCounts;
+    }
+
+    public int[] edgeLabels() {
+        return edgeLabels;
+    }
+
+    public long[] edgeLabelCounts() {
+        return edgeLabelCounts;
+    }
+
+    /**
+     * Decode the graph at index from the mapping.
+     */
+    public CSRGraph decode(int index) {
+        ByteBuffer block = block(index);
+        int n = block.getInt();
+        int slots = block.getInt();
+        int edgeSize = block.getInt();
+
+        IntBuffer ints = block.asIntBuffer();
+        int[] labels = new int[n];
+        int[] offsets = new int[n + 1];
+        int[] targets = new int[slots];
+        int[] eLabels = new int[slots];
+        int[] edgeIds = new int[slots];
+        ints.get(labels).get(offsets).get(targets).get(eLabels).get(edgeIds);
+
+        for (int v = 0; v < n; v++) {
+            labels[v] = vertexLabels[labels[v]];
+        }
+        for (int s = 0; s < slots; s++) {
+            eLabels[s] = edgeLabels[eLabels[s]];
+        }
+
+        return new CSRGraph(
+            labels,
+            offsets,
+            targets,
+            eLabels,
+            edgeIds,
+            edgeSize,
+            directed
+        );
+    }
+
+    private ByteBuffer block(int index) {
+        long start = blockOffsets[index];
+        long end = blockOffsets[index + 1];
+        try {
+            if (end <= mapped.capacity()) {
+                ByteBuffer buffer = mapped.duplicate();
+                buffer.position((int) start);
+                buffer.limit((int) end);
+                return buffer.slice();
+            }
+            // beyond the first 2 GiB window: map just this block
+            return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException e) {
+            throw new IllegalStateException(
+                "Cannot map graph " + index + ": " + e.getMessage(),
+                e
+            );
+        }
+    }
+
+    /**
+     * Write the binary form of a database. The file is written next to the
+     * target and renamed into place, so concurrent readers never see a
+     * partial file.
+     */
+    public static void write(
+        GraphDatabase database,
+        String path,
+        long sourceLength,
+        long sourceModified
+    ) throws IOException {
+        int graphCount = database.size();
+        Map<Integer, Long> vertexFrequency = new TreeMap<>();
+        Map<Integer, Long> edgeFrequency = new TreeMap<>();
+        boolean directed = false;
+
+        for (int i = 0; i < graphCount; i++) {
+            CSRGraph graph = database.graph(i);
+            directed |= graph.isDirected();
+            for (int v = 0; v < graph.size(); v++) {
+                vertexFrequency.merge(graph.label(v), 1L, Long::sum);
+                for (int s = graph.begin(v); s < graph.end(v); s++) {
+                    if (graph.isDirected() || v <= graph.target(s)) {
+                        edgeFrequency.merge(graph.edgeLabel(s), 1L, Long::sum);
+                    }
+                }
+            }
+        }
+        Map<Integer, Integer> vertexCode = codes(vertexFrequency);
+        Map<Integer, Integer> edgeCode = codes(edgeFrequency);
+
+        long position =
+            HEADER_BYTES +
+            12L * (vertexFrequency.size() + edgeFrequency.size()) +
+            8L * graphCount +
+            8L * (graphCount + 1);
+        long[] blockOffsets = new long[graphCount + 1];
+        for (int i = 0; i < graphCount; i++) {
+            CSRGraph graph = database.graph(i);
+            blockOffsets[i] = position;
+            position += 12L + 4L * (2 * graph.size() + 1 + 3 * graph.slotCount());
+        }
+        blockOffsets[graphCount] = position;
+
+        File target = new File(path);
+        File temp = new File(path + ".tmp" + System.nanoTime());
+        try (
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp), 1 << 16)
+            )
+        ) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceLength);
+            out.writeLong(sourceModified);
+            out.writeInt(graphCount);
+            out.writeInt(vertexFrequency.size());
+            out.writeInt(edgeFrequency.size());
+            out.writeInt(directed ? FLAG_DIRECTED : 0);
+
+            for (Map.Entry<Integer, Long> entry : vertexFrequency.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+            for (Map.Entry<Integer, Long> entry : edgeFrequency.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+            for (int i = 0; i < graphCount; i++) {
+                out.writeLong(database.graphId(i));
+            }
+            for (long offset : blockOffsets) {
+                out.writeLong(offset);
+            }
+
+            for (int i = 0; i < graphCount; i++) {
+                CSRGraph graph = database.graph(i);
+                int n = graph.size();
+                out.writeInt(n);
+                out.writeInt(graph.slotCount());
+                out.writeInt(graph.edgeSize());
+                for (int v = 0; v < n; v++) {
+                    out.writeInt(vertexCode.get(graph.label(v)));
+                }
+                for (int v = 0; v <= n; v++) {
+                    out.writeInt(v < n ? graph.begin(v) : graph.slotCount());
+                }
+                for (int s = 0; s < graph.slotCount(); s++) {
+                    out.writeInt(graph.target(s));
+                }
+                for (int s = 0; s < graph.slotCount(); s++) {
+                    out.writeInt(edgeCode.get(graph.edgeLabel(s)));
+                }
+                for (int s = 0; s < graph.slotCount(); s++) {
+                    out.writeInt(graph.edgeId(s));
+                }
+            }
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+
+        try {
+            Files.move(
+                temp.toPath(),
+                target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE
+            );
+        } catch (IOException e) {
+            Files.move(
+                temp.toPath(),
+                target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING
+            );
+        }
+    }
+
+    private static Map<Integer, Integer> codes(Map<Integer, Long> frequency) {
+        Map<Integer, Integer> codes = new HashMap<>();
+        for (Integer label : frequency.keySet()) {
+            codes.put(label, codes.size());
+        }
+        return codes;
+    }
+}
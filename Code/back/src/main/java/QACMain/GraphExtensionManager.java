@@ -6,11 +6,11 @@ import model.*;
 
 public class GraphExtensionManager {
 
-    private final ArrayList<Graph> database;
+    private final ArrayList<CSRGraph> database;
     private final Arguments arguments;
 
     public GraphExtensionManager(
-        ArrayList<Graph> database,
+        ArrayList<CSRGraph> database,
         Arguments arguments
     ) {
         this.database = database;
@@ -44,13 +44,15 @@ public class GraphExtensionManager {
         int processedGraphs = 0;
         int totalMatches = 0;
 
-        for (Graph dbGraph : database) {
+        for (CSRGraph compactGraph : database) {
             processedGraphs++;
 
             if (
-                dbGraph.size() >= queryGraph.size() &&
-                dbGraph.size() <= targetSize
+                compactGraph.size() >= queryGraph.size() &&
+                compactGraph.size() <= targetSize
             ) {
+                // only the graphs VF2 runs on are materialized, one at a time
+                Graph dbGraph = compactGraph.toGraph();
                 List<Map<Integer, Integer>> allMatches = findAllVF2Matches(
                     queryGraph,
                     dbGraph
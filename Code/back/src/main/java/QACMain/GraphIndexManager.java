@@ -3,6 +3,7 @@ package QACMain;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -15,17 +16,19 @@ import java.util.TreeSet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import model.CSRGraph;
 import model.DFS;
 import model.DFSCode;
 import model.Edge;
+import model.EdgeNumbering;
+import model.EdgeSet;
 import model.Graph;
-import model.PDFS;
 import model.Projected;
 import model.Vertex;
 
 public class GraphIndexManager {
 
-    private final ArrayList<Graph> TRANS;
+    private final ArrayList<CSRGraph> TRANS;
     private Arguments arg;
 
     private Map<String, Set<Integer>> vertexLabelIndex = new HashMap<>();
@@ -62,36 +65,80 @@ public class GraphIndexManager {
     private ExecutorService executor;
     private final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
 
-    private HashMap<Integer, Set<Integer>> CoveredEdges_OriginalGraphs;
-    private Set<Integer> allCoveredEdges;
-    private ArrayList<Set<Integer>> CoveredEdges_EachPattern;
-    private ArrayList<Integer> Priv_pattern;
-    private HashMap<Integer, Set<Integer>> Rcov_edge;
-    private Integer numberofcovered;
-    private Integer minimumpattern_score;
-    private Integer minimumpattern_id;
-    private HashMap<Integer, Set<Integer>> Rpriv_i;
+    // covered edges are numbered by edgeNumbering(), see EdgeNumbering
+    private EdgeNumbering edgeNumbering;
+    private final CoverageIndex coverage;
 
-    private HashMap<Long, Set<Integer>> CoveredEdges_patterns;
-    private HashMap<Integer, Set<Integer>> PatternsID_edges;
-
-    public GraphIndexManager(ArrayList<Graph> TRANS, Arguments arg) {
+    public GraphIndexManager(ArrayList<CSRGraph> TRANS, Arguments arg) {
         this.TRANS = TRANS;
         this.arg = arg;
         this.executor = Executors.newFixedThreadPool(THREAD_COUNT);
 
         this.duplicateDetector = new GraphDuplicateDetector();
 
-        this.allCoveredEdges = new HashSet<Integer>();
-        this.CoveredEdges_OriginalGraphs = new HashMap<Integer, Set<Integer>>();
-        this.Priv_pattern = new ArrayList<Integer>();
-        this.Rcov_edge = new HashMap<Integer, Set<Integer>>();
-        this.numberofcovered = 0;
-        this.minimumpattern_score = -1;
-        this.Rpriv_i = new HashMap<Integer, Set<Integer>>();
-        this.CoveredEdges_EachPattern = new ArrayList<Set<Integer>>();
-        this.CoveredEdges_patterns = new HashMap<Long, Set<Integer>>();
-        this.PatternsID_edges = new HashMap<Integer, Set<Integer>>();
+        this.coverage = new CoverageIndex();
+    }
+
+    /**
+     * Numbering of the edges of TRANS, built once TRANS is loaded.
+     */
+    public EdgeNumbering edgeNumbering() {
+        if (
+            edgeNumbering == null ||
+            edgeNumbering.graphCount() != TRANS.size()
+        ) {
+            edgeNumbering = new EdgeNumbering(TRANS);
+        }
+        return edgeNumbering;
+    }
+
+    /**
+     * @return the number of edge edgeId of TRANS graph graphIndex
+     */
+    public int edgeId(int graphIndex, int edgeId) {
+        return edgeNumbering().edge(graphIndex, edgeId);
+    }
+
+    /**
+     * Edges covered by the embeddings of projected.
+     */
+    public EdgeSet coveredEdges(Projected projected) {
+        EdgeNumbering numbering = edgeNumbering();
+        EdgeSet covered = new EdgeSet();
+        for (int row = 0; row < projected.size(); row++) {
+            addEmbeddingEdges(numbering, projected, row, covered);
+        }
+        return covered;
+    }
+
+    /**
+     * Add the edges of the embedding in row, following its parent rows up
+     * to the first edge of the pattern.
+     */
+    private void addEmbeddingEdges(
+        EdgeNumbering numbering,
+        Projected projected,
+        int row,
+        EdgeSet edges
+    ) {
+        int id = projected.id(row);
+        CSRGraph graph = TRANS.get(id);
+        for (Projected table = projected; row >= 0; ) {
+            edges.add(numbering.edge(id, graph.edgeId(table.slot(row))));
+            row = table.parentRow(row);
+            table = table.parent();
+        }
+    }
+
+    /**
+     * @return how many edges of TRANS graph graphIndex are covered
+     */
+    public int coveredEdgeCount(int graphIndex) {
+        EdgeNumbering numbering = edgeNumbering();
+        return coverage.covered().count(
+            numbering.start(graphIndex),
+            numbering.end(graphIndex)
+        );
     }
 
     public Map<String, Set<Integer>> buildVertexLabelIndex(List<Graph> graphs) {
@@ -125,20 +172,15 @@ public class GraphIndexManager {
     }
 
     public int DynamicSupportSetting() {
-        int loss_score_min = this.minimumpattern_score;
+        int loss_score_min = getMinimumpattern_score();
         List<Integer> list = new ArrayList<Integer>();
 
         for (int id = 0; id < TRANS.size(); ++id) {
             int count = 0;
-            for (int nid = 0; nid < TRANS.get(id).size(); ++nid) {
-                for (Edge e : TRANS.get(id).get(nid).edge) {
-                    Integer edgeid = id * 1000 + e.id;
-                    if (
-                        this.Rcov_edge.get(edgeid) == null ||
-                        this.Rcov_edge.get(edgeid).size() == 0
-                    ) continue;
-                    count++;
-                }
+            CSRGraph graph = TRANS.get(id);
+            for (int s = 0; s < graph.slotCount(); ++s) {
+                if (!coverage.isCovered(edgeId(id, graph.edgeId(s)))) continue;
+                count++;
             }
             list.add(count);
         }
@@ -161,17 +203,15 @@ public class GraphIndexManager {
     }
 
     public int DynamicSupportSetting2() {
-        int loss_score_min = this.minimumpattern_score;
+        int loss_score_min = getMinimumpattern_score();
         List<Integer> list = new ArrayList<Integer>();
 
         for (int id = 0; id < TRANS.size(); ++id) {
             int count = 0;
-            for (int nid = 0; nid < TRANS.get(id).size(); ++nid) {
-                for (Edge e : TRANS.get(id).get(nid).edge) {
-                    Integer edgeid = id * 1000 + e.id;
-                    if (this.allCoveredEdges.contains(edgeid)) continue;
-                    count++;
-                }
+            CSRGraph graph = TRANS.get(id);
+            for (int s = 0; s < graph.slotCount(); ++s) {
+                if (coverage.isCovered(edgeId(id, graph.edgeId(s)))) continue;
+                count++;
             }
             list.add(count);
         }
@@ -193,56 +233,81 @@ public class GraphIndexManager {
         return ans;
     }
 
+    /**
+     * Uncovered edges of the graphs the embeddings of projected lie in. No
+     * extension of the pattern covers other new edges, so while the top-k
+     * stays as it is this bounds the benefit score of the pattern and of
+     * its whole subtree.
+     */
+    public int benefitBound(Projected projected) {
+        return benefitBound(graphIds(projected));
+    }
+
+    /**
+     * Uncovered edges of the given TRANS graphs, see
+     * {@link #benefitBound(Projected)}. Only this part reads the coverage.
+     */
+    public int benefitBound(int[] graphIds) {
+        int bound = 0;
+        for (int id : graphIds) {
+            bound += this.TRANS.get(id).edgeSize() - coveredEdgeCount(id);
+        }
+        return bound;
+    }
+
+    /**
+     * @return the distinct TRANS graph ids of the embeddings of projected,
+     *         ascending; needs no lock
+     */
+    public int[] graphIds(Projected projected) {
+        BitSet seen = new BitSet(this.TRANS.size());
+        int oid = -1;
+        for (int row = 0; row < projected.size(); row++) {
+            int id = projected.id(row);
+            // rows of one graph are usually adjacent
+            if (id != oid) {
+                seen.set(id);
+                oid = id;
+            }
+        }
+        int[] ids = new int[seen.cardinality()];
+        for (int i = 0, id = seen.nextSetBit(0); id >= 0; ++i) {
+            ids[i] = id;
+            id = seen.nextSetBit(id + 1);
+        }
+        return ids;
+    }
+
+    /**
+     * @return true when a pattern with a benefit score of at most bound
+     *         cannot replace the minimum pattern under the swap condition
+     */
+    public boolean isBelowSwapThreshold(long bound) {
+        if (arg.swapcondition.equals("swap1")) {
+            return bound <= 2 * getMinimumpattern_score();
+        } else if (arg.swapcondition.equals("swap2")) {
+            return (
+                bound <=
+                getMinimumpattern_score() +
+                (coverage.covered().size() * 1.0) / arg.numberofpatterns
+            );
+        } else {
+            return (
+                bound <=
+                (1 + arg.swapAlpha) * getMinimumpattern_score() +
+                (1 - arg.swapAlpha) *
+                ((coverage.covered().size() * 1.0) / arg.numberofpatterns)
+            );
+        }
+    }
+
     public Boolean BranchAndBound(
         Projected projected_g,
         Projected projected_g2,
         Boolean hasupdated
     ) {
         if (hasupdated) {
-            int maximum_benefit = 0;
-            Set<Integer> temp = new HashSet<Integer>();
-            for (PDFS aProjected : projected_g2) {
-                int id = aProjected.id;
-                if (temp.contains(id) == false) {
-                    int size = this.TRANS.get(id).getEdgeSize();
-                    int count = 0;
-                    for (int i = 0; i < size; i++) {
-                        Integer edgeid = 1000 * id + i;
-                        if (
-                            CoveredEdges_OriginalGraphs.get(id) != null &&
-                            CoveredEdges_OriginalGraphs.get(id).contains(edgeid)
-                        ) count++;
-                    }
-                    maximum_benefit = maximum_benefit + size - count;
-
-                    if (arg.swapcondition.equals("swap1")) {
-                        if (maximum_benefit > 2 * minimumpattern_score) {
-                            return false;
-                        }
-                    } else if (arg.swapcondition.equals("swap2")) {
-                        if (
-                            maximum_benefit >
-                            minimumpattern_score +
-                            (this.allCoveredEdges.size() * 1.0) /
-                            arg.numberofpatterns
-                        ) {
-                            return false;
-                        }
-                    } else {
-                        if (
-                            maximum_benefit >
-                            (1 + arg.swapAlpha) * minimumpattern_score +
-                            (1 - arg.swapAlpha) *
-                            ((this.allCoveredEdges.size() * 1.0) /
-                                arg.numberofpatterns)
-                        ) {
-                            return false;
-                        }
-                    }
-                    temp.add(id);
-                }
-            }
-            return true;
+            return isBelowSwapThreshold(benefitBound(projected_g2));
         } else {
             return performComplexBranchAndBound(projected_g, projected_g2);
         }
@@ -252,45 +317,8 @@ public class GraphIndexManager {
         Projected projected_g,
         Projected projected_g2
     ) {
-        if (true) {
-            int maximum_benefit = 0;
-            Set<Integer> temp = new HashSet<Integer>();
-            for (PDFS aProjected : projected_g2) {
-                int id = aProjected.id;
-                if (temp.contains(id) == false) {
-                    int size = this.TRANS.get(id).getEdgeSize();
-                    int count = 0;
-                    for (int i = 0; i < size; i++) {
-                        Integer edgeid = 1000 * id + i;
-                        if (this.allCoveredEdges.contains(edgeid)) count++;
-                    }
-                    maximum_benefit = maximum_benefit + size - count;
-                    temp.add(id);
-                }
-            }
-
-            if (arg.swapcondition.equals("swap1")) {
-                if (maximum_benefit <= 2 * minimumpattern_score) {
-                    return true;
-                }
-            } else if (arg.swapcondition.equals("swap2")) {
-                if (
-                    maximum_benefit <=
-                    minimumpattern_score +
-                    (this.allCoveredEdges.size() * 1.0) / arg.numberofpatterns
-                ) {
-                    return true;
-                }
-            } else {
-                if (
-                    maximum_benefit <=
-                    (1 + arg.swapAlpha) * minimumpattern_score +
-                    (1 - arg.swapAlpha) *
-                    ((this.allCoveredEdges.size() * 1.0) / arg.numberofpatterns)
-                ) {
-                    return true;
-                }
-            }
+        if (isBelowSwapThreshold(benefitBound(projected_g2))) {
+            return true;
         }
 
         return performDetailedBranchAndBound(projected_g, projected_g2);
@@ -302,72 +330,33 @@ public class GraphIndexManager {
     ) {
         int maximum_benefit = 0;
         int totaledges = 0;
+        EdgeNumbering numbering = edgeNumbering();
         Set<Integer> graphIDs = new HashSet<Integer>();
-        Set<Integer> Cov_g = new HashSet<Integer>();
-        Set<Integer> Cov_g2 = new HashSet<Integer>();
-        Set<Integer> Cov_i = new HashSet<Integer>();
-
-        for (PDFS aProjected : projected_g2) {
-            int id = aProjected.id;
-            for (PDFS p = aProjected; p != null; p = p.prev) {
-                Integer temp = 1000 * id + p.edge.id;
-                Cov_g2.add(temp);
-            }
-            graphIDs.add(id);
-        }
+        EdgeSet Cov_g = new EdgeSet();
+        EdgeSet Cov_g2 = coveredEdges(projected_g2);
 
-        for (PDFS aProjected : projected_g) {
-            int id = aProjected.id;
-            if (graphIDs.contains(id) == false) continue;
-            for (PDFS p = aProjected; p != null; p = p.prev) {
-                Integer temp = 1000 * id + p.edge.id;
-                Cov_g.add(temp);
-            }
+        for (int row = 0; row < projected_g2.size(); row++) {
+            graphIDs.add(projected_g2.id(row));
         }
 
-        for (int id : graphIDs) {
-            totaledges += this.TRANS.get(id).getEdgeSize();
-            for (int e : allCoveredEdges) if (
-                e >= 1000 * id && e < 1000 * (id + 1)
-            ) Cov_i.add(e);
+        for (int row = 0; row < projected_g.size(); row++) {
+            if (graphIDs.contains(projected_g.id(row)) == false) continue;
+            addEmbeddingEdges(numbering, projected_g, row, Cov_g);
         }
 
-        Set<Integer> Cov_diff = new HashSet<Integer>();
-        for (Integer e : Cov_g) {
-            if (Cov_g2.contains(e) == false && Cov_i.contains(e) == false) {
-                Cov_diff.add(e);
-            }
+        // |Cov_i| + |Cov_g \ Cov_g2 \ Cov_i|, Cov_i being the covered edges
+        // of these graphs; covered() has no others inside them
+        int coveredInGraphs = 0;
+        for (int id : graphIDs) {
+            totaledges += this.TRANS.get(id).edgeSize();
+            coveredInGraphs += coveredEdgeCount(id);
         }
+        Cov_g2.addAll(coverage.covered());
+        int unionSize = coveredInGraphs + Cov_g.countNotIn(Cov_g2);
 
-        Set<Integer> Cov_union = Cov_i;
-        Cov_union.addAll(Cov_diff);
-
-        maximum_benefit = totaledges - Cov_union.size();
+        maximum_benefit = totaledges - unionSize;
 
-        if (arg.swapcondition.equals("swap1")) {
-            if (maximum_benefit > 2 * minimumpattern_score) {
-                return false;
-            }
-        } else if (arg.swapcondition.equals("swap2")) {
-            if (
-                maximum_benefit >
-                minimumpattern_score +
-                (this.allCoveredEdges.size() * 1.0) / arg.numberofpatterns
-            ) {
-                return false;
-            }
-        } else {
-            if (
-                maximum_benefit >
-                (1 + arg.swapAlpha) * minimumpattern_score +
-                (1 - arg.swapAlpha) *
-                ((this.allCoveredEdges.size() * 1.0) / arg.numberofpatterns)
-            ) {
-                return false;
-            }
-        }
-
-        return true;
+        return isBelowSwapThreshold(maximum_benefit);
     }
 
     public void processBatches(List<Graph> allGraphs) throws IOException {
@@ -724,59 +713,23 @@ public class GraphIndexManager {
         duplicateDetector.clearCaches();
     }
 
-    public HashMap<Integer, Set<Integer>> getCoveredEdges_OriginalGraphs() {
-        return CoveredEdges_OriginalGraphs;
-    }
-
-    public Set<Integer> getAllCoveredEdges() {
-        return allCoveredEdges;
-    }
-
-    public ArrayList<Set<Integer>> getCoveredEdges_EachPattern() {
-        return CoveredEdges_EachPattern;
-    }
-
-    public ArrayList<Integer> getPriv_pattern() {
-        return Priv_pattern;
-    }
-
-    public HashMap<Integer, Set<Integer>> getRcov_edge() {
-        return Rcov_edge;
-    }
-
-    public Integer getNumberofcovered() {
-        return numberofcovered;
-    }
-
-    public void setNumberofcovered(Integer numberofcovered) {
-        this.numberofcovered = numberofcovered;
-    }
-
-    public Integer getMinimumpattern_score() {
-        return minimumpattern_score;
-    }
-
-    public void setMinimumpattern_score(Integer minimumpattern_score) {
-        this.minimumpattern_score = minimumpattern_score;
-    }
-
-    public Integer getMinimumpattern_id() {
-        return minimumpattern_id;
+    public CoverageIndex getCoverage() {
+        return coverage;
     }
 
-    public void setMinimumpattern_id(Integer minimumpattern_id) {
-        this.minimumpattern_id = minimumpattern_id;
+    public EdgeSet getAllCoveredEdges() {
+        return coverage.covered();
     }
 
-    public HashMap<Integer, Set<Integer>> getRpriv_i() {
-        return Rpriv_i;
+    public int getNumberofcovered() {
+        return coverage.covered().size();
     }
 
-    public HashMap<Long, Set<Integer>> getCoveredEdges_patterns() {
-        return CoveredEdges_patterns;
+    public int getMinimumpattern_score() {
+        return coverage.minimumScore();
     }
 
-    public HashMap<Integer, Set<Integer>> getPatternsID_edges() {
-        return PatternsID_edges;
+    public int getMinimumpattern_id() {
+        return coverage.minimumSlot();
     }
 }
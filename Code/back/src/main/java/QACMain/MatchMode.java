@@ -0,0 +1,108 @@
+package QACMain;
+
+/**
+ * How many embeddings the VF2 stage looks for in each candidate graph.
+ *
+ *   exists     stop at the first embedding (default)
+ *   first:K    keep up to K embeddings, in search order
+ *   count:CAP  count embeddings up to CAP, keeping only the first
+ *
+ * Every mode writes the first embedding of a matched graph, so the graph
+ * ids written by the VF2 stage do not depend on the mode.
+ */
+public final class MatchMode {
+
+    public enum Kind {
+        EXISTS,
+        FIRST_K,
+        COUNT,
+    }
+
+    public static final MatchMode EXISTS = new MatchMode(Kind.EXISTS, 1);
+
+    private final Kind kind;
+    private final int limit;
+
+    private MatchMode(Kind kind, int limit) {
+        this.kind = kind;
+        this.limit = limit;
+    }
+
+    public static MatchMode firstK(int k) {
+        return k <= 1 ? EXISTS : new MatchMode(Kind.FIRST_K, k);
+    }
+
+    public static MatchMode count(int cap) {
+        return new MatchMode(Kind.COUNT, Math.max(cap, 1));
+    }
+
+    static MatchMode of(Kind kind, int limit) {
+        switch (kind) {
+            case FIRST_K:
+                return firstK(limit);
+            case COUNT:
+                return count(limit);
+            default:
+                return EXISTS;
+        }
+    }
+
+    /**
+     * Parse "exists", "first:K" or "count:CAP"; "count" alone counts up to
+     * Integer.MAX_VALUE.
+     *
+     * @throws IllegalArgumentException for any other value
+     */
+    public static MatchMode parse(String value) {
+        String text = value.trim().toLowerCase();
+        int colon = text.indexOf(':');
+        String name = colon < 0 ? text : text.substring(0, colon);
+        String number = colon < 0 ? null : text.substring(colon + 1).trim();
+        try {
+            switch (name) {
+                case "exists":
+                    if (number == null) return EXISTS;
+                    break;
+                case "first":
+                    return firstK(number == null ? 1 : Integer.parseInt(number));
+                case "count":
+                    return count(
+                        number == null
+                            ? Integer.MAX_VALUE
+                            : Integer.parseInt(number)
+                    );
+                default:
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid match mode: " + value);
+    }
+
+    public Kind kind() {
+        return kind;
+    }
+
+    /** Stop searching a graph after this many embeddings. */
+    public int limit() {
+        return limit;
+    }
+
+    /** Number of embeddings kept per graph; the rest are only counted. */
+    public int keep() {
+        return kind == Kind.FIRST_K ? limit : 1;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case FIRST_K:
+                return "first:" + limit;
+            case COUNT:
+                return "count:" + limit;
+            default:
+                return "exists";
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package QACMain;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import model.CSRGraph;
+
+/**
+ * Embeddings of one query found by the VF2 stage. The mining stage reads
+ * its graph ids and mappings from here, and the next, slightly larger query
+ * extends them instead of searching again; G.txt is only a text export.
+ *
+ * Layout (big endian):
+ *   header      magic, version, database length, database mtime, mode kind,
+ *               mode limit, query vertex count, query edge count, graph
+ *               count, embedding row count
+ *   query       vertex labels, then (from, to, label) per edge
+ *   graphs      graph ids, embedding totals and row offsets (count + 1)
+ *   embeddings  one row of query vertex count ints per kept embedding
+ *
+ * Rows are read straight from the mapped file. A store written or read by
+ * this JVM is kept in memory and handed out again by {@link #load} while
+ * the file is unchanged, so the stages of one run share one instance.
+ */
+public class MatchStore {
+
+    private static final int MAGIC = 0x474d4154; // "GMAT"
+    private static final int VERSION = 1;
+
+    private static final Map<String, MatchStore> shared =
+        new ConcurrentHashMap<>();
+
+    private final long sourceLength;
+    private final long sourceModified;
+    private final MatchMode mode;
+    private final CSRGraph query;
+    private final int[] graphIds;
+    private final int[] counts;
+    private final int[] offsets;
+    private final IntBuffer rows;
+    private long fileLength = -1;
+    private long fileModified = -1;
+
+    private MatchStore(
+        long sourceLength,
+        long sourceModified,
+        MatchMode mode,
+        CSRGraph query,
+        int[] graphIds,
+        int[] counts,
+        int[] offsets,
+        IntBuffer rows
+    ) {
+        this.sourceLength = sourceLength;
+        this.sourceModified = sourceModified;
+        this.mode = mode;
+        this.query = query;
+        this.graphIds = graphIds;
+        this.counts = counts;
+        this.offsets = offsets;
+        this.rows = rows;
+    }
+
+    /**
+     * Collects the matches of one query in ascending graph order.
+     */
+    public static class Builder {
+
+        private final GraphDatabase database;
+        private final CSRGraph query;
+        private final MatchMode mode;
+        private int[] graphIds = new int[64];
+        private int[] counts = new int[64];
+        private int[] offsets = new int[65];
+        private int[] rows = new int[256];
+        private int size = 0;
+
+        public Builder(GraphDatabase database, CSRGraph query, MatchMode mode) {
+            this.database = database;
+            this.query = query;
+            this.mode = mode;
+        }
+
+        public void add(int graphId, int[][] embeddings, int count) {
+            if (size == graphIds.length) {
+                graphIds = Arrays.copyOf(graphIds, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2 + 1);
+            }
+            int n = query.size();
+            int used = offsets[size] * n;
+            if (used + embeddings.length * n > rows.length) {
+                rows = Arrays.copyOf(
+                    rows,
+                    Math.max(rows.length * 2, used + embeddings.length * n)
+                );
+            }
+            for (int[] mapping : embeddings) {
+                System.arraycopy(mapping, 0, rows, used, n);
+                used += n;
+            }
+            graphIds[size] = graphId;
+            counts[size] = count;
+            offsets[size + 1] = offsets[size] + embeddings.length;
+            size++;
+        }
+
+        public MatchStore build() {
+            return new MatchStore(
+                database.getLength(),
+                database.getLastModified(),
+                mode,
+                query,
+                Arrays.copyOf(graphIds, size),
+                Arrays.copyOf(counts, size),
+                Arrays.copyOf(offsets, size + 1),
+                IntBuffer.wrap(
+                    Arrays.copyOf(rows, offsets[size] * query.size())
+                )
+            );
+        }
+    }
+
+    /**
+     * Return the store at path, reusing the instance this JVM last wrote or
+     * read there when the file has not changed since.
+     *
+     * @return null when the file does not exist
+     */
+    public static MatchStore load(String path) throws IOException {
+        File file = new File(path);
+        String key = file.getCanonicalPath();
+        MatchStore cached = shared.get(key);
+        if (
+            cached != null &&
+            cached.fileLength == file.length() &&
+            cached.fileModified == file.lastModified()
+        ) {
+            return cached;
+        }
+
+        MatchStore store = read(path);
+        if (store == null) {
+            shared.remove(key);
+        } else {
+            store.fileLength = file.length();
+            store.fileModified = file.lastModified();
+            shared.put(key, store);
+        }
+        return store;
+    }
+
+    /**
+     * Drop the in-memory instance for path, e.g. before its directory is
+     * deleted.
+     */
+    public static void forget(String path) {
+        try {
+            shared.remove(new File(path).getCanonicalPath());
+        } catch (IOException e) {
+            shared.remove(path);
+        }
+    }
+
+    /**
+     * Map a store written by {@link #write}.
+     *
+     * @return null when the file does not exist
+     */
+    public static MatchStore read(String path) throws IOException {
+        File file = new File(path);
+        if (!file.exists()) {
+            return null;
+        }
+        try (
+            FileChannel channel = FileChannel.open(
+                file.toPath(),
+                StandardOpenOption.READ
+            )
+        ) {
+            ByteBuffer buffer = channel.map(
+                FileChannel.MapMode.READ_ONLY,
+                0,
+                channel.size()
+            );
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException(path + ": not a match store");
+            }
+            long sourceLength = buffer.getLong();
+            long sourceModified = buffer.getLong();
+            MatchMode.Kind kind = MatchMode.Kind.values()[buffer.getInt()];
+            int limit = buffer.getInt();
+            int n = buffer.getInt();
+            int edges = buffer.getInt();
+            int graphCount = buffer.getInt();
+            int rowCount = buffer.getInt();
+
+            CSRGraph.Builder query = new CSRGraph.Builder(false);
+            for (int v = 0; v < n; v++) {
+                query.addVertex(buffer.getInt());
+            }
+            for (int e = 0; e < edges; e++) {
+                query.addEdge(buffer.getInt(), buffer.getInt(), buffer.getInt());
+            }
+
+            int[] graphIds = new int[graphCount];
+            int[] counts = new int[graphCount];
+            int[] offsets = new int[graphCount + 1];
+            IntBuffer ints = buffer.asIntBuffer();
+            ints.get(graphIds).get(counts).get(offsets);
+            ints = ints.slice();
+            ints.limit(rowCount * n);
+
+            return new MatchStore(
+                sourceLength,
+                sourceModified,
+                MatchMode.of(kind, limit),
+                query.build(),
+                graphIds,
+                counts,
+                offsets,
+                ints
+            );
+        } catch (RuntimeException e) {
+            throw new IOException(path + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Write the store next to path and rename it into place; later
+     * {@link #load} calls for path return this instance.
+     */
+    public void write(String path) throws IOException {
+        File target = new File(path);
+        File temp = new File(path + ".tmp" + System.nanoTime());
+        int n = query.size();
+        try (
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp), 1 << 16)
+            )
+        ) {
+            int edges = 0;
+            for (int v = 0; v < n; v++) {
+                for (int s = query.begin(v); s < query.end(v); s++) {
+                    if (v <= query.target(s)) edges++;
+                }
+            }
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceLength);
+            out.writeLong(sourceModified);
+            out.writeInt(mode.kind().ordinal());
+            out.writeInt(mode.limit());
+            out.writeInt(n);
+            out.writeInt(edges);
+            out.writeInt(graphIds.length);
+            out.writeInt(offsets[graphIds.length]);
+
+            for (int v = 0; v < n; v++) {
+                out.writeInt(query.label(v));
+            }
+            for (int v = 0; v < n; v++) {
+                for (int s = query.begin(v); s < query.end(v); s++) {
+                    if (v <= query.target(s)) {
+                        out.writeInt(v);
+                        out.writeInt(query.target(s));
+                        out.writeInt(query.edgeLabel(s));
+                    }
+                }
+            }
+            for (int id : graphIds) out.writeInt(id);
+            for (int count : counts) out.writeInt(count);
+            for (int offset : offsets) out.writeInt(offset);
+            for (int i = 0, total = offsets[graphIds.length] * n; i < total; i++) {
+                out.writeInt(rows.get(i));
+            }
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+
+        try {
+            Files.move(
+                temp.toPath(),
+                target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE
+            );
+        } catch (IOException e) {
+            Files.move(
+                temp.toPath(),
+                target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING
+            );
+        }
+        fileLength = target.length();
+        fileModified = target.lastModified();
+        shared.put(target.getCanonicalPath(), this);
+    }
+
+    /**
+     * @return true when the matches were computed on the database as it is
+     *         now
+     */
+    public boolean isFreshFor(GraphDatabase database) {
+        return (
+            database.getLength() == sourceLength &&
+            database.getLastModified() == sourceModified
+        );
+    }
+
+    /**
+     * @return true when current keeps every vertex label of the stored
+     *         query at the same id and every one of its edges, so each
+     *         embedding of current restricts to a stored-query embedding
+     */
+    public boolean isExtendedBy(CSRGraph current) {
+        int n = query.size();
+        if (n == 0 || current.size() < n) {
+            return false;
+        }
+        for (int v = 0; v < n; v++) {
+            if (query.label(v) != current.label(v)) return false;
+            for (int s = query.begin(v); s < query.end(v); s++) {
+                if (!current.hasEdge(v, query.target(s), query.edgeLabel(s))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public CSRGraph query() {
+        return query;
+    }
+
+    public MatchMode mode() {
+        return mode;
+    }
+
+    /** Number of matched graphs. */
+    public int size() {
+        return graphIds.length;
+    }
+
+    public int graphId(int index) {
+        return graphIds[index];
+    }
+
+    /** The matched graph ids in ascending order. */
+    public List<Integer> graphIdList() {
+        List<Integer> list = new ArrayList<>(graphIds.length);
+        for (int id : graphIds) {
+            list.add(id);
+        }
+        return list;
+    }
+
+    /**
+     * @return the index of a graph id, or -1 when it was not matched
+     */
+    public int indexOf(int graphId) {
+        int index = Arrays.binarySearch(graphIds, graphId);
+        return index >= 0 ? index : -1;
+    }
+
+    /** Number of embeddings found in the graph at index. */
+    public int count(int index) {
+        return counts[index];
+    }
+
+    /** Number of embeddings kept for the graph at index. */
+    public int embeddingCount(int index) {
+        return offsets[index + 1] - offsets[index];
+    }
+
+    public int[] embedding(int index, int k) {
+        int n = query.size();
+        int[] mapping = new int[n];
+        int start = (offsets[index] + k) * n;
+        for (int u = 0; u < n; u++) {
+            mapping[u] = rows.get(start + u);
+        }
+        return mapping;
+    }
+
+    /**
+     * @return true when the kept embeddings are all embeddings of the query
+     *         in the graph at index, i.e. the search was not cut short
+     */
+    public boolean isComplete(int index) {
+        return (
+            embeddingCount(index) == counts[index] &&
+            counts[index] < mode.limit()
+        );
+    }
+}
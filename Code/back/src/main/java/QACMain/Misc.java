@@ -1,87 +1,88 @@
 package QACMain;
 
-import java.util.ArrayList;
-import model.Edge;
-import model.Graph;
+import model.CSRGraph;
 import model.History;
-import model.Vertex;
+import model.SlotList;
 
+/**
+ * Extension scans over the CSR form of a graph. Edges are passed and
+ * returned as slots, see CSRGraph; -1 stands for no edge.
+ */
 public class Misc {
 
     public static boolean getForwardRoot(
-        Graph g,
-        Vertex v,
-        ArrayList<Edge> result
+        CSRGraph g,
+        int v,
+        SlotList result
     ) {
         result.clear();
-        for (Edge it : v.edge) {
-            assert (it.to >= 0 && it.to < g.size());
-            int toLabel = g.get(it.to).label;
-            result.add(it);
+        for (int s = g.begin(v), end = g.end(v); s < end; ++s) {
+            result.add(s);
         }
 
         return !result.isEmpty();
     }
 
-    public static Edge getBackward(
-        Graph graph,
-        Edge e1,
-        Edge e2,
+    public static int getBackward(
+        CSRGraph graph,
+        int e1,
+        int e2,
         History history
     ) {
-        if (e1 == e2) return null;
+        if (e1 == e2) return -1;
 
-        assert (e1.from >= 0 && e1.from < graph.size());
-        assert (e1.to >= 0 && e1.to < graph.size());
-        assert (e2.to >= 0 && e2.to < graph.size());
+        int from1 = graph.source(e1);
+        int to2 = graph.target(e2);
+        int eLabel1 = graph.edgeLabel(e1);
 
-        for (Edge it : graph.get(e2.to).edge) {
-            if (history.hasEdge(it.id)) continue;
+        for (int s = graph.begin(to2), end = graph.end(to2); s < end; ++s) {
+            if (
+                graph.target(s) != from1 || graph.edgeLabel(s) != eLabel1
+            ) continue;
+            if (history.hasEdge(graph.edgeId(s))) continue;
 
-            if ((it.to == e1.from) && ((e1.eLabel == it.eLabel))) {
-                return it;
-            }
+            return s;
         }
 
-        return null;
+        return -1;
     }
 
     /**
      * Enhanced cycle detection method for long chain structures
      * Relaxes edge label matching requirements to allow more cycle possibilities
      */
-    public static Edge getBackwardRelaxed(
-        Graph graph,
-        Edge e1,
-        Edge e2,
+    public static int getBackwardRelaxed(
+        CSRGraph graph,
+        int e1,
+        int e2,
         History history
     ) {
-        if (e1 == e2) return null;
+        if (e1 == e2) return -1;
 
-        assert (e1.from >= 0 && e1.from < graph.size());
-        assert (e1.to >= 0 && e1.to < graph.size());
-        assert (e2.to >= 0 && e2.to < graph.size());
+        int from1 = graph.source(e1);
+        int to1 = graph.target(e1);
+        int to2 = graph.target(e2);
 
-        for (Edge it : graph.get(e2.to).edge) {
-            if (history.hasEdge(it.id)) continue;
+        for (int s = graph.begin(to2), end = graph.end(to2); s < end; ++s) {
+            if (history.hasEdge(graph.edgeId(s))) continue;
 
-            if (it.to == e1.from) {
-                return it;
+            if (graph.target(s) == from1) {
+                return s;
             }
 
-            if (it.to == e1.to) {
-                return it;
+            if (graph.target(s) == to1) {
+                return s;
             }
         }
 
-        return null;
+        return -1;
     }
 
     /**
      * Specialized long chain cycle detection - checks connection between any two nodes
      */
-    public static Edge getChainCycleConnection(
-        Graph graph,
+    public static int getChainCycleConnection(
+        CSRGraph graph,
         int fromNode,
         int toNode,
         History history
@@ -93,57 +94,59 @@ public class Misc {
             fromNode >= graph.size() ||
             toNode >= graph.size()
         ) {
-            return null;
+            return -1;
         }
 
-        for (Edge edge : graph.get(fromNode).edge) {
-            if (edge.to == toNode && !history.hasEdge(edge.id)) {
-                return edge;
+        for (
+            int s = graph.begin(fromNode), end = graph.end(fromNode);
+            s < end;
+            ++s
+        ) {
+            if (
+                graph.target(s) == toNode && !history.hasEdge(graph.edgeId(s))
+            ) {
+                return s;
             }
         }
 
-        return null;
+        return -1;
     }
 
     public static boolean getForwardPure(
-        Graph graph,
-        Edge e,
+        CSRGraph graph,
+        int e,
         int minLabel,
         History history,
-        ArrayList<Edge> result
+        SlotList result
     ) {
         result.clear();
 
-        assert (e.to >= 0 && e.to < graph.size());
-
-        for (Edge it : graph.get(e.to).edge) {
-            assert (it.to >= 0 && it.to < graph.size());
-            int toLabel = graph.get(it.to).label;
-            if (history.hasVertex(it.to)) continue;
+        int to = graph.target(e);
+        for (int s = graph.begin(to), end = graph.end(to); s < end; ++s) {
+            if (history.hasVertex(graph.target(s))) continue;
 
-            result.add(it);
+            result.add(s);
         }
 
         return !result.isEmpty();
     }
 
     public static boolean getForwardRmPath(
-        Graph graph,
-        Edge e,
+        CSRGraph graph,
+        int e,
         int minLabel,
         History history,
-        ArrayList<Edge> result
+        SlotList result
     ) {
         result.clear();
-        assert (e.to >= 0 && e.to < graph.size());
-        assert (e.from >= 0 && e.from < graph.size());
-        int toLabel = graph.get(e.to).label;
 
-        for (Edge it : graph.get(e.from).edge) {
-            int toLabel2 = graph.get(it.to).label;
-            if (e.to == it.to || history.hasVertex(it.to)) continue;
+        int from = graph.source(e);
+        int to = graph.target(e);
+        for (int s = graph.begin(from), end = graph.end(from); s < end; ++s) {
+            int next = graph.target(s);
+            if (to == next || history.hasVertex(next)) continue;
 
-            result.add(it);
+            result.add(s);
         }
 
         return !result.isEmpty();
@@ -5,32 +5,40 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
-import java.util.Set;
 import java.util.TreeMap;
 import java.util.Vector;
+import model.CSRGraph;
 import model.DFSCode;
 import model.Edge;
+import model.EdgeSet;
 import model.Graph;
-import model.PDFS;
 import model.Projected;
 
 public class PatternReporter {
 
-    private final ArrayList<Graph> TRANS;
+    // minimum gap between two partial updates sent to the listener
+    private static final long PUBLISH_INTERVAL_MS = 200;
+
+    private final ArrayList<CSRGraph> TRANS;
     private Arguments arg;
     private GraphIndexManager indexManager;
     private FileWriter os;
     private long ID;
     private boolean directed;
     private final ArrayList<Graph> allGraphs;
+    private Graph queryGraph;
+    // queryGraph in the form SubgraphValidator matches against
+    private CSRGraph compactQuery;
+    private SuggestionListener listener;
+    private int modifications = 0;
+    private int publishedModifications = 0;
+    private long lastPublished = 0;
 
     public PatternReporter(
-        ArrayList<Graph> TRANS,
+        ArrayList<CSRGraph> TRANS,
         Arguments arg,
         GraphIndexManager indexManager
     ) {
@@ -46,6 +54,62 @@ public class PatternReporter {
         this.os = os;
     }
 
+    /**
+     * The query of the current run; suggestions must contain it.
+     */
+    public void setQueryGraph(Graph queryGraph) {
+        this.queryGraph = queryGraph;
+        this.compactQuery = queryGraph == null
+            ? null
+            : CSRGraph.of(queryGraph);
+    }
+
+    /**
+     * Receive the top-k whenever it changes, at most every
+     * PUBLISH_INTERVAL_MS and once more on {@link #publish}.
+     */
+    public void setListener(SuggestionListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Send the current top-k to the listener if it changed since the last
+     * update, regardless of the interval; e.g. after each search depth.
+     */
+    public void publish() {
+        if (listener == null || modifications == publishedModifications) {
+            return;
+        }
+        publishedModifications = modifications;
+        lastPublished = System.currentTimeMillis();
+
+        List<Graph> current = new ArrayList<Graph>();
+        for (Graph g : allGraphs) {
+            if (g != null) current.add(g);
+        }
+        List<Graph> suggestions = IsomorphismRemover.removeIsomorphicGraphs(
+            current
+        );
+        Collections.sort(suggestions, (g1, g2) -> {
+            int nodeDiff = g1.size() - g2.size();
+            if (nodeDiff != 0) {
+                return nodeDiff;
+            }
+
+            return g1.getEdgeSize() - g2.getEdgeSize();
+        });
+        listener.onSuggestions(Collections.unmodifiableList(suggestions));
+    }
+
+    private void publishIfDue() {
+        if (
+            listener != null &&
+            System.currentTimeMillis() - lastPublished >= PUBLISH_INTERVAL_MS
+        ) {
+            publish();
+        }
+    }
+
     public void setID(long ID) {
         this.ID = ID;
     }
@@ -75,9 +139,9 @@ public class PatternReporter {
     }
 
     public void newreport(Graph g, int id) throws IOException {
-        Graph queryGraph = TEDSProcessor.getQueryGraphReference();
         if (
-            queryGraph != null && !SubgraphValidator.isSubgraph(queryGraph, g)
+            compactQuery != null &&
+            !SubgraphValidator.isSubgraph(compactQuery, CSRGraph.of(g))
         ) {
             System.out.println(
                 "Skip Final graph " +
@@ -138,9 +202,9 @@ public class PatternReporter {
     }
 
     public void newreportbeforeswap(Graph g, int id) throws IOException {
-        Graph queryGraph = TEDSProcessor.getQueryGraphReference();
         if (
-            queryGraph != null && !SubgraphValidator.isSubgraph(queryGraph, g)
+            compactQuery != null &&
+            !SubgraphValidator.isSubgraph(compactQuery, CSRGraph.of(g))
         ) {
             System.out.println(
                 "Skip BeforeSwap graph " +
@@ -197,7 +261,7 @@ public class PatternReporter {
         ) return false;
 
         Graph tempGraph = new Graph(directed);
-        DFS_CODE.toGraph(tempGraph);
+        DFS_CODE.toGraph(tempGraph, queryGraph);
         if (
             tempGraph.size() > arg.maxNodeNum ||
             tempGraph.size() < arg.minNodeNum
@@ -226,7 +290,7 @@ public class PatternReporter {
                 );
                 int totalegdes = 0;
                 for (int i = 0; i < TRANS.size(); i++) {
-                    totalegdes += TRANS.get(i).getEdgeSize();
+                    totalegdes += TRANS.get(i).edgeSize();
                 }
                 System.out.println("Total edges: " + totalegdes);
                 System.out.println(
@@ -234,14 +298,13 @@ public class PatternReporter {
                     (indexManager.getAllCoveredEdges().size() * 1.0) /
                     totalegdes
                 );
-
-                if (arg.isSimpleIndex && arg.strategy.equals("topk")) {
-                    updateMinimumPattern();
-                }
             }
         } else {
-            return handleSwappingLogic(sup, projected, DFS_CODE);
+            Boolean swapped = handleSwappingLogic(sup, projected, DFS_CODE);
+            publishIfDue();
+            return swapped;
         }
+        publishIfDue();
         return false;
     }
 
@@ -257,7 +320,7 @@ public class PatternReporter {
         if (arg.minNodeNum > 0 && DFS_CODE.countNode() < arg.minNodeNum) return;
 
         Graph tempGraph = new Graph(directed);
-        DFS_CODE.toGraph(tempGraph);
+        DFS_CODE.toGraph(tempGraph, queryGraph);
         if (
             tempGraph.size() > arg.maxNodeNum ||
             tempGraph.size() < arg.minNodeNum
@@ -276,7 +339,7 @@ public class PatternReporter {
 
         if (allGraphs.size() < arg.numberofpatterns) {
             Graph g = new Graph(directed);
-            DFS_CODE.toGraph(g);
+            DFS_CODE.toGraph(g, queryGraph);
             os.write(
                 "Initial****t # " +
                 allGraphs.size() +
@@ -298,99 +361,31 @@ public class PatternReporter {
         } else {
             handleInitialSwappingLogic(sup, projected, DFS_CODE);
         }
+        publishIfDue();
     }
 
-    public int getBenefitScore(Set<Integer> coverededges) {
-        int unique_count = 0;
-        Iterator it = coverededges.iterator();
-        while (it.hasNext()) {
-            if (indexManager.getAllCoveredEdges().contains(it.next())) continue;
-            unique_count++;
-        }
-        return unique_count;
+    public int getBenefitScore(EdgeSet coverededges) {
+        return coverededges.countNotIn(indexManager.getAllCoveredEdges());
     }
 
-    public int getLossScore(Set<Integer> dropededges, Long deleteid) {
-        int loss_count = 0;
-
-        Set<Integer> set_temp = new HashSet<Integer>();
-        for (Long key : indexManager.getCoveredEdges_patterns().keySet()) {
-            if (key != deleteid) set_temp.addAll(
-                indexManager.getCoveredEdges_patterns().get(key)
-            );
-        }
-        Iterator it = dropededges.iterator();
-        while (it.hasNext()) {
-            Integer edgeid = (Integer) it.next();
-            if (!set_temp.contains(edgeid)) {
-                loss_count++;
-            }
-        }
-        return loss_count;
+    public int getLossScore(int patternid) {
+        return indexManager.getCoverage().lossScore(patternid);
     }
 
     public void Delete(int deleteid) {
         allGraphs.set(deleteid, null);
+        modifications++;
 
-        indexManager
-            .getRpriv_i()
-            .get(indexManager.getPriv_pattern().get(deleteid))
-            .remove(deleteid);
-
-        Set<Integer> coverededges_pattern = indexManager
-            .getCoveredEdges_EachPattern()
-            .get(deleteid);
-
-        for (Integer e : coverededges_pattern) {
-            indexManager.getRcov_edge().get(e).remove(deleteid);
-
-            if (indexManager.getRcov_edge().get(e).size() == 0) {
-                indexManager.setNumberofcovered(
-                    indexManager.getNumberofcovered() - 1
-                );
-                indexManager.getAllCoveredEdges().remove(e);
-            } else if (indexManager.getRcov_edge().get(e).size() == 1) {
-                int tempid = indexManager
-                    .getRcov_edge()
-                    .get(e)
-                    .iterator()
-                    .next();
-                int temp = indexManager.getPriv_pattern().get(tempid);
-                indexManager.getPriv_pattern().set(tempid, temp + 1);
-                indexManager.getRpriv_i().get(temp).remove(tempid);
-                if (
-                    indexManager.getRpriv_i().get(temp + 1) == null
-                ) indexManager
-                    .getRpriv_i()
-                    .put(temp + 1, new HashSet<Integer>());
-                indexManager.getRpriv_i().get(temp + 1).add(tempid);
-            }
-        }
-
-        indexManager.getCoveredEdges_OriginalGraphs().clear();
-        for (Integer edgeid : indexManager.getAllCoveredEdges()) {
-            Integer gid = edgeid / 1000;
-            Set<Integer> temp = indexManager
-                .getCoveredEdges_OriginalGraphs()
-                .get(gid);
-            if (temp == null) temp = new HashSet<Integer>();
-            temp.add(edgeid);
-            indexManager.getCoveredEdges_OriginalGraphs().put(gid, temp);
-        }
-
-        indexManager.getPriv_pattern().set(deleteid, -1);
-        indexManager
-            .getCoveredEdges_EachPattern()
-            .set(deleteid, new HashSet<Integer>());
+        indexManager.getCoverage().remove(deleteid);
     }
 
     public void Insert(Projected projected, int insertid, DFSCode DFS_CODE) {
         Graph g = new Graph(directed);
-        DFS_CODE.toGraph(g);
+        DFS_CODE.toGraph(g, queryGraph);
 
-        Graph queryGraph = TEDSProcessor.getQueryGraphReference();
         if (
-            queryGraph != null && !SubgraphValidator.isSubgraph(queryGraph, g)
+            compactQuery != null &&
+            !SubgraphValidator.isSubgraph(compactQuery, CSRGraph.of(g))
         ) {
             System.out.println(
                 "Skip graph " +
@@ -411,49 +406,14 @@ public class PatternReporter {
         ) {
             if (allGraphs.size() < arg.numberofpatterns) allGraphs.add(g);
             else allGraphs.set(insertid, g);
+            modifications++;
         } else {
             return;
         }
 
-        Set<Integer> coverededges_pattern = new HashSet<Integer>();
-        if (
-            indexManager.getPriv_pattern().size() < arg.numberofpatterns
-        ) indexManager.getPriv_pattern().add(0);
-        else indexManager.getPriv_pattern().set(insertid, 0);
-
-        for (PDFS aProjected : projected) {
-            int id = aProjected.id;
-            Set<Integer> tempedges = new HashSet<Integer>();
-            for (PDFS p = aProjected; p != null; p = p.prev) {
-                Integer temp = 1000 * id + p.edge.id;
-                coverededges_pattern.add(temp);
-                tempedges.add(temp);
-                indexManager.getAllCoveredEdges().add(temp);
-            }
-
-            if (indexManager.getCoveredEdges_OriginalGraphs().containsKey(id)) {
-                tempedges.addAll(
-                    indexManager.getCoveredEdges_OriginalGraphs().get(id)
-                );
-                indexManager
-                    .getCoveredEdges_OriginalGraphs()
-                    .replace(id, tempedges);
-            } else {
-                indexManager
-                    .getCoveredEdges_OriginalGraphs()
-                    .put(id, tempedges);
-            }
-        }
-
-        if (
-            indexManager.getCoveredEdges_EachPattern().size() <
-            arg.numberofpatterns
-        ) indexManager.getCoveredEdges_EachPattern().add(coverededges_pattern);
-        else indexManager
-            .getCoveredEdges_EachPattern()
-            .set(insertid, coverededges_pattern);
-
-        updateCoverageStatistics(coverededges_pattern, insertid);
+        indexManager
+            .getCoverage()
+            .add(insertid, indexManager.coveredEdges(projected));
     }
 
     public void InsertWithSimpleIndex(
@@ -462,11 +422,11 @@ public class PatternReporter {
         DFSCode DFS_CODE
     ) {
         Graph g = new Graph(directed);
-        DFS_CODE.toGraph(g);
+        DFS_CODE.toGraph(g, queryGraph);
 
-        Graph queryGraph = TEDSProcessor.getQueryGraphReference();
         if (
-            queryGraph != null && !SubgraphValidator.isSubgraph(queryGraph, g)
+            compactQuery != null &&
+            !SubgraphValidator.isSubgraph(compactQuery, CSRGraph.of(g))
         ) {
             System.out.println(
                 "Skip graph " +
@@ -488,72 +448,14 @@ public class PatternReporter {
             if (allGraphs.size() < arg.numberofpatterns) allGraphs.add(g);
             else if (allGraphs.size() > insertid) allGraphs.set(insertid, g);
             else allGraphs.add(g);
+            modifications++;
         } else {
             return;
         }
 
-        Set<Integer> coverededges_pattern = new HashSet<Integer>();
-        for (PDFS aProjected : projected) {
-            int id = aProjected.id;
-            Set<Integer> tempedges = new HashSet<Integer>();
-            for (PDFS p = aProjected; p != null; p = p.prev) {
-                Integer temp = 1000 * id + p.edge.id;
-                coverededges_pattern.add(temp);
-
-                if (indexManager.getPatternsID_edges().containsKey(temp)) {
-                    Set<Integer> temppatternids = indexManager
-                        .getPatternsID_edges()
-                        .get(temp);
-                    temppatternids.add(id);
-                    indexManager
-                        .getPatternsID_edges()
-                        .replace(temp, temppatternids);
-                } else {
-                    Set<Integer> temppatternids = new HashSet<Integer>();
-                    temppatternids.add(id);
-                    indexManager
-                        .getPatternsID_edges()
-                        .put(temp, temppatternids);
-                }
-
-                indexManager.getAllCoveredEdges().add(temp);
-                tempedges.add(temp);
-            }
-
-            if (indexManager.getCoveredEdges_OriginalGraphs().containsKey(id)) {
-                tempedges.addAll(
-                    indexManager.getCoveredEdges_OriginalGraphs().get(id)
-                );
-                indexManager
-                    .getCoveredEdges_OriginalGraphs()
-                    .replace(id, tempedges);
-            } else {
-                indexManager
-                    .getCoveredEdges_OriginalGraphs()
-                    .put(id, tempedges);
-            }
-        }
-
         indexManager
-            .getCoveredEdges_patterns()
-            .put((long) insertid, coverededges_pattern);
-    }
-
-    private void updateMinimumPattern() {
-        int patternid_min = 0;
-        int loss_score_min = Integer.MAX_VALUE;
-        for (Long key : indexManager.getCoveredEdges_patterns().keySet()) {
-            Set<Integer> dropededges = indexManager
-                .getCoveredEdges_patterns()
-                .get(key);
-            int loss_score = getLossScore(dropededges, key);
-            if (loss_score < loss_score_min) {
-                loss_score_min = loss_score;
-                patternid_min = key.intValue();
-            }
-        }
-        indexManager.setMinimumpattern_score(loss_score_min);
-        indexManager.setMinimumpattern_id(patternid_min);
+            .getCoverage()
+            .add(insertid, indexManager.coveredEdges(projected));
     }
 
     private Boolean handleSwappingLogic(
@@ -596,28 +498,14 @@ public class PatternReporter {
         int patternid_min,
         int loss_score_min
     ) throws IOException {
-        Set<Integer> coverededges_pattern = new HashSet<Integer>();
-        for (PDFS aProjected : projected) {
-            int id = aProjected.id;
-            for (PDFS p = aProjected; p != null; p = p.prev) {
-                Integer temp = 1000 * id + p.edge.id;
-                coverededges_pattern.add(temp);
-            }
-        }
+        EdgeSet coverededges_pattern = indexManager.coveredEdges(projected);
 
-        for (Integer e : coverededges_pattern) {
-            if (
-                indexManager.getRcov_edge().get(e) == null ||
-                indexManager.getRcov_edge().get(e).size() == 0
-            ) {
-                benefit_score++;
-            }
-        }
+        benefit_score = getBenefitScore(coverededges_pattern);
 
         patternid_min = indexManager.getMinimumpattern_id();
         loss_score_min = indexManager.getMinimumpattern_score();
 
-        Boolean swapflag = shouldSwap(benefit_score, loss_score_min);
+        Boolean swapflag = shouldSwap(benefit_score);
 
         if (swapflag) {
             os.write(patternid_min + " is swapped out!");
@@ -645,20 +533,13 @@ public class PatternReporter {
         int patternid_min,
         int loss_score_min
     ) throws IOException {
-        Set<Integer> coverededges_pattern = new HashSet<Integer>();
-        for (PDFS aProjected : projected) {
-            int id = aProjected.id;
-            for (PDFS p = aProjected; p != null; p = p.prev) {
-                Integer temp = 1000 * id + p.edge.id;
-                coverededges_pattern.add(temp);
-            }
-        }
+        EdgeSet coverededges_pattern = indexManager.coveredEdges(projected);
 
         benefit_score = getBenefitScore(coverededges_pattern);
         loss_score_min = indexManager.getMinimumpattern_score();
         patternid_min = indexManager.getMinimumpattern_id();
 
-        Boolean swapflag = shouldSwap(benefit_score, loss_score_min);
+        Boolean swapflag = shouldSwap(benefit_score);
 
         if (swapflag) {
             performSimpleIndexSwap(
@@ -673,32 +554,19 @@ public class PatternReporter {
         return swapflag;
     }
 
-    private boolean shouldSwap(int benefit_score, int loss_score_min) {
-        if (arg.swapcondition.equals("swap1")) {
-            return benefit_score > 2 * loss_score_min;
-        } else if (arg.swapcondition.equals("swap2")) {
-            return (
-                benefit_score >
-                loss_score_min +
-                (indexManager.getAllCoveredEdges().size() * 1.0) /
-                arg.numberofpatterns
-            );
-        } else {
-            return (
-                benefit_score >
-                (1 + arg.swapAlpha) * loss_score_min +
-                (1 - arg.swapAlpha) *
-                ((indexManager.getAllCoveredEdges().size() * 1.0) /
-                    arg.numberofpatterns)
-            );
-        }
+    /**
+     * @return true when a pattern of this benefit score replaces the
+     *         minimum pattern under the swap condition
+     */
+    private boolean shouldSwap(int benefit_score) {
+        return !indexManager.isBelowSwapThreshold(benefit_score);
     }
 
     private void performSimpleIndexSwap(
         int patternid_min,
         int benefit_score,
         int loss_score_min,
-        Set<Integer> coverededges_pattern,
+        EdgeSet coverededges_pattern,
         DFSCode DFS_CODE
     ) throws IOException {
         os.write(patternid_min + " is swapped out!");
@@ -711,149 +579,11 @@ public class PatternReporter {
         allGraphs.get(patternid_min).write(os);
 
         Graph g = new Graph(directed);
-        DFS_CODE.toGraph(g);
+        DFS_CODE.toGraph(g, queryGraph);
         allGraphs.set(patternid_min, g);
+        modifications++;
 
-        indexManager
-            .getCoveredEdges_patterns()
-            .replace((long) patternid_min, coverededges_pattern);
-
-        indexManager.getAllCoveredEdges().clear();
-        for (Long key : indexManager.getCoveredEdges_patterns().keySet()) {
-            Set<Integer> temp = indexManager
-                .getCoveredEdges_patterns()
-                .get(key);
-            indexManager.getAllCoveredEdges().addAll(temp);
-        }
-
-        updateOriginalGraphCoveredEdges();
-
-        updatePatternsIDEdges();
-
-        updateMinimumPattern();
-    }
-
-    private void updateOriginalGraphCoveredEdges() {
-        indexManager.getCoveredEdges_OriginalGraphs().clear();
-        for (Integer edgeid : indexManager.getAllCoveredEdges()) {
-            Integer gid = edgeid / 1000;
-            Set<Integer> temp = indexManager
-                .getCoveredEdges_OriginalGraphs()
-                .get(gid);
-            if (temp == null) temp = new HashSet<Integer>();
-            temp.add(edgeid);
-            indexManager.getCoveredEdges_OriginalGraphs().put(gid, temp);
-        }
-    }
-
-    private void updatePatternsIDEdges() {
-        indexManager.getPatternsID_edges().clear();
-        for (Integer edgeid : indexManager.getAllCoveredEdges()) {
-            Set<Integer> tempedges = new HashSet<Integer>();
-            for (Long key : indexManager.getCoveredEdges_patterns().keySet()) {
-                Set<Integer> temp = indexManager
-                    .getCoveredEdges_patterns()
-                    .get(key);
-                if (temp.contains(edgeid)) {
-                    tempedges.add(key.intValue());
-                }
-            }
-            indexManager.getPatternsID_edges().put(edgeid, tempedges);
-        }
-    }
-
-    private void updateCoverageStatistics(
-        Set<Integer> coverededges_pattern,
-        int insertid
-    ) {
-        for (int temp : coverededges_pattern) {
-            if (indexManager.getRcov_edge().get(temp) == null) indexManager
-                .getRcov_edge()
-                .put(temp, new HashSet<Integer>());
-
-            indexManager.getRcov_edge().get(temp).add(insertid);
-
-            if (indexManager.getRcov_edge().get(temp).size() == 1) {
-                indexManager
-                    .getPriv_pattern()
-                    .set(
-                        insertid,
-                        indexManager.getPriv_pattern().get(insertid) + 1
-                    );
-                indexManager.setNumberofcovered(
-                    indexManager.getNumberofcovered() + 1
-                );
-            } else if (indexManager.getRcov_edge().get(temp).size() == 2) {
-                int tempid = -1;
-                for (int e : indexManager.getRcov_edge().get(temp)) if (
-                    e != insertid
-                ) tempid = e;
-
-                indexManager
-                    .getPriv_pattern()
-                    .set(
-                        tempid,
-                        indexManager.getPriv_pattern().get(tempid) - 1
-                    );
-
-                indexManager
-                    .getRpriv_i()
-                    .get(indexManager.getPriv_pattern().get(tempid) + 1)
-                    .remove(tempid);
-                if (
-                    indexManager
-                        .getRpriv_i()
-                        .get(indexManager.getPriv_pattern().get(tempid)) ==
-                    null
-                ) indexManager
-                    .getRpriv_i()
-                    .put(
-                        indexManager.getPriv_pattern().get(tempid),
-                        new HashSet<Integer>()
-                    );
-                indexManager
-                    .getRpriv_i()
-                    .get(indexManager.getPriv_pattern().get(tempid))
-                    .add(tempid);
-            }
-        }
-
-        if (
-            indexManager
-                .getRpriv_i()
-                .get(indexManager.getPriv_pattern().get(insertid)) ==
-            null
-        ) indexManager
-            .getRpriv_i()
-            .put(
-                indexManager.getPriv_pattern().get(insertid),
-                new HashSet<Integer>()
-            );
-        indexManager
-            .getRpriv_i()
-            .get(indexManager.getPriv_pattern().get(insertid))
-            .add(insertid);
-
-        for (
-            int i = 0;
-            i <= indexManager.getPriv_pattern().get(insertid);
-            i++
-        ) {
-            if (
-                indexManager.getRpriv_i().get(i) != null &&
-                indexManager.getRpriv_i().get(i).size() > 0
-            ) {
-                indexManager.setMinimumpattern_id(
-                    indexManager.getRpriv_i().get(i).iterator().next()
-                );
-                indexManager.setMinimumpattern_score(
-                    indexManager
-                        .getPriv_pattern()
-                        .get(indexManager.getMinimumpattern_id())
-                );
-                break;
-            }
-        }
+        indexManager.getCoverage().add(patternid_min, coverededges_pattern);
     }
 
     private void handleInitialReportCompletion() throws IOException {
@@ -867,17 +597,13 @@ public class PatternReporter {
         );
         int totalegdes = 0;
         for (int i = 0; i < TRANS.size(); i++) {
-            totalegdes += TRANS.get(i).getEdgeSize();
+            totalegdes += TRANS.get(i).edgeSize();
         }
         System.out.println("Total edges: " + totalegdes);
         System.out.println(
             "Coverage rate: " +
             (indexManager.getAllCoveredEdges().size() * 1.0) / totalegdes
         );
-
-        if (arg.isSimpleIndex && arg.strategy.equals("topk")) {
-            updateMinimumPattern();
-        }
     }
 
     private void handleInitialSwappingLogic(
@@ -918,28 +644,14 @@ public class PatternReporter {
         int patternid_min,
         int loss_score_min
     ) throws IOException {
-        Set<Integer> coverededges_pattern = new HashSet<Integer>();
-        for (PDFS aProjected : projected) {
-            int id = aProjected.id;
-            for (PDFS p = aProjected; p != null; p = p.prev) {
-                Integer temp = 1000 * id + p.edge.id;
-                coverededges_pattern.add(temp);
-            }
-        }
+        EdgeSet coverededges_pattern = indexManager.coveredEdges(projected);
 
-        for (Integer e : coverededges_pattern) {
-            if (
-                indexManager.getRcov_edge().get(e) == null ||
-                indexManager.getRcov_edge().get(e).size() == 0
-            ) {
-                benefit_score++;
-            }
-        }
+        benefit_score = getBenefitScore(coverededges_pattern);
 
         patternid_min = indexManager.getMinimumpattern_id();
         loss_score_min = indexManager.getMinimumpattern_score();
 
-        Boolean swapflag = shouldSwap(benefit_score, loss_score_min);
+        Boolean swapflag = shouldSwap(benefit_score);
 
         if (swapflag) {
             os.write(patternid_min + " is swapped out!");
@@ -964,20 +676,13 @@ public class PatternReporter {
         int patternid_min,
         int loss_score_min
     ) throws IOException {
-        Set<Integer> coverededges_pattern = new HashSet<Integer>();
-        for (PDFS aProjected : projected) {
-            int id = aProjected.id;
-            for (PDFS p = aProjected; p != null; p = p.prev) {
-                Integer temp = 1000 * id + p.edge.id;
-                coverededges_pattern.add(temp);
-            }
-        }
+        EdgeSet coverededges_pattern = indexManager.coveredEdges(projected);
 
         benefit_score = getBenefitScore(coverededges_pattern);
         loss_score_min = indexManager.getMinimumpattern_score();
         patternid_min = indexManager.getMinimumpattern_id();
 
-        Boolean swapflag = shouldSwap(benefit_score, loss_score_min);
+        Boolean swapflag = shouldSwap(benefit_score);
 
         if (swapflag) {
             performInitialSimpleIndexSwap(
@@ -994,7 +699,7 @@ public class PatternReporter {
         int patternid_min,
         int benefit_score,
         int loss_score_min,
-        Set<Integer> coverededges_pattern,
+        EdgeSet coverededges_pattern,
         DFSCode DFS_CODE
     ) throws IOException {
         os.write(patternid_min + " is swapped out!");
@@ -1007,24 +712,11 @@ public class PatternReporter {
         allGraphs.get(patternid_min).write(os);
 
         Graph g = new Graph(directed);
-        DFS_CODE.toGraph(g);
+        DFS_CODE.toGraph(g, queryGraph);
         allGraphs.set(patternid_min, g);
+        modifications++;
 
-        indexManager
-            .getCoveredEdges_patterns()
-            .replace((long) patternid_min, coverededges_pattern);
-
-        indexManager.getAllCoveredEdges().clear();
-        for (Long key : indexManager.getCoveredEdges_patterns().keySet()) {
-            Set<Integer> temp = indexManager
-                .getCoveredEdges_patterns()
-                .get(key);
-            indexManager.getAllCoveredEdges().addAll(temp);
-        }
-
-        updateOriginalGraphCoveredEdges();
-        updatePatternsIDEdges();
-        updateMinimumPattern();
+        indexManager.getCoverage().add(patternid_min, coverededges_pattern);
     }
 
     public void finalReportWithDeduplication() throws IOException {
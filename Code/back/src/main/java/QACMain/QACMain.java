@@ -1,10 +1,8 @@
 package QACMain;
 
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.List;
+import java.util.Arrays;
 
 public class QACMain {
     public static void main(String[] args) throws IOException {
@@ -14,6 +12,11 @@ public class QACMain {
             return;
         }
         
+        if (args.length > 0 && args[0].equals("serve")) {
+            QACServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         try {
             System.out.println("Starting QAC system...");
             
@@ -29,7 +32,6 @@ public class QACMain {
             long startTime = System.currentTimeMillis();
 
             File inFile = new File(arguments.getInFilePath());
-            File outFile = new File(arguments.getGraphgPath());
 
             // Check if input file exists
             if (!inFile.exists()) {
@@ -47,30 +49,9 @@ public class QACMain {
                 return;
             }
 
-            // If not in rerun mode, ensure IDs are null
-            if (!arguments.isRerun) {
-                arguments.IDs = null;
-                System.out.println("Rerun mode disabled, searching entire database");
-                
-                // We'll let QACProcessor clear G.txt instead of clearing it here
-                // This avoids clearing the file twice
-            }
-            // If in rerun mode and G.txt exists and is not empty, extract graph IDs
-            else if (arguments.isRerun && outFile.exists() && outFile.length() > 0) {
-                List<Integer> previousMatchedIDs = my_VF2.extractGraphIDs(arguments.getGraphgPath());
-                if (!previousMatchedIDs.isEmpty()) {
-                    arguments.setIDs(previousMatchedIDs);
-                } else {
-                    System.out.println("No previous matching graph IDs found");
-                }
-            }
-
-            try (FileReader reader = new FileReader(inFile);
-                 FileWriter writer = new FileWriter(outFile)) {
-                QACProcessor processor = new QACProcessor();
-                System.out.println("Starting QAC processor...");
-                processor.run(reader, writer, arguments);
-                System.out.println("QAC processor completed");
+            process(arguments);
+            if (arguments.budget.isTruncated()) {
+                System.out.println("Result is partial: search truncated by " + arguments.budget.getTruncatedBy() + " budget");
             }
  
             long endTime = System.currentTimeMillis();
@@ -79,4 +60,41 @@ public class QACMain {
             System.err.println("Error: " + e.getMessage());
         }
     }
+
+    /**
+     * Run one autocomplete request: VF2 matching, then mining. The database
+     * is taken from the process-wide cache, so repeated requests on the same
+     * file (see QACServer) load it only once.
+     * @return the processor, which holds the stage timings
+     */
+    public static QACProcessor process(Arguments arguments) throws IOException {
+        // If not in rerun mode, ensure IDs are null
+        if (!arguments.isRerun) {
+            arguments.IDs = null;
+            System.out.println("Rerun mode disabled, searching entire database");
+        }
+        // If in rerun mode, start from the graphs matched by the last query
+        else {
+            try {
+                MatchStore previous = MatchStore.load(arguments.matchStorePath);
+                if (previous != null && previous.size() > 0) {
+                    arguments.setIDs(previous.graphIdList());
+                } else {
+                    System.out.println("No previous matching graph IDs found");
+                }
+            } catch (IOException e) {
+                System.err.println("Ignoring previous matches: " + e.getMessage());
+            }
+        }
+
+        long loadStart = System.currentTimeMillis();
+        GraphDatabase database = GraphDatabase.load(arguments.getInFilePath());
+        System.out.println("Loaded " + database.size() + " graphs in " + (System.currentTimeMillis() - loadStart) + " ms");
+
+        QACProcessor processor = new QACProcessor();
+        System.out.println("Starting QAC processor...");
+        processor.run(database, arguments);
+        System.out.println("QAC processor completed");
+        return processor;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,727 @@
+package QACMain;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import model.Edge;
+import model.Graph;
+import model.GraphTextParser;
+
+/**
+ * Resident autocomplete engine behind a local HTTP/JSON endpoint.
+ *
+ * Databases, their indexes and the JIT-compiled code stay in this JVM
+ * between requests, so a request only pays for matching and mining.
+ *
+ *   GET    /health
+ *   POST   /session            open a session: {"session":"<id>"}
+ *   GET    /session?id=...     suggestions of its last step
+ *   DELETE /session?id=...     close it
+ *   GET    /query?db=emolecul10000&query=query.txt&k=10&min=2&max=10
+ *                &strategy=topk&output=Outputs&reuse=true&mode=exists
+ *                &budget=500ms&scheduler=bfs&session=...
+ *   POST   /query?...          the body, when present, is the query graph
+ *                              in gSpan text format; it is written to
+ *                              query.txt of the session (or of the output
+ *                              directory) and used instead of query=
+ *   GET    /query?...&stream=true
+ *                              server-sent events: "partial" events with
+ *                              the current top-k while mining runs, then
+ *                              one "done" (or "error") event carrying the
+ *                              usual response
+ *
+ * Within a session, outputs go to the session's own directory, and each
+ * step reuses the matches of the previous one unless reuse=false is given.
+ * Without a session, requests share the files under their output
+ * directory and run one at a time.
+ *
+ * db, query and output must be plain file names, resolved under data/ and
+ * the working directory. Requests carrying an Origin header other than the
+ * server's own are refused: a page in the browser may send simple requests
+ * to the loopback address without a preflight.
+ *
+ * The answer has the shape app.js builds from result.txt:
+ *   {"success":true,"results":[{"id":"0","nodes":[...],"edges":[...]}],
+ *    "vf2Time":0.3,"totalTime":1.2}
+ */
+public class QACServer {
+
+    public static final int DEFAULT_PORT = 8090;
+
+    private final HttpServer server;
+    private final SessionManager sessions;
+
+    // requests without a session share their output files
+    private final ReentrantLock shared = new ReentrantLock();
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        long idleTimeoutMs = SessionManager.DEFAULT_IDLE_TIMEOUT_MS;
+        if (args.length > 0) {
+            try {
+                port = Integer.parseInt(args[0]);
+            } catch (NumberFormatException e) {
+                System.err.println(
+                    "Invalid port '" + args[0] + "', using default: " + port
+                );
+            }
+        }
+        if (args.length > 1) {
+            try {
+                idleTimeoutMs = Long.parseLong(args[1]) * 60_000L;
+            } catch (NumberFormatException e) {
+                System.err.println(
+                    "Invalid session timeout '" +
+                    args[1] +
+                    "', using default: " +
+                    idleTimeoutMs / 60_000L +
+                    " minutes"
+                );
+            }
+        }
+        new QACServer(port, idleTimeoutMs).start();
+    }
+
+    public QACServer(int port, long idleTimeoutMs) throws IOException {
+        server = HttpServer.create(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+            0
+        );
+        sessions = new SessionManager(
+            new File("Outputs", "sessions"),
+            idleTimeoutMs
+        );
+        server.createContext("/health", exchange ->
+            respond(
+                exchange,
+                200,
+                "{\"success\":true,\"sessions\":" + sessions.size() + "}"
+            )
+        );
+        server.createContext("/session", this::handleSession);
+        server.createContext("/query", this::handleQuery);
+        server.setExecutor(Executors.newCachedThreadPool());
+    }
+
+    public void start() {
+        server.start();
+        System.out.println(
+            "QAC server listening on http://localhost:" +
+            server.getAddress().getPort()
+        );
+    }
+
+    public void stop() {
+        server.stop(0);
+        sessions.shutdown();
+    }
+
+    private void handleSession(HttpExchange exchange) throws IOException {
+        if (!isSameOrigin(exchange)) {
+            respond(exchange, 403, error("Cross-origin request refused"));
+            return;
+        }
+        try {
+            Map<String, String> params = parseParams(
+                exchange.getRequestURI().getRawQuery()
+            );
+            String method = exchange.getRequestMethod();
+            if (method.equalsIgnoreCase("POST")) {
+                SessionManager.Session session = sessions.create();
+                respond(
+                    exchange,
+                    200,
+                    "{\"success\":true,\"session\":" +
+                    quote(session.getId()) +
+                    "}"
+                );
+            } else if (method.equalsIgnoreCase("DELETE")) {
+                boolean closed = sessions.close(params.get("id"));
+                respond(
+                    exchange,
+                    closed ? 200 : 404,
+                    closed
+                        ? "{\"success\":true}"
+                        : error("Unknown session: " + params.get("id"))
+                );
+            } else {
+                SessionManager.Session session = sessions.get(params.get("id"));
+                if (session == null) {
+                    respond(
+                        exchange,
+                        404,
+                        error("Unknown session: " + params.get("id"))
+                    );
+                    return;
+                }
+                session.getLock().lock();
+                try {
+                    String results = session.getResults();
+                    MatchStore matches = session.getMatches();
+                    respond(
+                        exchange,
+                        200,
+                        "{\"success\":true,\"session\":" +
+                        quote(session.getId()) +
+                        ",\"matchedGraphs\":" +
+                        (matches == null ? 0 : matches.size()) +
+                        ",\"results\":" +
+                        (results == null ? "[]" : results) +
+                        "}"
+                    );
+                } finally {
+                    session.getLock().unlock();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error processing request: " + e.getMessage());
+            respond(exchange, 500, error(String.valueOf(e.getMessage())));
+        }
+    }
+
+    private void handleQuery(HttpExchange exchange) throws IOException {
+        if (!isSameOrigin(exchange)) {
+            respond(exchange, 403, error("Cross-origin request refused"));
+            return;
+        }
+        try {
+            Map<String, String> params = parseParams(
+                exchange.getRequestURI().getRawQuery()
+            );
+            String db = params.get("db");
+            if (db == null || db.isEmpty()) {
+                respond(exchange, 400, error("Missing parameter: db"));
+                return;
+            }
+            for (String name : new String[] { "db", "query", "output" }) {
+                String value = params.get(name);
+                if (value != null && !isPlainName(value)) {
+                    respond(
+                        exchange,
+                        400,
+                        error("Invalid parameter " + name + ": " + value)
+                    );
+                    return;
+                }
+            }
+
+            SessionManager.Session session = null;
+            if (params.containsKey("session")) {
+                session = sessions.get(params.get("session"));
+                if (session == null) {
+                    respond(
+                        exchange,
+                        404,
+                        error("Unknown session: " + params.get("session"))
+                    );
+                    return;
+                }
+            }
+            byte[] body = readBody(exchange.getRequestBody());
+
+            ReentrantLock lock = session != null ? session.getLock() : shared;
+            lock.lock();
+            try {
+                if (session != null && !sessions.isOpen(session)) {
+                    respond(
+                        exchange,
+                        404,
+                        error("Session closed: " + session.getId())
+                    );
+                    return;
+                }
+                if (!"true".equalsIgnoreCase(params.get("stream"))) {
+                    respond(exchange, 200, runQuery(params, session, body, null));
+                    return;
+                }
+                EventStream events = new EventStream(exchange);
+                try {
+                    String result = runQuery(params, session, body, events);
+                    events.finish(
+                        result.startsWith("{\"success\":false")
+                            ? "error"
+                            : "done",
+                        result
+                    );
+                } catch (IOException | RuntimeException e) {
+                    System.err.println(
+                        "Error processing request: " + e.getMessage()
+                    );
+                    events.finish(
+                        "error",
+                        error(String.valueOf(e.getMessage()))
+                    );
+                } finally {
+                    events.close();
+                }
+            } finally {
+                lock.unlock();
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error processing request: " + e.getMessage());
+            respond(exchange, 500, error(String.valueOf(e.getMessage())));
+        }
+    }
+
+    /**
+     * Run one step; the caller holds the lock of the session (or the shared
+     * lock when session is null).
+     *
+     * @param listener receives partial suggestions, or null
+     */
+    private String runQuery(
+        Map<String, String> params,
+        SessionManager.Session session,
+        byte[] body,
+        SuggestionListener listener
+    ) throws IOException {
+        boolean reuse = params.containsKey("reuse")
+            ? "true".equalsIgnoreCase(params.get("reuse"))
+            : session != null && session.hasMatches();
+        String output = session != null
+            ? session.getDirectory().getPath()
+            : params.getOrDefault("output", "Outputs");
+
+        Arguments arguments = new Arguments(
+            new String[] {
+                params.get("db"),
+                params.getOrDefault("query", "query.txt"),
+                params.getOrDefault("k", "10"),
+                params.getOrDefault("min", "2"),
+                params.getOrDefault("max", "10"),
+                params.getOrDefault("strategy", "topk"),
+                output,
+                reuse ? "reuse" : "full",
+                params.getOrDefault("mode", "exists"),
+                params.getOrDefault("budget", SearchBudget.defaults().toString()),
+                params.getOrDefault(
+                    "scheduler",
+                    SearchScheduler.defaults().toString()
+                ),
+            }
+        );
+        if (!new File(arguments.getInFilePath()).exists()) {
+            return error("Input file not found: " + arguments.getInFilePath());
+        }
+        if (session != null && (body.length > 0 || session.getQuery() != null)) {
+            // a session keeps its query next to its outputs
+            arguments.queryFile = session.getQueryPath();
+        } else if (body.length > 0) {
+            // never write a posted query to a path the caller chose
+            File directory = new File(output);
+            directory.mkdirs();
+            arguments.queryFile = new File(directory, "query.txt").getPath();
+        }
+        if (body.length > 0) {
+            try (
+                FileOutputStream out = new FileOutputStream(
+                    arguments.getQueryFile()
+                )
+            ) {
+                out.write(body);
+            }
+        }
+        if (!new File(arguments.getQueryFile()).exists()) {
+            return error("Query file not found: " + arguments.getQueryFile());
+        }
+
+        arguments.suggestionListener = listener;
+
+        long start = System.currentTimeMillis();
+        QACProcessor processor = QACMain.process(arguments);
+        double totalTime = (System.currentTimeMillis() - start) / 1000.0;
+
+        StringBuilder results = new StringBuilder();
+        appendResults(results, arguments.getResultPath());
+        if (session != null) {
+            session.update(
+                body.length > 0 ? body : session.getQuery(),
+                MatchStore.load(arguments.matchStorePath),
+                results.toString()
+            );
+        }
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\"success\":true");
+        if (session != null) {
+            json.append(",\"session\":").append(quote(session.getId()));
+        }
+        json.append(",\"reused\":").append(reuse);
+        json.append(",\"truncated\":").append(arguments.budget.isTruncated());
+        json.append(",\"results\":").append(results);
+        json.append(",\"vf2Time\":").append(processor.getVf2Seconds());
+        json.append(",\"totalTime\":").append(totalTime);
+        json.append('}');
+        return json.toString();
+    }
+
+    /**
+     * Convert the "Final t # id * support" blocks of result.txt to JSON.
+     */
+    static void appendResults(StringBuilder json, String resultPath)
+        throws IOException {
+        GraphTextParser parser = new GraphTextParser();
+        json.append('[');
+        boolean open = false;
+        int count = 0;
+        StringBuilder edges = new StringBuilder();
+        StringBuilder vertices = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new FileReader(resultPath))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                switch (parser.line(line)) {
+                    case 't':
+                        if (open) {
+                            closeResult(json, vertices, edges);
+                        }
+                        long id = parser.fieldCount() > 0
+                            ? parser.field(0)
+                            : count;
+                        if (count++ > 0) {
+                            json.append(',');
+                        }
+                        json.append("{\"id\":").append(quote(String.valueOf(id)));
+                        vertices.setLength(0);
+                        edges.setLength(0);
+                        open = true;
+                        break;
+                    case 'v':
+                        if (open && parser.fieldCount() >= 2) {
+                            if (vertices.length() > 0) vertices.append(',');
+                            vertices
+                                .append("{\"id\":")
+                                .append(parser.field(0))
+                                .append(",\"label\":")
+                                .append(parser.field(1))
+                                .append('}');
+                        }
+                        break;
+                    case 'e':
+                        if (open && parser.fieldCount() >= 2) {
+                            if (edges.length() > 0) edges.append(',');
+                            edges
+                                .append("{\"source\":")
+                                .append(parser.field(0))
+                                .append(",\"target\":")
+                                .append(parser.field(1))
+                                .append(",\"type\":")
+                                .append(
+                                    parser.fieldCount() > 2 ? parser.field(2) : 0
+                                )
+                                .append('}');
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        if (open) {
+            closeResult(json, vertices, edges);
+        }
+        json.append(']');
+    }
+
+    /**
+     * Convert suggestions still held by the miner to the same JSON as
+     * {@link #appendResults}; parallel edges collapse to the smallest label,
+     * as in Graph.write.
+     */
+    static void appendGraphs(StringBuilder json, List<Graph> graphs) {
+        json.append('[');
+        StringBuilder vertices = new StringBuilder();
+        StringBuilder edges = new StringBuilder();
+        for (int id = 0; id < graphs.size(); id++) {
+            Graph g = graphs.get(id);
+            if (id > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(quote(String.valueOf(id)));
+            vertices.setLength(0);
+            edges.setLength(0);
+
+            // (from << 32 | to) -> smallest edge label
+            TreeMap<Long, Integer> pairs = new TreeMap<>();
+            for (int v = 0; v < g.size(); v++) {
+                if (v > 0) vertices.append(',');
+                vertices
+                    .append("{\"id\":")
+                    .append(v)
+                    .append(",\"label\":")
+                    .append(g.get(v).label)
+                    .append('}');
+                for (Edge e : g.get(v).edge) {
+                    int from = g.directed ? v : Math.min(v, e.to);
+                    int to = g.directed ? e.to : Math.max(v, e.to);
+                    pairs.merge(((long) from << 32) | to, e.eLabel, Math::min);
+                }
+            }
+            for (Map.Entry<Long, Integer> pair : pairs.entrySet()) {
+                if (edges.length() > 0) edges.append(',');
+                edges
+                    .append("{\"source\":")
+                    .append(pair.getKey() >>> 32)
+                    .append(",\"target\":")
+                    .append(pair.getKey() & 0xffffffffL)
+                    .append(",\"type\":")
+                    .append(pair.getValue())
+                    .append('}');
+            }
+            closeResult(json, vertices, edges);
+        }
+        json.append(']');
+    }
+
+    private static void closeResult(
+        StringBuilder json,
+        StringBuilder vertices,
+        StringBuilder edges
+    ) {
+        json
+            .append(",\"nodes\":[")
+            .append(vertices)
+            .append("],\"edges\":[")
+            .append(edges)
+            .append("]}");
+    }
+
+    /**
+     * True unless the request carries an Origin header naming another
+     * origin than this server's.
+     */
+    private boolean isSameOrigin(HttpExchange exchange) {
+        String origin = exchange.getRequestHeaders().getFirst("Origin");
+        if (origin == null) {
+            return true;
+        }
+        int port = server.getAddress().getPort();
+        return (
+            origin.equals("http://localhost:" + port) ||
+            origin.equals("http://127.0.0.1:" + port) ||
+            origin.equals("http://[::1]:" + port)
+        );
+    }
+
+    /**
+     * True for a file name without a path separator or "..", which
+     * therefore stays inside the directory it is resolved against.
+     */
+    static boolean isPlainName(String value) {
+        return (
+            !value.isEmpty() &&
+            value.indexOf('/') < 0 &&
+            value.indexOf('\\') < 0 &&
+            value.indexOf(File.separatorChar) < 0 &&
+            !value.contains("..")
+        );
+    }
+
+    static Map<String, String> parseParams(String rawQuery)
+        throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(
+                URLDecoder.decode(key, "UTF-8"),
+                URLDecoder.decode(value, "UTF-8")
+            );
+        }
+        return params;
+    }
+
+    private static byte[] readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    static String error(String message) {
+        return "{\"success\":false,\"error\":" + quote(message) + "}";
+    }
+
+    static String quote(String value) {
+        StringBuilder out = new StringBuilder(value.length() + 2);
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out.append('"').toString();
+    }
+
+    /**
+     * Server-sent events of one streamed request.
+     *
+     * Partial updates arrive with the reporter lock held, so they are only
+     * parked in a one-slot handoff, where a newer update replaces one not
+     * yet written; the stream's own writer thread does the socket I/O. A
+     * slow client thus skips intermediate updates instead of stalling the
+     * mining workers.
+     */
+    static class EventStream implements SuggestionListener {
+
+        private final OutputStream out;
+        private final long start = System.currentTimeMillis();
+        private final Thread writer;
+        // latest suggestions not written yet, guarded by this
+        private List<Graph> pending = null;
+        private boolean stopped = false;
+        // only touched by the writer thread, then by finish after the join
+        private boolean broken = false;
+
+        EventStream(HttpExchange exchange) throws IOException {
+            exchange
+                .getResponseHeaders()
+                .set("Content-Type", "text/event-stream; charset=utf-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            out = exchange.getResponseBody();
+            writer = new Thread(this::writePartials, "qac-event-stream");
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        @Override
+        public synchronized void onSuggestions(List<Graph> suggestions) {
+            pending = suggestions;
+            notifyAll();
+        }
+
+        private void writePartials() {
+            while (true) {
+                List<Graph> suggestions;
+                synchronized (this) {
+                    while (pending == null && !stopped) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (stopped) {
+                        return;
+                    }
+                    suggestions = pending;
+                    pending = null;
+                }
+
+                StringBuilder json = new StringBuilder();
+                json.append("{\"results\":");
+                appendGraphs(json, suggestions);
+                json
+                    .append(",\"elapsed\":")
+                    .append((System.currentTimeMillis() - start) / 1000.0)
+                    .append('}');
+                write("partial", json.toString());
+            }
+        }
+
+        /**
+         * Stop the partial updates, dropping one still pending, and send
+         * the final event.
+         */
+        void finish(String event, String data) {
+            stop();
+            write(event, data);
+        }
+
+        private void stop() {
+            synchronized (this) {
+                stopped = true;
+                notifyAll();
+            }
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void write(String event, String data) {
+            if (broken) {
+                return;
+            }
+            try {
+                out.write(
+                    ("event: " + event + "\ndata: " + data + "\n\n").getBytes(
+                            StandardCharsets.UTF_8
+                        )
+                );
+                out.flush();
+            } catch (IOException e) {
+                // the client went away; the run itself still completes
+                broken = true;
+            }
+        }
+
+        void close() {
+            stop();
+            try {
+                out.close();
+            } catch (IOException e) {
+                // already reported by write
+            }
+        }
+    }
+
+    static void respond(HttpExchange exchange, int status, String json)
+        throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange
+            .getResponseHeaders()
+            .set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
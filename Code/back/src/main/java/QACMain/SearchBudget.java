@@ -0,0 +1,124 @@
+package QACMain;
+
+/**
+ * Time and work limits of the mining stage of one request.
+ *
+ *   500ms, 2s     mine for at most this long
+ *   tasks:N       expand at most N search tasks
+ *   2s,tasks:N    both
+ *
+ * The clock starts when mining starts (see QACProcessor): loading the
+ * database and VF2 matching always run to completion, as mining needs all
+ * of their matches.
+ *
+ * The work limit counts the tasks the scheduler hands to workers, in its
+ * order, so the cut does not depend on which worker finishes first. With
+ * several workers the tasks waiting at that point still can, as the pruning
+ * of a subtree depends on the top-k found so far. The deadline is also
+ * polled by every worker before it expands a task. Whatever was found when
+ * a limit is hit is reported as usual, and {@link #isTruncated} tells the
+ * caller the search stopped early.
+ */
+public final class SearchBudget {
+
+    public static final long DEFAULT_TIME_MS = 10 * 60 * 1000L;
+    public static final long DEFAULT_MAX_TASKS = 500000L;
+
+    private final long timeMs;
+    private final long maxTasks;
+    private long startNanos = System.nanoTime();
+    private volatile String truncatedBy = null;
+
+    public SearchBudget(long timeMs, long maxTasks) {
+        this.timeMs = timeMs;
+        this.maxTasks = maxTasks;
+    }
+
+    public static SearchBudget defaults() {
+        return new SearchBudget(DEFAULT_TIME_MS, DEFAULT_MAX_TASKS);
+    }
+
+    /**
+     * Parse a comma separated list of a duration ("500ms", "2s") and
+     * "tasks:N"; limits not given keep their default.
+     *
+     * @throws IllegalArgumentException for any other value
+     */
+    public static SearchBudget parse(String value) {
+        long timeMs = DEFAULT_TIME_MS;
+        long maxTasks = DEFAULT_MAX_TASKS;
+        try {
+            for (String part : value.trim().toLowerCase().split(",")) {
+                String text = part.trim();
+                if (text.startsWith("tasks:")) {
+                    maxTasks = Long.parseLong(text.substring(6).trim());
+                } else if (text.endsWith("ms")) {
+                    timeMs = Long.parseLong(
+                        text.substring(0, text.length() - 2).trim()
+                    );
+                } else if (text.endsWith("s")) {
+                    timeMs = Math.round(
+                        Double.parseDouble(
+                            text.substring(0, text.length() - 1).trim()
+                        ) *
+                        1000
+                    );
+                } else {
+                    throw new NumberFormatException(text);
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid budget: " + value);
+        }
+        if (timeMs <= 0 || maxTasks <= 0) {
+            throw new IllegalArgumentException("Invalid budget: " + value);
+        }
+        return new SearchBudget(timeMs, maxTasks);
+    }
+
+    /** Restart the clock, e.g. when mining starts. */
+    public void start() {
+        startNanos = System.nanoTime();
+        truncatedBy = null;
+    }
+
+    public long elapsedMs() {
+        return (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+
+    public boolean isExpired() {
+        return elapsedMs() >= timeMs;
+    }
+
+    public long maxTasks() {
+        return maxTasks;
+    }
+
+    /** Record that search work was skipped because a limit was hit. */
+    public void truncate(String reason) {
+        if (truncatedBy == null) {
+            truncatedBy = reason;
+            System.out.println(
+                "\nSearch truncated by " +
+                reason +
+                " budget after " +
+                elapsedMs() +
+                " ms"
+            );
+        }
+    }
+
+    public boolean isTruncated() {
+        return truncatedBy != null;
+    }
+
+    /** "time" or "tasks", or null when the search ran to completion. */
+    public String getTruncatedBy() {
+        return truncatedBy;
+    }
+
+    @Override
+    public String toString() {
+        return timeMs + "ms,tasks:" + maxTasks;
+    }
+}
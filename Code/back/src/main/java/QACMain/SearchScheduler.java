@@ -0,0 +1,284 @@
+package QACMain;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import model.Projected;
+
+/**
+ * Order in which the mining stage expands its search tasks, and how many of
+ * them it may hold at once.
+ *
+ *   bfs             shallowest task first (default)
+ *   dfs             deepest task first, the last child first
+ *   best            task with the highest upper bound first
+ *   beam:B          shallowest first, expanding at most B tasks per depth
+ *   frontier:N      waiting tasks keep at most N embedding rows alive
+ *
+ * An order and a frontier limit combine as "best,frontier:N". Tasks wait in
+ * a {@link Frontier} until a worker takes them; there is no barrier between
+ * depths, so a beam cannot wait for all tasks of a depth: it keeps the B
+ * best of those seen so far, and once B tasks of a depth have been handed
+ * out, later ones of that depth are dropped.
+ *
+ * The frontier limit counts the rows of every table a waiting task keeps
+ * alive, its own and those of its ancestors, each table once however many
+ * tasks share it. When it is exceeded, the tasks with the lowest upper bound
+ * are dropped, so peak memory stays bounded whatever the order. Tables of
+ * the tasks being expanded are not counted.
+ *
+ * Ties are broken by the position of a task in the search tree: the path of
+ * child indexes leading to it from the initial task. That position does not
+ * depend on the order in which workers finish, unlike arrival order.
+ */
+public final class SearchScheduler {
+
+    public enum Order {
+        BFS,
+        DFS,
+        BEST,
+        BEAM,
+    }
+
+    public static final long DEFAULT_MAX_FRONTIER = 20_000_000L;
+
+    private final Order order;
+    private final int beamWidth;
+    private final long maxFrontier;
+
+    public SearchScheduler(Order order, int beamWidth, long maxFrontier) {
+        this.order = order;
+        this.beamWidth = beamWidth;
+        this.maxFrontier = maxFrontier;
+    }
+
+    public static SearchScheduler defaults() {
+        return new SearchScheduler(Order.BFS, 0, DEFAULT_MAX_FRONTIER);
+    }
+
+    /**
+     * Parse a comma separated list of an order ("bfs", "dfs", "best",
+     * "beam:B") and "frontier:N"; parts not given keep their default.
+     *
+     * @throws IllegalArgumentException for any other value
+     */
+    public static SearchScheduler parse(String value) {
+        Order order = Order.BFS;
+        int beamWidth = 0;
+        long maxFrontier = DEFAULT_MAX_FRONTIER;
+        try {
+            for (String part : value.trim().toLowerCase().split(",")) {
+                String text = part.trim();
+                if (text.startsWith("frontier:")) {
+                    maxFrontier = Long.parseLong(text.substring(9).trim());
+                } else if (text.startsWith("beam:")) {
+                    order = Order.BEAM;
+                    beamWidth = Integer.parseInt(text.substring(5).trim());
+                } else {
+                    order = Order.valueOf(text.toUpperCase());
+                    if (order == Order.BEAM) {
+                        throw new NumberFormatException(text);
+                    }
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid scheduler: " + value);
+        }
+        if (maxFrontier <= 0 || (order == Order.BEAM && beamWidth <= 0)) {
+            throw new IllegalArgumentException("Invalid scheduler: " + value);
+        }
+        return new SearchScheduler(order, beamWidth, maxFrontier);
+    }
+
+    public Order order() {
+        return order;
+    }
+
+    public long maxFrontier() {
+        return maxFrontier;
+    }
+
+    public <T> Frontier<T> newFrontier() {
+        return new Frontier<>(this);
+    }
+
+    @Override
+    public String toString() {
+        String name = order == Order.BEAM
+            ? "beam:" + beamWidth
+            : order.name().toLowerCase();
+        return name + ",frontier:" + maxFrontier;
+    }
+
+    /**
+     * Tasks waiting to be expanded. Not thread safe: the mining loop offers
+     * and polls from one thread and hands tasks to its workers.
+     */
+    public static final class Frontier<T> {
+
+        private static final class Entry<T> {
+
+            final T task;
+            final int[] path;
+            final int depth;
+            final long bound;
+            final Projected table;
+
+            Entry(
+                T task,
+                int[] path,
+                int depth,
+                long bound,
+                Projected table
+            ) {
+                this.task = task;
+                this.path = path;
+                this.depth = depth;
+                this.bound = bound;
+                this.table = table;
+            }
+        }
+
+        // tree order: lexicographic on the paths, an ancestor first
+        private static final Comparator<Entry<?>> BY_PATH = (a, b) -> {
+            int n = Math.min(a.path.length, b.path.length);
+            for (int i = 0; i < n; i++) {
+                if (a.path[i] != b.path[i]) {
+                    return Integer.compare(a.path[i], b.path[i]);
+                }
+            }
+            return Integer.compare(a.path.length, b.path.length);
+        };
+
+        // on ties the task later in the tree goes first, so it is also
+        // dropped first
+        private static final Comparator<Entry<?>> BY_BOUND = Comparator
+            .<Entry<?>>comparingLong(e -> e.bound)
+            .thenComparing(BY_PATH.reversed());
+
+        private final SearchScheduler scheduler;
+        private final TreeSet<Entry<T>> queue;
+        private final TreeSet<Entry<T>> byBound = new TreeSet<>(BY_BOUND);
+        private final Map<Integer, TreeSet<Entry<T>>> beams = new HashMap<>();
+        // tasks of each depth handed out by poll, never decremented
+        private final Map<Integer, Integer> expanded = new HashMap<>();
+        // waiting tasks that keep each table alive
+        private final Map<Projected, Integer> tables = new IdentityHashMap<>();
+        private long weight = 0;
+        private long dropped = 0;
+
+        private Frontier(SearchScheduler scheduler) {
+            this.scheduler = scheduler;
+            this.queue = new TreeSet<>(comparator(scheduler.order));
+        }
+
+        private static Comparator<Entry<?>> comparator(Order order) {
+            switch (order) {
+                case DFS:
+                    return Comparator
+                        .<Entry<?>>comparingInt(e -> -e.depth)
+                        .thenComparing(BY_PATH.reversed());
+                case BEST:
+                    return Comparator
+                        .<Entry<?>>comparingLong(e -> -e.bound)
+                        .thenComparing(BY_PATH);
+                default:
+                    return Comparator
+                        .<Entry<?>>comparingInt(e -> e.depth)
+                        .thenComparing(BY_PATH);
+            }
+        }
+
+        /**
+         * Add a task at the given position in the search tree, of the given
+         * depth, upper bound and embedding table, dropping the weakest tasks
+         * if a limit is exceeded. Positions must be unique.
+         */
+        public void offer(
+            T task,
+            int[] path,
+            int depth,
+            long bound,
+            Projected table
+        ) {
+            Entry<T> entry = new Entry<>(task, path, depth, bound, table);
+            queue.add(entry);
+            byBound.add(entry);
+            for (Projected t = table; t != null; t = t.parent()) {
+                if (tables.merge(t, 1, Integer::sum) == 1) {
+                    weight += t.size();
+                }
+            }
+
+            if (scheduler.order == Order.BEAM) {
+                TreeSet<Entry<T>> beam = beams.computeIfAbsent(depth, d ->
+                    new TreeSet<>(BY_BOUND)
+                );
+                beam.add(entry);
+                int taken = expanded.getOrDefault(depth, 0);
+                while (
+                    !beam.isEmpty() && beam.size() + taken > scheduler.beamWidth
+                ) {
+                    remove(beam.first());
+                    dropped++;
+                }
+            }
+            // always keep one task, however heavy
+            while (this.weight > scheduler.maxFrontier && queue.size() > 1) {
+                remove(byBound.first());
+                dropped++;
+            }
+        }
+
+        /** @return the next task to expand, or null when none is waiting */
+        public T poll() {
+            if (queue.isEmpty()) {
+                return null;
+            }
+            Entry<T> entry = queue.first();
+            remove(entry);
+            if (scheduler.order == Order.BEAM) {
+                expanded.merge(entry.depth, 1, Integer::sum);
+            }
+            return entry.task;
+        }
+
+        private void remove(Entry<T> entry) {
+            queue.remove(entry);
+            byBound.remove(entry);
+            for (Projected t = entry.table; t != null; t = t.parent()) {
+                if (tables.merge(t, -1, Integer::sum) == 0) {
+                    tables.remove(t);
+                    weight -= t.size();
+                }
+            }
+            if (scheduler.order == Order.BEAM) {
+                TreeSet<Entry<T>> beam = beams.get(entry.depth);
+                beam.remove(entry);
+                if (beam.isEmpty()) {
+                    beams.remove(entry.depth);
+                }
+            }
+        }
+
+        public boolean isEmpty() {
+            return queue.isEmpty();
+        }
+
+        public int size() {
+            return queue.size();
+        }
+
+        /** Embedding rows kept alive by the waiting tasks. */
+        public long weight() {
+            return weight;
+        }
+
+        /** Tasks dropped by the beam width or the frontier limit. */
+        public long dropped() {
+            return dropped;
+        }
+    }
+}
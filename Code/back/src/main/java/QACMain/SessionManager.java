@@ -0,0 +1,208 @@
+package QACMain;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Autocomplete sessions of a QACServer, one per browser tab.
+ *
+ * A session owns an output directory, so concurrent users never share
+ * G.bin, TED.txt or result.txt, and keeps the state of its last step in
+ * memory: the query, its match store (which the next, larger query extends)
+ * and the suggestions. Steps of one session run one at a time; different
+ * sessions run in parallel. Sessions idle for longer than the timeout are
+ * evicted together with their directory.
+ */
+public class SessionManager {
+
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 30 * 60 * 1000L;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final File root;
+    private final long idleTimeoutMs;
+    private final ScheduledExecutorService sweeper;
+
+    public static class Session {
+
+        private final String id;
+        private final File directory;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        // state of the last completed step, guarded by lock
+        private byte[] query;
+        private MatchStore matches;
+        private String results;
+        private boolean hasMatches = false;
+
+        Session(String id, File directory) {
+            this.id = id;
+            this.directory = directory;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public File getDirectory() {
+            return directory;
+        }
+
+        public ReentrantLock getLock() {
+            return lock;
+        }
+
+        public String getQueryPath() {
+            return new File(directory, "query.txt").getPath();
+        }
+
+        /** True once a step completed, so the next one can reuse its matches. */
+        public boolean hasMatches() {
+            return hasMatches;
+        }
+
+        public byte[] getQuery() {
+            return query;
+        }
+
+        public MatchStore getMatches() {
+            return matches;
+        }
+
+        /** Suggestions of the last step as a JSON array, or null. */
+        public String getResults() {
+            return results;
+        }
+
+        /**
+         * Record a completed step.
+         */
+        public void update(byte[] query, MatchStore matches, String results) {
+            this.query = query;
+            this.matches = matches;
+            this.results = results;
+            this.hasMatches = true;
+        }
+
+        /** Forget the previous steps; the next query searches everything. */
+        public void reset() {
+            query = null;
+            matches = null;
+            results = null;
+            hasMatches = false;
+        }
+
+        void touch() {
+            lastAccess = System.currentTimeMillis();
+        }
+    }
+
+    public SessionManager(File root, long idleTimeoutMs) {
+        this.root = root;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, Math.min(idleTimeoutMs / 2, 60_000));
+        sweeper.scheduleWithFixedDelay(
+            this::evictIdle,
+            period,
+            period,
+            TimeUnit.MILLISECONDS
+        );
+    }
+
+    public Session create() throws IOException {
+        String id = UUID.randomUUID().toString();
+        File directory = new File(root, id);
+        if (!directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        Session session = new Session(id, directory);
+        sessions.put(id, session);
+        return session;
+    }
+
+    /**
+     * @return the session, marked as used now, or null when it does not
+     *         exist or was evicted
+     */
+    public Session get(String id) {
+        Session session = id == null ? null : sessions.get(id);
+        if (session != null) {
+            session.touch();
+        }
+        return session;
+    }
+
+    public boolean close(String id) {
+        Session session = sessions.remove(id);
+        if (session == null) {
+            return false;
+        }
+        session.lock.lock();
+        try {
+            discard(session);
+        } finally {
+            session.lock.unlock();
+        }
+        return true;
+    }
+
+    /** False once the session was closed or evicted. */
+    public boolean isOpen(Session session) {
+        return sessions.get(session.id) == session;
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    void evictIdle() {
+        long now = System.currentTimeMillis();
+        for (Session session : sessions.values()) {
+            // a session busy with a step is never idle
+            if (
+                now - session.lastAccess > idleTimeoutMs &&
+                session.lock.tryLock()
+            ) {
+                try {
+                    if (now - session.lastAccess > idleTimeoutMs) {
+                        sessions.remove(session.id);
+                        discard(session);
+                        System.out.println("Evicted idle session " + session.id);
+                    }
+                } finally {
+                    session.lock.unlock();
+                }
+            }
+        }
+    }
+
+    private void discard(Session session) {
+        session.reset();
+        File[] files = session.directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().equals("G.bin")) {
+                    MatchStore.forget(file.getPath());
+                }
+                file.delete();
+            }
+        }
+        session.directory.delete();
+    }
+
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+}
@@ -1,13 +1,17 @@
 package QACMain;
 
 import java.util.*;
-import model.Edge;
-import model.Graph;
-import model.Vertex;
+import model.CSRGraph;
 
+/**
+ * Subgraph test on the CSR form of both graphs.
+ */
 public class SubgraphValidator {
 
-    public static boolean isSubgraph(Graph queryGraph, Graph targetGraph) {
+    public static boolean isSubgraph(
+        CSRGraph queryGraph,
+        CSRGraph targetGraph
+    ) {
         if (queryGraph == null || targetGraph == null) {
             return false;
         }
@@ -20,8 +24,8 @@ public class SubgraphValidator {
     }
 
     private static boolean vf2SubgraphMatch(
-        Graph queryGraph,
-        Graph targetGraph
+        CSRGraph queryGraph,
+        CSRGraph targetGraph
     ) {
         if (queryGraph.size() == 0) {
             return true;
@@ -52,16 +56,14 @@ public class SubgraphValidator {
     }
 
     private static boolean recursiveMatch(
-        Graph queryGraph,
-        Graph targetGraph,
+        CSRGraph queryGraph,
+        CSRGraph targetGraph,
         int queryNode,
         int targetNode,
         Map<Integer, Integer> queryToTarget,
         Map<Integer, Integer> targetToQuery
     ) {
-        if (
-            queryGraph.get(queryNode).label != targetGraph.get(targetNode).label
-        ) {
+        if (queryGraph.label(queryNode) != targetGraph.label(targetNode)) {
             return false;
         }
 
@@ -129,71 +131,40 @@ public class SubgraphValidator {
     }
 
     private static boolean checkEdgeCompatibility(
-        Graph queryGraph,
-        Graph targetGraph,
+        CSRGraph query,
+        CSRGraph target,
         int queryNode,
         int targetNode,
         Map<Integer, Integer> queryToTarget,
         Map<Integer, Integer> targetToQuery
     ) {
-        Vertex queryVertex = queryGraph.get(queryNode);
-        Vertex targetVertex = targetGraph.get(targetNode);
-
-        for (Edge queryEdge : queryVertex.edge) {
-            int queryNeighbor = queryEdge.to;
-
-            if (queryToTarget.containsKey(queryNeighbor)) {
-                int targetNeighbor = queryToTarget.get(queryNeighbor);
-
-                boolean edgeFound = false;
-                for (Edge targetEdge : targetVertex.edge) {
-                    if (
-                        targetEdge.to == targetNeighbor &&
-                        targetEdge.eLabel == queryEdge.eLabel
-                    ) {
-                        edgeFound = true;
-                        break;
-                    }
-                }
+        for (
+            int s = query.begin(queryNode), end = query.end(queryNode);
+            s < end;
+            ++s
+        ) {
+            Integer targetNeighbor = queryToTarget.get(query.target(s));
 
-                if (!edgeFound) {
-                    return false;
-                }
+            if (
+                targetNeighbor != null &&
+                !target.hasEdge(targetNode, targetNeighbor, query.edgeLabel(s))
+            ) {
+                return false;
             }
         }
 
-        for (int i = 0; i < queryGraph.size(); i++) {
-            if (queryToTarget.containsKey(i)) {
-                int mappedTargetNode = queryToTarget.get(i);
-
-                boolean queryEdgeExists = false;
-                int queryEdgeLabel = -1;
-                for (Edge queryEdge : queryGraph.get(i).edge) {
-                    if (queryEdge.to == queryNode) {
-                        queryEdgeExists = true;
-                        queryEdgeLabel = queryEdge.eLabel;
-                        break;
-                    }
-                }
+        for (Map.Entry<Integer, Integer> entry : queryToTarget.entrySet()) {
+            int slot = query.findSlot(entry.getKey(), queryNode);
 
-                if (queryEdgeExists) {
-                    boolean targetEdgeExists = false;
-                    for (Edge targetEdge : targetGraph.get(
-                        mappedTargetNode
-                    ).edge) {
-                        if (
-                            targetEdge.to == targetNode &&
-                            targetEdge.eLabel == queryEdgeLabel
-                        ) {
-                            targetEdgeExists = true;
-                            break;
-                        }
-                    }
-
-                    if (!targetEdgeExists) {
-                        return false;
-                    }
-                }
+            if (
+                slot != -1 &&
+                !target.hasEdge(
+                    entry.getValue(),
+                    targetNode,
+                    query.edgeLabel(slot)
+                )
+            ) {
+                return false;
             }
         }
 
@@ -0,0 +1,21 @@
+package QACMain;
+
+import java.util.List;
+import model.Graph;
+
+/**
+ * Receives the current best suggestions while the mining stage is still
+ * running, e.g. to stream them to a client before result.txt is written.
+ *
+ * Called by PatternReporter with its lock held, which every mining worker
+ * needs, so implementations must return quickly and must not block, e.g. on
+ * I/O; hand the list to another thread instead.
+ */
+public interface SuggestionListener {
+    /**
+     * @param suggestions the current top-k without isomorphic duplicates,
+     *        ordered like result.txt; the list and graphs are not modified
+     *        afterwards
+     */
+    void onSuggestions(List<Graph> suggestions);
+}
@@ -5,6 +5,7 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashMap;
@@ -16,25 +17,29 @@ import java.util.NavigableMap;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.Vector;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import model.CSRGraph;
 import model.DFS;
 import model.DFSCode;
 import model.Edge;
+import model.ExtensionBuckets;
+import model.EdgeSet;
 import model.Graph;
+import model.GraphTextParser;
 import model.History;
-import model.PDFS;
+import model.LabelRanks;
 import model.Projected;
+import model.SlotList;
 import model.Vertex;
 
 public class TEDSProcessor {
 
-    private final ArrayList<Graph> TRANS;
+    private final ArrayList<CSRGraph> TRANS;
     public DFSCode DFS_CODE;
     private final DFSCode DFS_CODE_IS_MIN;
     private final Graph GRAPH_IS_MIN;
@@ -47,26 +52,28 @@ public class TEDSProcessor {
     private NavigableMap<Integer, NavigableMap<Integer, Integer>> singleVertex;
     private NavigableMap<Integer, Integer> singleVertexLabel;
 
-    private static int recursionCount = 0;
-    private static long startTime = 0;
+    private int recursionCount = 0;
     private static final int PROGRESS_INTERVAL = 10000;
 
     private GraphIndexManager indexManager;
     private PatternReporter reporter;
     private GraphExtensionManager extensionManager;
+    // ranks of the labels, which extension keys hold, see rankLabels
+    private LabelRanks labelRanks;
 
-    private static Graph queryGraphReference = null;
-
-    public static Graph getQueryGraphReference() {
-        return queryGraphReference;
-    }
+    private Graph queryGraph = null;
 
     private long totalProjectTime = 0;
 
+    /** Database index of every graph in TRANS, except the trailing query. */
+    private int[] transIndexes;
+
     private ExecutorService executorService;
     private final int maxThreads = Runtime.getRuntime().availableProcessors();
+    // tasks discarded because their benefit bound cannot trigger a swap
+    private final AtomicLong boundPruned = new AtomicLong();
 
-    private List<ArrayList<Edge>> edgeListPool = new ArrayList<>();
+    private List<SlotList> slotListPool = new ArrayList<>();
 
     private long cacheHits = 0;
     private long cacheMisses = 0;
@@ -82,12 +89,12 @@ public class TEDSProcessor {
         executorService = Executors.newFixedThreadPool(maxThreads);
 
         for (int i = 0; i < 100; i++) {
-            edgeListPool.add(new ArrayList<Edge>());
+            slotListPool.add(new SlotList());
         }
     }
 
     void run(
-        FileReader reader,
+        GraphDatabase database,
         FileWriter writers,
         Arguments arguments,
         FileReader queryReader
@@ -98,6 +105,7 @@ public class TEDSProcessor {
             indexManager = new GraphIndexManager(TRANS, arguments);
             reporter = new PatternReporter(TRANS, arguments, indexManager);
             reporter.setFileWriter(writers);
+            reporter.setListener(arguments.suggestionListener);
             extensionManager = new GraphExtensionManager(TRANS, arguments);
 
             try (
@@ -114,21 +122,24 @@ public class TEDSProcessor {
             os = writers;
             ID = 0;
             directed = false;
-            readMultipleGraphs(reader, arguments.gl);
+            readMultipleGraphs(database, arguments.gl);
             if (TRANS.isEmpty()) {
                 System.out.println("No valid graph found. Exiting.");
                 return;
             }
-            read(queryReader);
+            int queryStart = TRANS.size();
+            Graph query = read(queryReader);
+            rankLabels(database, queryStart);
             Long Time1 = System.currentTimeMillis();
             if (
                 arg.hasInitialPatternGenerator && !arg.strategy.equals("greedy")
             ) {
                 InitialPatternGenerator();
+                reporter.publish();
             }
             Long Time2 = System.currentTimeMillis();
 
-            runIntern();
+            runIntern(query);
 
             Long Time3 = System.currentTimeMillis();
             System.out.println(
@@ -176,7 +187,7 @@ public class TEDSProcessor {
                 );
                 int totalegdes = 0;
                 for (int i = 0; i < TRANS.size(); i++) {
-                    totalegdes += TRANS.get(i).getEdgeSize();
+                    totalegdes += TRANS.get(i).edgeSize();
                 }
                 System.out.println("totalegdes : " + totalegdes);
                 System.out.println(
@@ -194,6 +205,37 @@ public class TEDSProcessor {
         }
     }
 
+    /**
+     * Rank the labels of the database and of the query graphs, which
+     * extension keys hold instead of the labels themselves.
+     */
+    private void rankLabels(GraphDatabase database, int queryStart)
+        throws IOException {
+        int[] known = database.labels();
+        int count = known.length + 1;
+        for (int i = queryStart; i < TRANS.size(); i++) {
+            count += TRANS.get(i).size() + TRANS.get(i).slotCount();
+        }
+        int[] labels = Arrays.copyOf(known, count);
+        int n = known.length;
+        // DFSCode.toGraph labels vertices the code leaves open with 0
+        labels[n++] = 0;
+        for (int i = queryStart; i < TRANS.size(); i++) {
+            CSRGraph g = TRANS.get(i);
+            for (int v = 0; v < g.size(); v++) {
+                labels[n++] = g.label(v);
+            }
+            for (int s = 0; s < g.slotCount(); s++) {
+                labels[n++] = g.edgeLabel(s);
+            }
+        }
+        try {
+            labelRanks = LabelRanks.of(labels);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
     private void printFinalPerformanceAnalysis() {
         System.out.printf(
             "Processing completed: %.1fs | Memory: %.0fMB\n",
@@ -206,7 +248,7 @@ public class TEDSProcessor {
     }
 
     private void handleGreedyStrategy() throws IOException {
-        Set<Integer> coverededges_curall = new HashSet<Integer>();
+        EdgeSet coverededges_curall = new EdgeSet();
         Set<Long> selectPatternIndex = new HashSet<Long>();
         int tempcount = 0;
 
@@ -216,13 +258,9 @@ public class TEDSProcessor {
             for (int k = 0; k < reporter.getAllGraphs().size(); k++) {
                 long id = (long) k;
                 if (selectPatternIndex.contains(id)) continue;
-                int gain = 0;
-                Set<Integer> converages = indexManager
-                    .getCoveredEdges_patterns()
-                    .get(id);
-                for (Integer a : converages) {
-                    if (!coverededges_curall.contains(a)) gain++;
-                }
+                EdgeSet converages = indexManager.getCoverage().edges(k);
+                if (converages == null) continue;
+                int gain = converages.countNotIn(coverededges_curall);
                 if (gain > maxgain) {
                     maxgain = gain;
                     maxid = id;
@@ -233,7 +271,7 @@ public class TEDSProcessor {
 
             selectPatternIndex.add(maxid);
             coverededges_curall.addAll(
-                indexManager.getCoveredEdges_patterns().get(maxid)
+                indexManager.getCoverage().edges((int) maxid)
             );
             tempcount++;
         }
@@ -267,16 +305,16 @@ public class TEDSProcessor {
         }
 
         int countofcoverededges = 0;
-        Set<Integer> temp = new HashSet<Integer>();
+        EdgeSet temp = new EdgeSet();
         for (long i : selectPatternIndex) {
-            temp.addAll(indexManager.getCoveredEdges_patterns().get(i));
+            temp.addAll(indexManager.getCoverage().edges((int) i));
         }
         countofcoverededges = temp.size();
 
         System.out.println("Greedy, covered edges: " + countofcoverededges);
         int totalegdes = 0;
         for (int i = 0; i < TRANS.size(); i++) {
-            totalegdes += TRANS.get(i).getEdgeSize();
+            totalegdes += TRANS.get(i).edgeSize();
         }
         System.out.println("Total edges: " + totalegdes);
         System.out.println(
@@ -284,75 +322,59 @@ public class TEDSProcessor {
         );
     }
 
-    private void read(FileReader is) throws IOException {
+    /**
+     * Append the query graphs to TRANS.
+     *
+     * @return the last query graph read, or the last graph of TRANS when
+     *         the reader holds none
+     */
+    private Graph read(FileReader is) throws IOException {
+        Graph last = null;
         int count = 0;
         BufferedReader read = new BufferedReader(is);
         while (true) {
             Graph g = new Graph(directed);
             read = g.read(read);
             if (g.isEmpty()) break;
-            TRANS.add(g);
+            last = g;
+            TRANS.add(CSRGraph.of(g));
             count++;
 
             if (count == arg.numberofgraphs) break;
         }
         read.close();
+        return last != null ? last : TRANS.get(TRANS.size() - 1).toGraph();
     }
 
     private void InitialPatternGenerator() throws IOException {
-        ArrayList<Edge> edges = new ArrayList<>();
-        NavigableMap<
-            Integer,
-            NavigableMap<Integer, NavigableMap<Integer, Projected>>
-        > root = new TreeMap<>();
+        SlotList edges = new SlotList();
+        ExtensionBuckets root = new ExtensionBuckets();
         for (int id = 0; id < TRANS.size(); ++id) {
-            Graph g = TRANS.get(id);
+            CSRGraph g = TRANS.get(id);
             for (int from = 0; from < g.size(); ++from) {
-                if (Misc.getForwardRoot(g, g.get(from), edges)) {
-                    for (Edge it : edges) {
-                        int key_1 = g.get(from).label;
-                        NavigableMap<
-                            Integer,
-                            NavigableMap<Integer, Projected>
-                        > root_1 = root.computeIfAbsent(key_1, k ->
-                            new TreeMap<>()
+                if (Misc.getForwardRoot(g, from, edges)) {
+                    for (int k = 0; k < edges.size(); k++) {
+                        int it = edges.get(k);
+                        long key = ExtensionBuckets.rootKey(
+                            labelRanks.rank(g.label(from)),
+                            labelRanks.rank(g.edgeLabel(it)),
+                            labelRanks.rank(g.label(g.target(it)))
                         );
-                        int key_2 = it.eLabel;
-                        NavigableMap<Integer, Projected> root_2 =
-                            root_1.computeIfAbsent(key_2, k -> new TreeMap<>());
-                        int key_3 = g.get(it.to).label;
-                        Projected root_3 = root_2.get(key_3);
-                        if (root_3 == null) {
-                            root_3 = new Projected();
-                            root_2.put(key_3, root_3);
-                        }
-                        root_3.push(id, it, null);
+                        root.push(key, id, it, -1);
                     }
                 }
             }
         }
-        for (Entry<
-            Integer,
-            NavigableMap<Integer, NavigableMap<Integer, Projected>>
-        > fromLabel : root.entrySet()) {
-            for (Entry<
-                Integer,
-                NavigableMap<Integer, Projected>
-            > eLabel : fromLabel.getValue().entrySet()) {
-                for (Entry<Integer, Projected> toLabel : eLabel
-                    .getValue()
-                    .entrySet()) {
-                    DFS_CODE.push(
-                        0,
-                        1,
-                        fromLabel.getKey(),
-                        eLabel.getKey(),
-                        toLabel.getKey()
-                    );
-                    project_Initial(toLabel.getValue());
-                    DFS_CODE.pop();
-                }
-            }
+        for (long key : root.keys()) {
+            DFS_CODE.push(
+                0,
+                1,
+                labelRanks.label(ExtensionBuckets.fromLabel(key)),
+                labelRanks.label(ExtensionBuckets.eLabel(key)),
+                labelRanks.label(ExtensionBuckets.toLabel(key))
+            );
+            project_Initial(root.find(key));
+            DFS_CODE.pop();
         }
         System.out.println(
             "After initial swapping, covered edges: " +
@@ -360,7 +382,7 @@ public class TEDSProcessor {
         );
         int totalegdes = 0;
         for (int i = 0; i < TRANS.size(); i++) {
-            totalegdes += TRANS.get(i).getEdgeSize();
+            totalegdes += TRANS.get(i).edgeSize();
         }
         System.out.println("Total edges: " + totalegdes);
         System.out.println(
@@ -372,7 +394,7 @@ public class TEDSProcessor {
         );
     }
 
-    private void runIntern() throws IOException {
+    private void runIntern(Graph q) throws IOException {
         if (arg.minNodeNum <= 1) {
             /*
              * Do single node handling, as the normal gSpan DFS code based
@@ -381,7 +403,7 @@ public class TEDSProcessor {
              */
             for (int id = 0; id < TRANS.size(); ++id) {
                 for (int nid = 0; nid < TRANS.get(id).size(); ++nid) {
-                    int key = TRANS.get(id).get(nid).label;
+                    int key = TRANS.get(id).label(nid);
 
                     singleVertex.computeIfAbsent(id, k -> new TreeMap<>());
                     if (singleVertex.get(id).get(key) == null) {
@@ -431,50 +453,8 @@ public class TEDSProcessor {
             reporter.reportSingle(g, gyCounts);
         }
 
-        ArrayList<Edge> edges = new ArrayList<>();
-
-        NavigableMap<
-            Integer,
-            NavigableMap<Integer, NavigableMap<Integer, Projected>>
-        > root = new TreeMap<>();
-
-        for (int id = 0; id < TRANS.size(); ++id) {
-            Graph g = TRANS.get(id);
-            for (int from = 0; from < g.size(); ++from) {
-                if (Misc.getForwardRoot(g, g.get(from), edges)) {
-                    for (Edge it : edges) {
-                        int key_1 = g.get(from).label;
-                        NavigableMap<
-                            Integer,
-                            NavigableMap<Integer, Projected>
-                        > root_1 = root.computeIfAbsent(key_1, k ->
-                            new TreeMap<>()
-                        );
-                        int key_2 = it.eLabel;
-                        NavigableMap<Integer, Projected> root_2 =
-                            root_1.computeIfAbsent(key_2, k -> new TreeMap<>());
-                        int key_3 = g.get(it.to).label;
-                        Projected root_3 = root_2.get(key_3);
-                        if (root_3 == null) {
-                            root_3 = new Projected();
-                            root_2.put(key_3, root_3);
-                        }
-
-                        root_3.push(0, it, null);
-                    }
-                }
-            }
-        }
-
-        Graph q = TRANS.get(TRANS.size() - 1);
-
-        queryGraphReference = q;
-
-        Map<Integer, Integer> queryLabels = new HashMap<>();
-        for (int i = 0; i < q.size(); i++) {
-            queryLabels.put(i, q.get(i).label);
-        }
-        DFSCode.setQueryNodeLabels(queryLabels);
+        queryGraph = q;
+        reporter.setQueryGraph(q);
 
         DFS_CODE.clear();
 
@@ -566,109 +546,92 @@ public class TEDSProcessor {
             performVF2ExtensionFromQuery(q);
         }
 
-        Projected qProjected = collectProjectedForQ(q, root);
+        Projected qProjected = collectProjectedForQ(q);
 
         if (!qProjected.isEmpty()) {
             project(qProjected);
         }
     }
 
-    private Projected collectProjectedForQ(
-        Graph q,
-        NavigableMap<
-            Integer,
-            NavigableMap<Integer, NavigableMap<Integer, Projected>>
-        > root
-    ) {
-        Projected qProjected = new Projected();
-
+    private Projected collectProjectedForQ(Graph q) {
         if (DFS_CODE.isEmpty()) {
-            return qProjected;
+            return new Projected();
         }
 
-        for (int graphIndex = 0; graphIndex < TRANS.size() - 1; graphIndex++) {
-            try {
-                BufferedReader reader = new BufferedReader(
-                    new FileReader(arg.graphgPath)
-                );
-                String line;
-                int currentLine = 0;
-
-                reader.readLine();
-
-                while (
-                    (line = reader.readLine()) != null &&
-                    currentLine <= graphIndex
-                ) {
-                    if (currentLine == graphIndex) {
-                        int startBracket = line.indexOf("[");
-                        int endBracket = line.indexOf("]");
-                        if (startBracket != -1 && endBracket != -1) {
-                            String[] numbers = line
-                                .substring(startBracket + 1, endBracket)
-                                .split(", ");
-                            int[] targetNodes = new int[numbers.length];
-                            for (int i = 0; i < numbers.length; i++) {
-                                targetNodes[i] = Integer.parseInt(numbers[i]);
-                            }
-
-                            Graph G = TRANS.get(graphIndex);
+        MatchStore matches;
+        try {
+            matches = MatchStore.load(arg.matchStorePath);
+        } catch (IOException e) {
+            System.err.println("Error reading match store: " + e.getMessage());
+            return new Projected();
+        }
+        if (matches == null) {
+            return new Projected();
+        }
 
-                            PDFS prevMatch = null;
-                            for (int i = 0; i < DFS_CODE.size(); i++) {
-                                DFS dfsEdge = DFS_CODE.get(i);
+        // one table per DFS edge, each extending the one before
+        Projected[] levels = new Projected[DFS_CODE.size()];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = new Projected(i == 0 ? null : levels[i - 1]);
+        }
 
-                                int fromNode = targetNodes[dfsEdge.from];
-                                int toNode = targetNodes[dfsEdge.to];
-                                int edgeLabel = dfsEdge.eLabel;
+        for (int m = 0; m < matches.size(); m++) {
+            int graphIndex = transIndexOf(matches.graphId(m));
+            if (graphIndex < 0) {
+                continue;
+            }
+            CSRGraph G = TRANS.get(graphIndex);
 
-                                Edge g0Edge = null;
-                                for (Edge e : G.get(fromNode).edge) {
-                                    if (
-                                        e.to == toNode && e.eLabel == edgeLabel
-                                    ) {
-                                        g0Edge = e;
-                                        break;
-                                    }
-                                }
+            for (int k = 0; k < matches.embeddingCount(m); k++) {
+                int[] targetNodes = matches.embedding(m, k);
+                int prevRow = -1;
+                for (int i = 0; i < DFS_CODE.size(); i++) {
+                    DFS dfsEdge = DFS_CODE.get(i);
+                    if (
+                        dfsEdge.from >= targetNodes.length ||
+                        dfsEdge.to >= targetNodes.length
+                    ) {
+                        break;
+                    }
 
-                                if (g0Edge != null) {
-                                    Edge edge = new Edge();
-                                    edge.from = fromNode;
-                                    edge.to = toNode;
-                                    edge.eLabel = edgeLabel;
-                                    edge.id = g0Edge.id;
-
-                                    PDFS currentMatch = new PDFS(
-                                        graphIndex,
-                                        edge,
-                                        prevMatch
-                                    );
+                    int fromNode = targetNodes[dfsEdge.from];
+                    int toNode = targetNodes[dfsEdge.to];
+                    int edgeLabel = dfsEdge.eLabel;
 
-                                    if (i == DFS_CODE.size() - 1) {
-                                        qProjected.push(
-                                            graphIndex,
-                                            edge,
-                                            prevMatch
-                                        );
-                                    }
-                                    prevMatch = currentMatch;
-                                } else {
-                                    break;
-                                }
-                            }
+                    int g0Edge = -1;
+                    for (int s = G.begin(fromNode); s < G.end(fromNode); s++) {
+                        if (
+                            G.target(s) == toNode &&
+                            G.edgeLabel(s) == edgeLabel
+                        ) {
+                            g0Edge = s;
+                            break;
                         }
+                    }
+
+                    if (g0Edge != -1) {
+                        levels[i].push(graphIndex, g0Edge, prevRow);
+                        prevRow = levels[i].size() - 1;
+                    } else {
                         break;
                     }
-                    currentLine++;
                 }
-                reader.close();
-            } catch (IOException e) {
-                e.printStackTrace();
             }
         }
 
-        return qProjected;
+        return levels[levels.length - 1];
+    }
+
+    /**
+     * @return the position in TRANS of the database graph a VF2 graph id
+     *         refers to, or -1 when it was not selected
+     */
+    private int transIndexOf(int graphId) {
+        if (transIndexes == null) {
+            return graphId < TRANS.size() - 1 ? graphId : -1;
+        }
+        int index = Arrays.binarySearch(transIndexes, graphId);
+        return index >= 0 ? index : -1;
     }
 
     private void project(Projected projected) throws IOException {
@@ -696,15 +659,17 @@ public class TEDSProcessor {
         final DFSCode dfsCode;
         final Projected projected;
         final int depth;
-        final Graph localGraphIsMin;
-        final DFSCode localDfsCodeIsMin;
+        // upper bound of the benefit score in its subtree, see
+        // GraphIndexManager.benefitBound
+        long bound = 0;
+        // child indexes leading here from the initial task, see
+        // SearchScheduler
+        int[] path = new int[0];
 
         IndependentTask(DFSCode dfsCode, Projected projected, int depth) {
             this.dfsCode = cloneStaticDfsCode(dfsCode);
             this.projected = projected;
             this.depth = depth;
-            this.localGraphIsMin = new Graph(false);
-            this.localDfsCodeIsMin = new DFSCode();
         }
 
         private static DFSCode cloneStaticDfsCode(DFSCode original) {
@@ -725,106 +690,111 @@ public class TEDSProcessor {
 
     private void projectCompletelyNonRecursive(Projected initialProjected)
         throws IOException {
-        BlockingQueue<IndependentTask> currentTasks =
-            new LinkedBlockingQueue<>();
-        BlockingQueue<IndependentTask> nextTasks = new LinkedBlockingQueue<>();
-
-        currentTasks.offer(
-            new IndependentTask(
-                DFS_CODE,
-                initialProjected,
-                DFS_CODE.countNode()
-            )
+        SearchScheduler.Frontier<IndependentTask> frontier =
+            arg.scheduler.newFrontier();
+        IndependentTask initialTask = new IndependentTask(
+            DFS_CODE,
+            initialProjected,
+            DFS_CODE.countNode()
         );
-
-        int currentDepth = DFS_CODE.countNode();
-        int totalProcessed = 0;
+        int[] initialGraphs = indexManager.graphIds(initialProjected);
+        synchronized (reporter) {
+            initialTask.bound = indexManager.benefitBound(initialGraphs);
+        }
+        offer(frontier, initialTask);
 
         long maxSearchDepth = Math.min(arg.maxNodeNum + 5, 25);
 
-        long startTime = System.currentTimeMillis();
-        long maxRunTime = 10 * 60 * 1000;
-        long maxTotalTasks = 500000L;
+        SearchBudget budget = arg.budget;
+        ExecutorCompletionService<List<IndependentTask>> completion =
+            new ExecutorCompletionService<>(executorService);
+        int running = 0;
+        int maxRunning = maxThreads * 2;
+        // counted as tasks leave the frontier, not as workers finish
+        long handedOut = 0;
+        int deepest = -1;
 
         System.out.print("Search depth: ");
 
-        while (!currentTasks.isEmpty() && currentDepth <= maxSearchDepth) {
-            if (System.currentTimeMillis() - startTime > maxRunTime) {
-                break;
-            }
+        // workers expand tasks as they become free; there is no barrier
+        // between depths, the scheduler alone decides what runs next
+        while (!frontier.isEmpty() || running > 0) {
+            while (
+                running < maxRunning &&
+                !frontier.isEmpty() &&
+                !budget.isTruncated()
+            ) {
+                if (budget.isExpired()) {
+                    budget.truncate("time");
+                    break;
+                }
+                if (handedOut >= budget.maxTasks()) {
+                    budget.truncate("tasks");
+                    break;
+                }
 
-            if (totalProcessed > maxTotalTasks) {
+                IndependentTask task = frontier.poll();
+                if (task.depth > maxSearchDepth) {
+                    continue;
+                }
+                if (task.depth > deepest) {
+                    deepest = task.depth;
+                    System.out.print(deepest + " ");
+                    synchronized (reporter) {
+                        reporter.publish();
+                    }
+                }
+                completion.submit(() -> expand(task));
+                running++;
+                handedOut++;
+            }
+            if (running == 0) {
                 break;
             }
 
-            int currentTaskCount = currentTasks.size();
-
-            long maxTasksPerDepth = 1000000L;
-            if (currentTaskCount > maxTasksPerDepth) {
-                List<IndependentTask> filteredTasks = filterMostPromisingTasks(
-                    currentTasks,
-                    (int) (maxTasksPerDepth * 0.8)
-                );
-                currentTasks.clear();
-                currentTasks.addAll(filteredTasks);
-                currentTaskCount = currentTasks.size();
+            try {
+                List<IndependentTask> children = completion.take().get();
+                if (!budget.isTruncated()) {
+                    for (IndependentTask child : children) {
+                        offer(frontier, child);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {} finally {
+                running--;
             }
+        }
 
-            System.out.print(currentDepth + " ");
+        System.out.println();
 
-            List<IndependentTask> batchTasks = new ArrayList<>();
-            currentTasks.drainTo(batchTasks);
+        synchronized (reporter) {
+            reporter.publish();
+        }
 
-            int batchSize = Math.max(
-                1,
-                Math.min(batchTasks.size() / (maxThreads * 2), 1000)
+        if (boundPruned.get() > 0) {
+            System.out.println(
+                "Pruned " +
+                boundPruned.get() +
+                " tasks whose potential coverage could not trigger a swap"
+            );
+        }
+        if (frontier.dropped() > 0) {
+            System.out.println(
+                "Scheduler " +
+                arg.scheduler +
+                " dropped " +
+                frontier.dropped() +
+                " tasks"
             );
-            AtomicInteger completedTasks = new AtomicInteger(0);
-
-            List<CompletableFuture<List<IndependentTask>>> futures =
-                new ArrayList<>();
-
-            for (int i = 0; i < batchTasks.size(); i += batchSize) {
-                int endIndex = Math.min(i + batchSize, batchTasks.size());
-                List<IndependentTask> batch = batchTasks.subList(i, endIndex);
-
-                CompletableFuture<List<IndependentTask>> future =
-                    CompletableFuture.supplyAsync(
-                        () -> {
-                            List<IndependentTask> newTasks = new ArrayList<>();
-                            for (IndependentTask task : batch) {
-                                try {
-                                    if (shouldPrune(task.projected, false)) {
-                                        continue;
-                                    }
-                                    newTasks.addAll(
-                                        processIndependentTask(task)
-                                    );
-                                } catch (Exception e) {}
-                            }
-                            return newTasks;
-                        },
-                        executorService
-                    );
-
-                futures.add(future);
-            }
-
-            for (CompletableFuture<List<IndependentTask>> future : futures) {
-                try {
-                    List<IndependentTask> newTasks = future.get();
-                    nextTasks.addAll(newTasks);
-                    totalProcessed += newTasks.size();
-                } catch (Exception e) {}
-            }
-
-            currentTasks = nextTasks;
-            nextTasks = new LinkedBlockingQueue<>();
-            currentDepth++;
         }
 
-        System.out.println();
+        if (budget.isTruncated()) {
+            return;
+        }
 
+        int currentDepth = deepest + 1;
         if (currentDepth < arg.maxNodeNum) {
             System.out.println(
                 "Search depth " +
@@ -834,24 +804,117 @@ public class TEDSProcessor {
                 ", starting VF2 graph extension..."
             );
 
-            if (currentTasks.isEmpty()) {
+            List<IndependentTask> remaining = new ArrayList<>();
+            for (
+                IndependentTask task = frontier.poll();
+                task != null;
+                task = frontier.poll()
+            ) {
+                remaining.add(task);
+            }
+
+            if (remaining.isEmpty()) {
                 System.out.println(
                     "Current task queue empty, getting extension base from reported patterns"
                 );
                 performGraphExtensionFromReported();
             } else {
-                performGraphExtension(currentTasks);
+                performGraphExtension(remaining);
             }
         }
     }
 
-    private void performGraphExtension(
-        BlockingQueue<IndependentTask> incompleteTasks
+    private void offer(
+        SearchScheduler.Frontier<IndependentTask> frontier,
+        IndependentTask task
     ) {
+        frontier.offer(
+            task,
+            task.path,
+            task.depth,
+            task.bound,
+            task.projected
+        );
+    }
+
+    /**
+     * Expand one task on a worker.
+     *
+     * @return its extensions that may still trigger a swap, each with its
+     *         benefit bound
+     */
+    private List<IndependentTask> expand(IndependentTask task) {
+        if (arg.budget.isExpired()) {
+            arg.budget.truncate("time");
+            return Collections.emptyList();
+        }
         try {
-            List<IndependentTask> tasksToExtend = new ArrayList<>();
-            incompleteTasks.drainTo(tasksToExtend);
+            if (shouldPrune(task.projected, false)) {
+                return Collections.emptyList();
+            }
+            // re-check against the current top-k, which may have changed
+            // since the task was queued; the scans over the embeddings stay
+            // outside the lock
+            int[] graphs = indexManager.graphIds(task.projected);
+            synchronized (reporter) {
+                task.bound = indexManager.benefitBound(graphs);
+                if (cannotSwap(task.bound)) {
+                    boundPruned.incrementAndGet();
+                    return Collections.emptyList();
+                }
+            }
+
+            List<IndependentTask> children = processIndependentTask(task);
+            List<IndependentTask> kept = new ArrayList<>(children.size());
+            for (int i = 0; i < children.size(); i++) {
+                int[] path = Arrays.copyOf(task.path, task.path.length + 1);
+                path[task.path.length] = i;
+                children.get(i).path = path;
+            }
+            int[][] childGraphs = new int[children.size()][];
+            for (int i = 0; i < children.size(); i++) {
+                childGraphs[i] = indexManager.graphIds(
+                    children.get(i).projected
+                );
+            }
+            synchronized (reporter) {
+                for (int i = 0; i < children.size(); i++) {
+                    IndependentTask child = children.get(i);
+                    child.bound = indexManager.benefitBound(childGraphs[i]);
+                    if (cannotSwap(child.bound)) {
+                        boundPruned.incrementAndGet();
+                    } else {
+                        kept.add(child);
+                    }
+                }
+            }
+            return kept;
+        } catch (Exception e) {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * @return true when the top-k is full and a pattern whose benefit is at
+     *         most bound cannot replace the minimum pattern under the current
+     *         swap threshold; call with the reporter locked
+     *
+     * Dropping a subtree on this is a heuristic, not an exact cut: a later
+     * swap can lower the threshold through a smaller minimum score, and a
+     * removed pattern uncovers edges and so raises bounds. A dropped subtree
+     * is not re-checked when that happens.
+     */
+    private boolean cannotSwap(long bound) {
+        return (
+            arg.hasPRM &&
+            !arg.strategy.equals("greedy") &&
+            reporter.getAllGraphs().size() >= arg.numberofpatterns &&
+            indexManager.isBelowSwapThreshold(bound)
+        );
+    }
 
+    private void performGraphExtension(List<IndependentTask> tasksToExtend) {
+        try {
             System.out.println(
                 "Starting graph extension, tasks to extend: " +
                 tasksToExtend.size()
@@ -1131,20 +1194,6 @@ public class TEDSProcessor {
         return dfsCode;
     }
 
-    private List<IndependentTask> filterMostPromisingTasks(
-        BlockingQueue<IndependentTask> tasks,
-        int maxTasks
-    ) {
-        List<IndependentTask> allTasks = new ArrayList<>();
-        tasks.drainTo(allTasks);
-
-        allTasks.sort((t1, t2) ->
-            Integer.compare(t2.projected.size(), t1.projected.size())
-        );
-
-        return allTasks.subList(0, Math.min(maxTasks, allTasks.size()));
-    }
-
     private List<IndependentTask> processIndependentTask(IndependentTask task)
         throws IOException {
         List<IndependentTask> newTasks = new ArrayList<>();
@@ -1241,39 +1290,50 @@ public class TEDSProcessor {
             int minLabel = task.dfsCode.get(0).fromLabel;
             int maxToc = task.dfsCode.get(rmPath.get(0)).to;
 
-            Map<String, Projected> forwardPureExtensions = new HashMap<>();
-            Map<String, Projected> forwardRmPathExtensions = new HashMap<>();
-            Map<String, Projected> backwardExtensions = new HashMap<>();
+            ExtensionBuckets forwardPureExtensions = new ExtensionBuckets(
+                task.projected
+            );
+            ExtensionBuckets forwardRmPathExtensions = new ExtensionBuckets(
+                task.projected
+            );
+            ExtensionBuckets backwardExtensions = new ExtensionBuckets(
+                task.projected
+            );
+            ExtensionBuckets relaxedBackwardExtensions = new ExtensionBuckets(
+                task.projected
+            );
 
             Map<String, Projected> chainCycleExtensions = new HashMap<>();
 
-            for (PDFS aProjected : task.projected) {
-                int id = aProjected.id;
+            Projected projected = task.projected;
+            History history = new History();
+            for (int row = 0; row < projected.size(); row++) {
+                int id = projected.id(row);
                 if (id >= TRANS.size()) continue;
 
                 try {
-                    History history = new History(TRANS.get(id), aProjected);
-                    ArrayList<Edge> edges = new ArrayList<>();
+                    CSRGraph graph = TRANS.get(id);
+                    history.load(graph, projected, row);
+                    SlotList edges = new SlotList();
 
                     if (
                         Misc.getForwardPure(
-                            TRANS.get(id),
+                            graph,
                             history.get(rmPath.get(0)),
                             minLabel,
                             history,
                             edges
                         )
                     ) {
-                        for (Edge edge : edges) {
-                            String key =
-                                maxToc +
-                                "-" +
-                                edge.eLabel +
-                                "-" +
-                                TRANS.get(id).get(edge.to).label;
-                            forwardPureExtensions
-                                .computeIfAbsent(key, k -> new Projected())
-                                .push(id, edge, aProjected);
+                        for (int k = 0; k < edges.size(); k++) {
+                            int edge = edges.get(k);
+                            long key = ExtensionBuckets.key(
+                                maxToc,
+                                maxToc + 1,
+                                labelRanks.rank(graph.edgeLabel(edge)),
+                                labelRanks.rank(graph.label(graph.target(edge)))
+                            );
+                            forwardPureExtensions.push(key, id, edge, row);
                         }
                     }
 
@@ -1281,75 +1341,84 @@ public class TEDSProcessor {
                         edges.clear();
                         if (
                             Misc.getForwardRmPath(
-                                TRANS.get(id),
+                                graph,
                                 history.get(i),
                                 minLabel,
                                 history,
                                 edges
                             )
                         ) {
-                            for (Edge edge : edges) {
-                                int fromVertex = task.dfsCode.get(i).from;
-                                String key =
-                                    fromVertex +
-                                    "-" +
-                                    edge.eLabel +
-                                    "-" +
-                                    TRANS.get(id).get(edge.to).label;
-                                forwardRmPathExtensions
-                                    .computeIfAbsent(key, k -> new Projected())
-                                    .push(id, edge, aProjected);
+                            for (int k = 0; k < edges.size(); k++) {
+                                int edge = edges.get(k);
+                                long key = ExtensionBuckets.key(
+                                    task.dfsCode.get(i).from,
+                                    maxToc + 1,
+                                    labelRanks.rank(graph.edgeLabel(edge)),
+                                    labelRanks.rank(
+                                        graph.label(graph.target(edge))
+                                    )
+                                );
+                                forwardRmPathExtensions.push(
+                                    key,
+                                    id,
+                                    edge,
+                                    row
+                                );
                             }
                         }
                     }
 
                     for (int i = history.size() - 1; i >= 1; --i) {
                         for (int j = i - 1; j >= 0; --j) {
-                            Edge e = Misc.getBackward(
-                                TRANS.get(id),
+                            int e = Misc.getBackward(
+                                graph,
                                 history.get(i),
                                 history.get(j),
                                 history
                             );
-                            if (e != null) {
-                                String key =
-                                    task.dfsCode.get(i).from +
-                                    "-" +
-                                    task.dfsCode.get(j).from +
-                                    "-" +
-                                    e.eLabel;
-                                backwardExtensions
-                                    .computeIfAbsent(key, k -> new Projected())
-                                    .push(id, e, aProjected);
+                            if (e != -1) {
+                                long key = ExtensionBuckets.key(
+                                    task.dfsCode.get(i).from,
+                                    task.dfsCode.get(j).from,
+                                    labelRanks.rank(graph.edgeLabel(e)),
+                                    -1
+                                );
+                                backwardExtensions.push(key, id, e, row);
                             }
 
                             if (
                                 isLongChainStructure(task.dfsCode) &&
                                 task.dfsCode.size() >= 4
                             ) {
-                                Edge relaxedE = Misc.getBackwardRelaxed(
-                                    TRANS.get(id),
+                                int relaxedE = Misc.getBackwardRelaxed(
+                                    graph,
                                     history.get(i),
                                     history.get(j),
                                     history
                                 );
                                 if (
-                                    relaxedE != null &&
+                                    relaxedE != -1 &&
                                     relaxedE != e &&
-                                    !isEdgeAlreadyExists(task.dfsCode, relaxedE)
+                                    !isEdgeAlreadyExists(
+                                        task.dfsCode,
+                                        graph.source(relaxedE),
+                                        graph.target(relaxedE)
+                                    )
                                 ) {
-                                    String relaxedKey =
-                                        task.dfsCode.get(i).from +
-                                        "-" +
-                                        task.dfsCode.get(j).from +
-                                        "-" +
-                                        relaxedE.eLabel +
-                                        "-relaxed";
-                                    backwardExtensions
-                                        .computeIfAbsent(relaxedKey, k ->
-                                            new Projected()
-                                        )
-                                        .push(id, relaxedE, aProjected);
+                                    long relaxedKey = ExtensionBuckets.key(
+                                        task.dfsCode.get(i).from,
+                                        task.dfsCode.get(j).from,
+                                        labelRanks.rank(
+                                            graph.edgeLabel(relaxedE)
+                                        ),
+                                        -1
+                                    );
+                                    relaxedBackwardExtensions.push(
+                                        relaxedKey,
+                                        id,
+                                        relaxedE,
+                                        row
+                                    );
                                 }
                             }
                         }
@@ -1366,7 +1435,7 @@ public class TEDSProcessor {
                                                                       history);
                             if (firstToLastEdge != null && isReasonableExtension(task.dfsCode, firstToLastEdge)) {
                                 String key = "chain-head-tail-" + firstToLastEdge.eLabel;
-                                chainCycleExtensions.computeIfAbsent(key, k -> new Projected()).push(id, firstToLastEdge, aProjected);
+                                chainCycleExtensions.computeIfAbsent(key, k -> new Projected()).push(id, firstToLastEdge, row);
 
                             }
                         }
@@ -1381,7 +1450,7 @@ public class TEDSProcessor {
                                                                    history);
                                 if (skipEdge != null && isReasonableExtension(task.dfsCode, skipEdge)) {
                                     String key = "chain-skip-" + i + "-" + j + "-" + skipEdge.eLabel;
-                                    chainCycleExtensions.computeIfAbsent(key, k -> new Projected()).push(id, skipEdge, aProjected);
+                                    chainCycleExtensions.computeIfAbsent(key, k -> new Projected()).push(id, skipEdge, row);
 
                                     skipConnections++;
                                 }
@@ -1395,104 +1464,25 @@ public class TEDSProcessor {
                 }
             }
 
-            for (Map.Entry<
-                String,
-                Projected
-            > entry : forwardPureExtensions.entrySet()) {
-                String[] parts = entry.getKey().split("-");
-                if (parts.length == 3) {
-                    DFSCode newDfsCode = cloneDfsCode(task.dfsCode);
-                    newDfsCode.push(
-                        Integer.parseInt(parts[0]),
-                        maxToc + 1,
-                        -1,
-                        Integer.parseInt(parts[1]),
-                        Integer.parseInt(parts[2])
-                    );
-                    extensions.add(
-                        new IndependentTask(
-                            newDfsCode,
-                            entry.getValue(),
-                            task.depth + 1
-                        )
-                    );
-                }
-            }
-
-            for (Map.Entry<
-                String,
-                Projected
-            > entry : forwardRmPathExtensions.entrySet()) {
-                String[] parts = entry.getKey().split("-");
-                if (parts.length == 3) {
+            for (ExtensionBuckets buckets : Arrays.asList(
+                forwardPureExtensions,
+                forwardRmPathExtensions,
+                backwardExtensions,
+                relaxedBackwardExtensions
+            )) {
+                for (long key : buckets.keys()) {
                     DFSCode newDfsCode = cloneDfsCode(task.dfsCode);
                     newDfsCode.push(
-                        Integer.parseInt(parts[0]),
-                        maxToc + 1,
+                        ExtensionBuckets.from(key),
+                        ExtensionBuckets.to(key),
                         -1,
-                        Integer.parseInt(parts[1]),
-                        Integer.parseInt(parts[2])
-                    );
-                    extensions.add(
-                        new IndependentTask(
-                            newDfsCode,
-                            entry.getValue(),
-                            task.depth + 1
-                        )
+                        labelRanks.label(ExtensionBuckets.eLabel(key)),
+                        labelRanks.label(ExtensionBuckets.toLabel(key))
                     );
-                }
-            }
-
-            for (Map.Entry<
-                String,
-                Projected
-            > entry : backwardExtensions.entrySet()) {
-                String[] parts = entry.getKey().split("-");
-                if (parts.length >= 3) {
-                    DFSCode newDfsCode = cloneDfsCode(task.dfsCode);
-                    if (parts.length >= 4 && parts[3].equals("back")) {
-                        newDfsCode.push(
-                            Integer.parseInt(parts[0]),
-                            Integer.parseInt(parts[1]),
-                            -1,
-                            Integer.parseInt(parts[2]),
-                            -1
-                        );
-                    } else if (
-                        parts.length >= 4 && parts[3].equals("relaxed")
-                    ) {
-                        newDfsCode.push(
-                            Integer.parseInt(parts[0]),
-                            Integer.parseInt(parts[1]),
-                            -1,
-                            Integer.parseInt(parts[2]),
-                            -1
-                        );
-                    } else if (
-                        parts.length >= 5 &&
-                        parts[3].equals("back") &&
-                        parts[4].equals("relaxed")
-                    ) {
-                        newDfsCode.push(
-                            Integer.parseInt(parts[0]),
-                            Integer.parseInt(parts[1]),
-                            -1,
-                            Integer.parseInt(parts[2]),
-                            -1
-                        );
-                    } else {
-                        newDfsCode.push(
-                            Integer.parseInt(parts[0]),
-                            Integer.parseInt(parts[1]),
-                            -1,
-                            Integer.parseInt(parts[2]),
-                            -1
-                        );
-                    }
                     extensions.add(
                         new IndependentTask(
                             newDfsCode,
-                            entry.getValue(),
+                            buckets.find(key),
                             task.depth + 1
                         )
                     );
@@ -1578,81 +1568,85 @@ public class TEDSProcessor {
         return isChain;
     }
 
-    private Edge findDirectConnection(
-        Graph graph,
-        Edge node1,
-        Edge node2,
+    private int findDirectConnection(
+        CSRGraph graph,
+        int node1,
+        int node2,
         History history
     ) {
-        if (node1 == null || node2 == null || node1.equals(node2)) return null;
+        if (node1 == -1 || node2 == -1 || node1 == node2) return -1;
 
-        Edge result = null;
+        int from1 = graph.source(node1);
+        int to1 = graph.target(node1);
+        int from2 = graph.source(node2);
+        int to2 = graph.target(node2);
+        int result = -1;
 
         result = Misc.getChainCycleConnection(
             graph,
-            node1.to,
-            node2.to,
+            to1,
+            to2,
             history
         );
-        if (result != null) return result;
+        if (result != -1) return result;
 
         result = Misc.getChainCycleConnection(
             graph,
-            node1.from,
-            node2.to,
+            from1,
+            to2,
             history
         );
-        if (result != null) return result;
+        if (result != -1) return result;
 
         result = Misc.getChainCycleConnection(
             graph,
-            node1.to,
-            node2.from,
+            to1,
+            from2,
             history
         );
-        if (result != null) return result;
+        if (result != -1) return result;
 
         result = Misc.getChainCycleConnection(
             graph,
-            node1.from,
-            node2.from,
+            from1,
+            from2,
             history
         );
-        if (result != null) return result;
+        if (result != -1) return result;
 
         result = Misc.getChainCycleConnection(
             graph,
-            node2.to,
-            node1.to,
+            to2,
+            to1,
             history
         );
-        if (result != null) return result;
+        if (result != -1) return result;
 
         result = Misc.getChainCycleConnection(
             graph,
-            node2.from,
-            node1.to,
+            from2,
+            to1,
             history
         );
-        if (result != null) return result;
+        if (result != -1) return result;
 
         result = Misc.getChainCycleConnection(
             graph,
-            node2.to,
-            node1.from,
+            to2,
+            from1,
             history
         );
-        if (result != null) return result;
+        if (result != -1) return result;
 
         result = Misc.getChainCycleConnection(
             graph,
-            node2.from,
-            node1.from,
+            from2,
+            from1,
             history
         );
-        if (result != null) return result;
+        if (result != -1) return result;
 
-        return null;
+        return -1;
     }
 
     private int getDfsVertexId(DFSCode dfsCode, int historyIndex) {
@@ -1663,15 +1657,15 @@ public class TEDSProcessor {
         return dfs.to;
     }
 
-    private boolean isEdgeAlreadyExists(DFSCode dfsCode, Edge newEdge) {
-        if (newEdge == null || dfsCode == null) return false;
+    private boolean isEdgeAlreadyExists(DFSCode dfsCode, int from, int to) {
+        if (dfsCode == null) return false;
 
         for (int i = 0; i < dfsCode.size(); i++) {
             DFS dfs = dfsCode.get(i);
 
             if (
-                (dfs.from == newEdge.from && dfs.to == newEdge.to) ||
-                (dfs.from == newEdge.to && dfs.to == newEdge.from)
+                (dfs.from == from && dfs.to == to) ||
+                (dfs.from == to && dfs.to == from)
             ) {
                 return true;
             }
@@ -1680,10 +1674,10 @@ public class TEDSProcessor {
         return false;
     }
 
-    private boolean isReasonableExtension(DFSCode dfsCode, Edge newEdge) {
-        if (newEdge == null || dfsCode == null) return false;
+    private boolean isReasonableExtension(DFSCode dfsCode, int from, int to) {
+        if (dfsCode == null) return false;
 
-        if (isEdgeAlreadyExists(dfsCode, newEdge)) {
+        if (isEdgeAlreadyExists(dfsCode, from, to)) {
             return false;
         }
 
@@ -1694,8 +1688,8 @@ public class TEDSProcessor {
             nodeDegree.put(dfs.to, nodeDegree.getOrDefault(dfs.to, 0) + 1);
         }
 
-        int fromDegree = nodeDegree.getOrDefault(newEdge.from, 0) + 1;
-        int toDegree = nodeDegree.getOrDefault(newEdge.to, 0) + 1;
+        int fromDegree = nodeDegree.getOrDefault(from, 0) + 1;
+        int toDegree = nodeDegree.getOrDefault(to, 0) + 1;
 
         if (fromDegree > 5 || toDegree > 5) {
             return false;
@@ -1708,348 +1702,301 @@ public class TEDSProcessor {
         int oid = 0xffffffff;
         int size = 0;
 
-        for (PDFS cur : projected) {
-            if (oid != cur.id) {
+        for (int row = 0; row < projected.size(); row++) {
+            if (oid != projected.id(row)) {
                 ++size;
             }
-            oid = cur.id;
+            oid = projected.id(row);
         }
 
         return size;
     }
 
-    private boolean isMinProject(Projected projected) {
+    private boolean isMinProject(Projected projected, CSRGraph graph) {
         ArrayList<Integer> rmPath = DFS_CODE_IS_MIN.buildRMPath();
+        History history = new History();
 
         int minLabel = DFS_CODE_IS_MIN.get(0).fromLabel;
 
         int maxToc = DFS_CODE_IS_MIN.get(rmPath.get(0)).to;
 
         {
-            NavigableMap<Integer, Projected> root = new TreeMap<>();
-            boolean flg = false;
-            int newTo = 0;
-
-            for (int i = rmPath.size() - 1; !flg && i >= 1; --i) {
-                for (PDFS cur : projected) {
-                    History history = new History(GRAPH_IS_MIN, cur);
-                    Edge e = Misc.getBackward(
-                        GRAPH_IS_MIN,
+            ExtensionBuckets root = new ExtensionBuckets(projected);
+
+            for (int i = rmPath.size() - 1; root.isEmpty() && i >= 1; --i) {
+                int newTo = DFS_CODE_IS_MIN.get(rmPath.get(i)).from;
+                for (int cur = 0; cur < projected.size(); cur++) {
+                    history.load(graph, projected, cur);
+                    int e = Misc.getBackward(
+                        graph,
                         history.get(rmPath.get(i)),
                         history.get(rmPath.get(0)),
                         history
                     );
-                    if (e != null) {
-                        int key_1 = e.eLabel;
-                        Projected root_1 = root.get(key_1);
-                        if (root_1 == null) {
-                            root_1 = new Projected();
-                            root.put(key_1, root_1);
-                        }
-                        root_1.push(0, e, cur);
-                        newTo = DFS_CODE_IS_MIN.get(rmPath.get(i)).from;
-                        flg = true;
+                    if (e != -1) {
+                        root.push(
+                            ExtensionBuckets.key(
+                                maxToc,
+                                newTo,
+                                labelRanks.rank(graph.edgeLabel(e)),
+                                -1
+                            ),
+                            0,
+                            e,
+                            cur
+                        );
                     }
                 }
             }
 
-            if (flg) {
-                Entry<Integer, Projected> eLabel = root.firstEntry();
-                DFS_CODE_IS_MIN.push(maxToc, newTo, -1, eLabel.getKey(), -1);
-                return isMinProject(eLabel.getValue());
+            if (!root.isEmpty()) {
+                long key = root.firstKey();
+                DFS_CODE_IS_MIN.push(
+                    maxToc,
+                    ExtensionBuckets.to(key),
+                    -1,
+                    labelRanks.label(ExtensionBuckets.eLabel(key)),
+                    -1
+                );
+                return isMinProject(root.find(key), graph);
             }
         }
 
         {
-            boolean flg = false;
-            int newFrom = 0;
-            NavigableMap<Integer, NavigableMap<Integer, Projected>> root =
-                new TreeMap<>();
-            ArrayList<Edge> edges = new ArrayList<>();
-
-            for (PDFS cur : projected) {
-                History history = new History(GRAPH_IS_MIN, cur);
+            ExtensionBuckets root = new ExtensionBuckets(projected);
+            SlotList edges = new SlotList();
+
+            for (int cur = 0; cur < projected.size(); cur++) {
+                history.load(graph, projected, cur);
                 if (
                     Misc.getForwardPure(
-                        GRAPH_IS_MIN,
+                        graph,
                         history.get(rmPath.get(0)),
                         minLabel,
                         history,
                         edges
                     )
                 ) {
-                    flg = true;
-                    newFrom = maxToc;
-                    for (Edge it : edges) {
-                        int key_1 = it.eLabel;
-                        NavigableMap<Integer, Projected> root_1 =
-                            root.computeIfAbsent(key_1, k -> new TreeMap<>());
-                        int key_2 = GRAPH_IS_MIN.get(it.to).label;
-                        Projected root_2 = root_1.get(key_2);
-                        if (root_2 == null) {
-                            root_2 = new Projected();
-                            root_1.put(key_2, root_2);
-                        }
-                        root_2.push(0, it, cur);
+                    for (int k = 0; k < edges.size(); k++) {
+                        int it = edges.get(k);
+                        long key = ExtensionBuckets.key(
+                            maxToc,
+                            maxToc + 1,
+                            labelRanks.rank(graph.edgeLabel(it)),
+                            labelRanks.rank(graph.label(graph.target(it)))
+                        );
+                        root.push(key, 0, it, cur);
                     }
                 }
             }
 
-            for (int i = 0; !flg && i < rmPath.size(); ++i) {
-                for (PDFS cur : projected) {
-                    History history = new History(GRAPH_IS_MIN, cur);
+            for (int i = 0; root.isEmpty() && i < rmPath.size(); ++i) {
+                int newFrom = DFS_CODE_IS_MIN.get(rmPath.get(i)).from;
+                for (int cur = 0; cur < projected.size(); cur++) {
+                    history.load(graph, projected, cur);
                     if (
                         Misc.getForwardRmPath(
-                            GRAPH_IS_MIN,
+                            graph,
                             history.get(rmPath.get(i)),
                             minLabel,
                             history,
                             edges
                         )
                     ) {
-                        flg = true;
-                        newFrom = DFS_CODE_IS_MIN.get(rmPath.get(i)).from;
-                        for (Edge it : edges) {
-                            int key_1 = it.eLabel;
-                            NavigableMap<Integer, Projected> root_1 =
-                                root.computeIfAbsent(key_1, k ->
-                                    new TreeMap<>()
-                                );
-                            int key_2 = GRAPH_IS_MIN.get(it.to).label;
-                            Projected root_2 = root_1.get(key_2);
-                            if (root_2 == null) {
-                                root_2 = new Projected();
-                                root_1.put(key_2, root_2);
-                            }
-                            root_2.push(0, it, cur);
+                        for (int k = 0; k < edges.size(); k++) {
+                            int it = edges.get(k);
+                            long key = ExtensionBuckets.key(
+                                newFrom,
+                                maxToc + 1,
+                                labelRanks.rank(graph.edgeLabel(it)),
+                                labelRanks.rank(graph.label(graph.target(it)))
+                            );
+                            root.push(key, 0, it, cur);
                         }
                     }
                 }
             }
 
-            if (flg) {
-                Entry<Integer, NavigableMap<Integer, Projected>> eLabel =
-                    root.firstEntry();
-                Entry<Integer, Projected> toLabel = eLabel
-                    .getValue()
-                    .firstEntry();
+            if (!root.isEmpty()) {
+                long key = root.firstKey();
                 DFS_CODE_IS_MIN.push(
-                    newFrom,
+                    ExtensionBuckets.from(key),
                     maxToc + 1,
                     -1,
-                    eLabel.getKey(),
-                    toLabel.getKey()
+                    labelRanks.label(ExtensionBuckets.eLabel(key)),
+                    labelRanks.label(ExtensionBuckets.toLabel(key))
                 );
                 if (
                     DFS_CODE.get(DFS_CODE_IS_MIN.size() - 1).notEqual(
                         DFS_CODE_IS_MIN.get(DFS_CODE_IS_MIN.size() - 1)
                     )
                 ) return false;
-                return isMinProject(toLabel.getValue());
+                return isMinProject(root.find(key), graph);
             }
         }
 
         return true;
     }
 
-    private void readMultipleGraphs(FileReader is, long[] gl)
-        throws IOException {
-        BufferedReader read = new BufferedReader(is);
-        int i = 0;
-        while (true) {
-            i++;
-            Graph g = new Graph(directed);
-            Graph.ReadResult result = g.readspnum(read, gl);
-            read = result.reader;
-            if (g.isEmpty()) break;
-            if (result.valid) {
-                TRANS.add(g);
-            }
-        }
-        read.close();
+    private void readMultipleGraphs(GraphDatabase database, long[] gl) {
+        transIndexes = database.resolve(gl);
+        TRANS.addAll(database.select(gl));
     }
 
     private boolean ToisMin() {
         if (DFS_CODE.size() == 1) return (true);
 
-        DFS_CODE.toGraph(GRAPH_IS_MIN);
+        DFS_CODE.toGraph(GRAPH_IS_MIN, queryGraph);
+        CSRGraph graph = CSRGraph.of(GRAPH_IS_MIN);
         DFS_CODE_IS_MIN.clear();
 
-        NavigableMap<
-            Integer,
-            NavigableMap<Integer, NavigableMap<Integer, Projected>>
-        > root = new TreeMap<>();
-        ArrayList<Edge> edges = new ArrayList<>();
-
-        for (int from = 0; from < GRAPH_IS_MIN.size(); ++from) if (
-            Misc.getForwardRoot(GRAPH_IS_MIN, GRAPH_IS_MIN.get(from), edges)
-        ) for (Edge it : edges) {
-            int key_1 = GRAPH_IS_MIN.get(from).label;
-            NavigableMap<Integer, NavigableMap<Integer, Projected>> root_1 =
-                root.computeIfAbsent(key_1, k -> new TreeMap<>());
-            int key_2 = it.eLabel;
-            NavigableMap<Integer, Projected> root_2 = root_1.computeIfAbsent(
-                key_2,
-                k -> new TreeMap<>()
+        ExtensionBuckets root = new ExtensionBuckets();
+        SlotList edges = new SlotList();
+
+        for (int from = 0; from < graph.size(); ++from) if (
+            Misc.getForwardRoot(graph, from, edges)
+        ) for (int k = 0; k < edges.size(); k++) {
+            int it = edges.get(k);
+            long key = ExtensionBuckets.rootKey(
+                labelRanks.rank(graph.label(from)),
+                labelRanks.rank(graph.edgeLabel(it)),
+                labelRanks.rank(graph.label(graph.target(it)))
             );
-            int key_3 = GRAPH_IS_MIN.get(it.to).label;
-            Projected root_3 = root_2.get(key_3);
-            if (root_3 == null) {
-                root_3 = new Projected();
-                root_2.put(key_3, root_3);
-            }
-
-            root_3.push(0, it, null);
+            root.push(key, 0, it, -1);
         }
 
-        Entry<
-            Integer,
-            NavigableMap<Integer, NavigableMap<Integer, Projected>>
-        > fromLabel = root.firstEntry();
-        Entry<Integer, NavigableMap<Integer, Projected>> eLabel = fromLabel
-            .getValue()
-            .firstEntry();
-        Entry<Integer, Projected> toLabel = eLabel.getValue().firstEntry();
-
+        long key = root.firstKey();
         DFS_CODE_IS_MIN.push(
             0,
             1,
-            fromLabel.getKey(),
-            eLabel.getKey(),
-            toLabel.getKey()
+            labelRanks.label(ExtensionBuckets.fromLabel(key)),
+            labelRanks.label(ExtensionBuckets.eLabel(key)),
+            labelRanks.label(ExtensionBuckets.toLabel(key))
         );
 
-        return isMinGenerate(toLabel.getValue());
+        return isMinGenerate(root.find(key), graph);
     }
 
-    private boolean isMinGenerate(Projected projected) {
+    private boolean isMinGenerate(Projected projected, CSRGraph graph) {
         ArrayList<Integer> rmPath = DFS_CODE_IS_MIN.buildRMPath();
+        History history = new History();
 
         int minLabel = DFS_CODE_IS_MIN.get(0).fromLabel;
 
         int maxToc = DFS_CODE_IS_MIN.get(rmPath.get(0)).to;
 
         {
-            NavigableMap<Integer, Projected> root = new TreeMap<>();
-            boolean flg = false;
-            int newTo = 0;
-
-            for (int i = rmPath.size() - 1; !flg && i >= 1; --i) {
-                for (PDFS cur : projected) {
-                    History history = new History(GRAPH_IS_MIN, cur);
-                    Edge e = Misc.getBackward(
-                        GRAPH_IS_MIN,
+            ExtensionBuckets root = new ExtensionBuckets(projected);
+
+            for (int i = rmPath.size() - 1; root.isEmpty() && i >= 1; --i) {
+                int newTo = DFS_CODE_IS_MIN.get(rmPath.get(i)).from;
+                for (int cur = 0; cur < projected.size(); cur++) {
+                    history.load(graph, projected, cur);
+                    int e = Misc.getBackward(
+                        graph,
                         history.get(rmPath.get(i)),
                         history.get(rmPath.get(0)),
                         history
                     );
-                    if (e != null) {
-                        int key_1 = e.eLabel;
-                        Projected root_1 = root.get(key_1);
-                        if (root_1 == null) {
-                            root_1 = new Projected();
-                            root.put(key_1, root_1);
-                        }
-                        root_1.push(0, e, cur);
-                        newTo = DFS_CODE_IS_MIN.get(rmPath.get(i)).from;
-                        flg = true;
+                    if (e != -1) {
+                        root.push(
+                            ExtensionBuckets.key(
+                                maxToc,
+                                newTo,
+                                labelRanks.rank(graph.edgeLabel(e)),
+                                -1
+                            ),
+                            0,
+                            e,
+                            cur
+                        );
                     }
                 }
             }
 
-            if (flg) {
-                Entry<Integer, Projected> eLabel = root.firstEntry();
-                DFS_CODE_IS_MIN.push(maxToc, newTo, -1, eLabel.getKey(), -1);
-                return isMinGenerate(eLabel.getValue());
+            if (!root.isEmpty()) {
+                long key = root.firstKey();
+                DFS_CODE_IS_MIN.push(
+                    maxToc,
+                    ExtensionBuckets.to(key),
+                    -1,
+                    labelRanks.label(ExtensionBuckets.eLabel(key)),
+                    -1
+                );
+                return isMinGenerate(root.find(key), graph);
             }
         }
 
         {
-            boolean flg = false;
-            int newFrom = 0;
-            NavigableMap<Integer, NavigableMap<Integer, Projected>> root =
-                new TreeMap<>();
-            ArrayList<Edge> edges = new ArrayList<>();
-
-            for (PDFS cur : projected) {
-                History history = new History(GRAPH_IS_MIN, cur);
+            ExtensionBuckets root = new ExtensionBuckets(projected);
+            SlotList edges = new SlotList();
+
+            for (int cur = 0; cur < projected.size(); cur++) {
+                history.load(graph, projected, cur);
                 if (
                     Misc.getForwardPure(
-                        GRAPH_IS_MIN,
+                        graph,
                         history.get(rmPath.get(0)),
                         minLabel,
                         history,
                         edges
                     )
                 ) {
-                    flg = true;
-                    newFrom = maxToc;
-                    for (Edge it : edges) {
-                        int key_1 = it.eLabel;
-                        NavigableMap<Integer, Projected> root_1 =
-                            root.computeIfAbsent(key_1, k -> new TreeMap<>());
-                        int key_2 = GRAPH_IS_MIN.get(it.to).label;
-                        Projected root_2 = root_1.get(key_2);
-                        if (root_2 == null) {
-                            root_2 = new Projected();
-                            root_1.put(key_2, root_2);
-                        }
-                        root_2.push(0, it, cur);
+                    for (int k = 0; k < edges.size(); k++) {
+                        int it = edges.get(k);
+                        long key = ExtensionBuckets.key(
+                            maxToc,
+                            maxToc + 1,
+                            labelRanks.rank(graph.edgeLabel(it)),
+                            labelRanks.rank(graph.label(graph.target(it)))
+                        );
+                        root.push(key, 0, it, cur);
                     }
                 }
             }
 
-            for (int i = 0; !flg && i < rmPath.size(); ++i) {
-                for (PDFS cur : projected) {
-                    History history = new History(GRAPH_IS_MIN, cur);
+            for (int i = 0; root.isEmpty() && i < rmPath.size(); ++i) {
+                int newFrom = DFS_CODE_IS_MIN.get(rmPath.get(i)).from;
+                for (int cur = 0; cur < projected.size(); cur++) {
+                    history.load(graph, projected, cur);
                     if (
                         Misc.getForwardRmPath(
-                            GRAPH_IS_MIN,
+                            graph,
                             history.get(rmPath.get(i)),
                             minLabel,
                             history,
                             edges
                         )
                     ) {
-                        flg = true;
-                        newFrom = DFS_CODE_IS_MIN.get(rmPath.get(i)).from;
-                        for (Edge it : edges) {
-                            int key_1 = it.eLabel;
-                            NavigableMap<Integer, Projected> root_1 =
-                                root.computeIfAbsent(key_1, k ->
-                                    new TreeMap<>()
-                                );
-                            int key_2 = GRAPH_IS_MIN.get(it.to).label;
-                            Projected root_2 = root_1.get(key_2);
-                            if (root_2 == null) {
-                                root_2 = new Projected();
-                                root_1.put(key_2, root_2);
-                            }
-                            root_2.push(0, it, cur);
+                        for (int k = 0; k < edges.size(); k++) {
+                            int it = edges.get(k);
+                            long key = ExtensionBuckets.key(
+                                newFrom,
+                                maxToc + 1,
+                                labelRanks.rank(graph.edgeLabel(it)),
+                                labelRanks.rank(graph.label(graph.target(it)))
+                            );
+                            root.push(key, 0, it, cur);
                         }
                     }
                 }
             }
 
-            if (flg) {
-                Entry<Integer, NavigableMap<Integer, Projected>> eLabel =
-                    root.firstEntry();
-                Entry<Integer, Projected> toLabel = eLabel
-                    .getValue()
-                    .firstEntry();
+            if (!root.isEmpty()) {
+                long key = root.firstKey();
                 DFS_CODE_IS_MIN.push(
-                    newFrom,
+                    ExtensionBuckets.from(key),
                     maxToc + 1,
                     -1,
-                    eLabel.getKey(),
-                    toLabel.getKey()
+                    labelRanks.label(ExtensionBuckets.eLabel(key)),
+                    labelRanks.label(ExtensionBuckets.toLabel(key))
                 );
                 if (
                     DFS_CODE.get(DFS_CODE_IS_MIN.size() - 1).notEqual(
                         DFS_CODE_IS_MIN.get(DFS_CODE_IS_MIN.size() - 1)
                     )
                 ) return false;
-                return isMinGenerate(toLabel.getValue());
+                return isMinGenerate(root.find(key), graph);
             }
         }
 
@@ -2062,23 +2009,21 @@ public class TEDSProcessor {
         return indexManager.isGraphUniqueAdaptive(DFS_CODE_IS_MIN);
     }
 
-    private ArrayList<Edge> getEdgeList() {
-        synchronized (edgeListPool) {
-            if (!edgeListPool.isEmpty()) {
-                ArrayList<Edge> list = edgeListPool.remove(
-                    edgeListPool.size() - 1
-                );
+    private SlotList getSlotList() {
+        synchronized (slotListPool) {
+            if (!slotListPool.isEmpty()) {
+                SlotList list = slotListPool.remove(slotListPool.size() - 1);
                 list.clear();
                 return list;
             }
         }
-        return new ArrayList<>();
+        return new SlotList();
     }
 
-    private void recycleEdgeList(ArrayList<Edge> list) {
-        if (list != null && edgeListPool.size() < 200) {
-            synchronized (edgeListPool) {
-                edgeListPool.add(list);
+    private void recycleSlotList(SlotList list) {
+        if (list != null && slotListPool.size() < 200) {
+            synchronized (slotListPool) {
+                slotListPool.add(list);
             }
         }
     }
@@ -2113,12 +2058,6 @@ public class TEDSProcessor {
             }
         }
 
-        if (totalProjectTime > 300_000_000_000L) {
-            if (projected.size() <= 1) {
-                return true;
-            }
-        }
-
         Runtime runtime = Runtime.getRuntime();
         long usedMemory = runtime.totalMemory() - runtime.freeMemory();
         long maxMemory = runtime.maxMemory();
@@ -2144,7 +2083,7 @@ public class TEDSProcessor {
             }
         }
 
-        edgeListPool.clear();
+        slotListPool.clear();
     }
 
     private DFSCode cloneDfsCode(DFSCode original) {
@@ -2167,123 +2106,103 @@ public class TEDSProcessor {
         ArrayList<Integer> rmPath,
         int minLabel,
         int maxToc,
-        NavigableMap<
-            Integer,
-            NavigableMap<Integer, NavigableMap<Integer, Projected>>
-        > new_fwd_root,
-        NavigableMap<Integer, NavigableMap<Integer, Projected>> new_bck_root,
-        ArrayList<Edge> edges
+        ExtensionBuckets new_fwd_root,
+        ExtensionBuckets new_bck_root,
+        SlotList edges
     ) {
-        for (PDFS aProjected : projected) {
-            int id = aProjected.id;
-            History history = new History(TRANS.get(id), aProjected);
+        History history = new History();
+        for (int row = 0; row < projected.size(); row++) {
+            int id = projected.id(row);
+            CSRGraph graph = TRANS.get(id);
+            history.load(graph, projected, row);
 
             if (DFS_CODE.countNode() == arg.maxNodeNum - 1) {
                 for (int i = history.size() - 1; i >= 0; --i) {
                     for (int j = history.size() - 1; j >= 0; --j) {
-                        Edge e = Misc.getBackward(
-                            TRANS.get(id),
+                        int e = Misc.getBackward(
+                            graph,
                             history.get(i),
                             history.get(j),
                             history
                         );
-                        if (e != null) {
-                            int key_1 = DFS_CODE.get(i).from;
-                            NavigableMap<Integer, Projected> root_1 =
-                                new_bck_root.computeIfAbsent(key_1, k ->
-                                    new TreeMap<>()
-                                );
-                            int key_2 = e.eLabel;
-                            Projected root_2 = root_1.get(key_2);
-                            if (root_2 == null) {
-                                root_2 = new Projected();
-                                root_1.put(key_2, root_2);
-                            }
-                            root_2.push(id, e, aProjected);
+                        if (e != -1) {
+                            long key = ExtensionBuckets.key(
+                                maxToc,
+                                DFS_CODE.get(i).from,
+                                labelRanks.rank(graph.edgeLabel(e)),
+                                -1
+                            );
+                            new_bck_root.push(key, id, e, row);
                         }
                     }
                 }
             } else {
                 for (int i = history.size() - 1; i >= 0; --i) {
-                    Edge e = Misc.getBackward(
-                        TRANS.get(id),
+                    int e = Misc.getBackward(
+                        graph,
                         history.get(i),
                         history.get(rmPath.get(0)),
                         history
                     );
-                    if (e != null) {
-                        int key_1 = DFS_CODE.get(i).from;
-                        NavigableMap<Integer, Projected> root_1 =
-                            new_bck_root.computeIfAbsent(key_1, k ->
-                                new TreeMap<>()
-                            );
-                        int key_2 = e.eLabel;
-                        Projected root_2 = root_1.get(key_2);
-                        if (root_2 == null) {
-                            root_2 = new Projected();
-                            root_1.put(key_2, root_2);
-                        }
-                        root_2.push(id, e, aProjected);
+                    if (e != -1) {
+                        long key = ExtensionBuckets.key(
+                            maxToc,
+                            DFS_CODE.get(i).from,
+                            labelRanks.rank(graph.edgeLabel(e)),
+                            -1
+                        );
+                        new_bck_root.push(key, id, e, row);
                     }
                 }
             }
 
             if (
                 Misc.getForwardPure(
-                    TRANS.get(id),
+                    graph,
                     history.get(rmPath.get(0)),
                     minLabel,
                     history,
                     edges
                 )
             ) {
-                for (Edge it : edges) {
-                    NavigableMap<
-                        Integer,
-                        NavigableMap<Integer, Projected>
-                    > root_1 = new_fwd_root.computeIfAbsent(maxToc, k ->
-                        new TreeMap<>()
+                for (int k = 0; k < edges.size(); k++) {
+                    int it = edges.get(k);
+                    long key = ExtensionBuckets.key(
+                        maxToc,
+                        maxToc + 1,
+                        labelRanks.rank(graph.edgeLabel(it)),
+                        labelRanks.rank(graph.label(graph.target(it)))
                     );
-                    int key_2 = it.eLabel;
-                    NavigableMap<Integer, Projected> root_2 =
-                        root_1.computeIfAbsent(key_2, k -> new TreeMap<>());
-                    int key_3 = TRANS.get(id).get(it.to).label;
-                    Projected root_3 = root_2.get(key_3);
-                    if (root_3 == null) {
-                        root_3 = new Projected();
-                        root_2.put(key_3, root_3);
-                    }
-                    root_3.push(id, it, aProjected);
+                    new_fwd_root.push(key, id, it, row);
                 }
             }
 
             for (int i = history.size() - 1; i >= 0; --i) if (
                 Misc.getForwardRmPath(
-                    TRANS.get(id),
+                    graph,
                     history.get(i),
                     minLabel,
                     history,
                     edges
                 )
-            ) for (Edge it : edges) {
-                int key_1 = DFS_CODE.get(i).from;
-                NavigableMap<Integer, NavigableMap<Integer, Projected>> root_1 =
-                    new_fwd_root.computeIfAbsent(key_1, k -> new TreeMap<>());
-                int key_2 = it.eLabel;
-                NavigableMap<Integer, Projected> root_2 =
-                    root_1.computeIfAbsent(key_2, k -> new TreeMap<>());
-                int key_3 = TRANS.get(id).get(it.to).label;
-                Projected root_3 = root_2.get(key_3);
-                if (root_3 == null) {
-                    root_3 = new Projected();
-                    root_2.put(key_3, root_3);
-                }
-                root_3.push(id, it, aProjected);
+            ) for (int k = 0; k < edges.size(); k++) {
+                int it = edges.get(k);
+                long key = ExtensionBuckets.key(
+                    DFS_CODE.get(i).from,
+                    maxToc + 1,
+                    labelRanks.rank(graph.edgeLabel(it)),
+                    labelRanks.rank(graph.label(graph.target(it)))
+                );
+                new_fwd_root.push(key, id, it, row);
             }
         }
     }
 
     private void project_Initial(Projected projected) throws IOException {
+        if (arg.budget.isExpired()) {
+            arg.budget.truncate("time");
+            return;
+        }
         recursionCount++;
 
         int sup = support(projected);
@@ -2304,14 +2223,10 @@ public class TEDSProcessor {
         int minLabel = DFS_CODE.get(0).fromLabel;
         int maxToc = DFS_CODE.get(rmPath.get(0)).to;
 
-        NavigableMap<
-            Integer,
-            NavigableMap<Integer, NavigableMap<Integer, Projected>>
-        > new_fwd_root = new TreeMap<>();
-        NavigableMap<Integer, NavigableMap<Integer, Projected>> new_bck_root =
-            new TreeMap<>();
+        ExtensionBuckets new_fwd_root = new ExtensionBuckets(projected);
+        ExtensionBuckets new_bck_root = new ExtensionBuckets(projected);
 
-        ArrayList<Edge> edges = getEdgeList();
+        SlotList edges = getSlotList();
 
         try {
             processProjectedSequentially(
@@ -2324,44 +2239,44 @@ public class TEDSProcessor {
                 edges
             );
 
-            for (Entry<
-                Integer,
-                NavigableMap<Integer, Projected>
-            > to : new_bck_root.entrySet()) {
-                for (Entry<Integer, Projected> eLabel : to
-                    .getValue()
-                    .entrySet()) {
-                    DFS_CODE.push(maxToc, to.getKey(), -1, eLabel.getKey(), -1);
-                    project_Initial(eLabel.getValue());
-                    DFS_CODE.pop();
-                }
+            for (long key : new_bck_root.keys()) {
+                DFS_CODE.push(
+                    maxToc,
+                    ExtensionBuckets.to(key),
+                    -1,
+                    labelRanks.label(ExtensionBuckets.eLabel(key)),
+                    -1
+                );
+                project_Initial(new_bck_root.find(key));
+                DFS_CODE.pop();
             }
 
-            for (Entry<
-                Integer,
-                NavigableMap<Integer, NavigableMap<Integer, Projected>>
-            > from : new_fwd_root.descendingMap().entrySet()) {
-                for (Entry<
-                    Integer,
-                    NavigableMap<Integer, Projected>
-                > eLabel : from.getValue().entrySet()) {
-                    for (Entry<Integer, Projected> toLabel : eLabel
-                        .getValue()
-                        .entrySet()) {
-                        DFS_CODE.push(
-                            from.getKey(),
-                            maxToc + 1,
-                            -1,
-                            eLabel.getKey(),
-                            toLabel.getKey()
-                        );
-                        project_Initial(toLabel.getValue());
-                        DFS_CODE.pop();
-                    }
+            // forward extensions from the deepest vertex first, each group
+            // of one from vertex in ascending (eLabel, toLabel)
+            long[] keys = new_fwd_root.keys();
+            for (int end = keys.length, start; end > 0; end = start) {
+                int from = ExtensionBuckets.from(keys[end - 1]);
+                start = end - 1;
+                while (
+                    start > 0 &&
+                    ExtensionBuckets.from(keys[start - 1]) == from
+                ) {
+                    start--;
+                }
+                for (int k = start; k < end; k++) {
+                    DFS_CODE.push(
+                        from,
+                        maxToc + 1,
+                        -1,
+                        labelRanks.label(ExtensionBuckets.eLabel(keys[k])),
+                        labelRanks.label(ExtensionBuckets.toLabel(keys[k]))
+                    );
+                    project_Initial(new_fwd_root.find(keys[k]));
+                    DFS_CODE.pop();
                 }
             }
         } finally {
-            recycleEdgeList(edges);
+            recycleSlotList(edges);
         }
     }
 
@@ -2443,13 +2358,7 @@ public class TEDSProcessor {
     ) throws IOException {
         List<Graph> allTEDGraphs = new ArrayList<>();
 
-        try (
-            BufferedReader reader = new BufferedReader(
-                new FileReader(arg.TEDPath)
-            )
-        ) {
-            allTEDGraphs = parseTEDFile(reader);
-        }
+        allTEDGraphs = parseTEDFile(arg.TEDPath);
 
         if (allTEDGraphs.isEmpty()) {
             return existingGraphs;
@@ -2509,64 +2418,56 @@ public class TEDSProcessor {
         return result;
     }
 
-    private List<Graph> parseTEDFile(BufferedReader reader) throws IOException {
-        List<Graph> graphs = new ArrayList<>();
-        String line;
-        Graph currentGraph = null;
-
-        while ((line = reader.readLine()) != null) {
-            line = line.trim();
-            if (line.isEmpty()) continue;
+    private List<Graph> parseTEDFile(String path) throws IOException {
+        TEDFileHandler handler = new TEDFileHandler();
+        GraphTextParser.parse(path, handler);
+        handler.flush();
+        return handler.graphs;
+    }
 
-            String[] parts = line.split(" ");
+    private class TEDFileHandler implements GraphTextParser.Handler {
 
-            if (
-                parts.length >= 4 &&
-                (parts[0].equals("BeforeSwap") || parts[0].equals("Final")) &&
-                parts[1].equals("t") &&
-                parts[2].equals("#")
-            ) {
-                if (currentGraph != null && !currentGraph.isEmpty()) {
-                    finalizeParsedGraph(currentGraph);
-                    graphs.add(currentGraph);
-                }
+        private final List<Graph> graphs = new ArrayList<>();
+        private Graph currentGraph = null;
 
-                currentGraph = new Graph(directed);
-            } else if (parts.length >= 3 && parts[0].equals("v")) {
-                if (currentGraph != null) {
-                    int nodeId = Integer.parseInt(parts[1]);
-                    int nodeLabel = Integer.parseInt(parts[2]);
+        @Override
+        public void graph(long id) {
+            flush();
+            currentGraph = new Graph(directed);
+        }
 
-                    while (currentGraph.size() <= nodeId) {
-                        currentGraph.add(new Vertex());
-                    }
-                    currentGraph.get(nodeId).label = nodeLabel;
+        @Override
+        public void vertex(int nodeId, int nodeLabel) {
+            if (currentGraph != null) {
+                while (currentGraph.size() <= nodeId) {
+                    currentGraph.add(new Vertex());
                 }
-            } else if (parts.length >= 4 && parts[0].equals("e")) {
-                if (currentGraph != null) {
-                    int from = Integer.parseInt(parts[1]);
-                    int to = Integer.parseInt(parts[2]);
-                    int eLabel = Integer.parseInt(parts[3]);
+                currentGraph.get(nodeId).label = nodeLabel;
+            }
+        }
 
-                    int maxNode = Math.max(from, to);
-                    while (currentGraph.size() <= maxNode) {
-                        currentGraph.add(new Vertex());
-                    }
+        @Override
+        public void edge(int from, int to, int eLabel) {
+            if (currentGraph != null) {
+                int maxNode = Math.max(from, to);
+                while (currentGraph.size() <= maxNode) {
+                    currentGraph.add(new Vertex());
+                }
 
-                    currentGraph.get(from).push(from, to, eLabel);
-                    if (!directed) {
-                        currentGraph.get(to).push(to, from, eLabel);
-                    }
+                currentGraph.get(from).push(from, to, eLabel);
+                if (!directed) {
+                    currentGraph.get(to).push(to, from, eLabel);
                 }
             }
         }
 
-        if (currentGraph != null && !currentGraph.isEmpty()) {
-            finalizeParsedGraph(currentGraph);
-            graphs.add(currentGraph);
+        void flush() {
+            if (currentGraph != null && !currentGraph.isEmpty()) {
+                finalizeParsedGraph(currentGraph);
+                graphs.add(currentGraph);
+            }
+            currentGraph = null;
         }
-
-        return graphs;
     }
 
     private void finalizeParsedGraph(Graph graph) {
@@ -0,0 +1,514 @@
+package QACMain;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import model.CSRGraph;
+
+/**
+ * Subgraph monomorphism search of one query graph against CSR data graphs.
+ *
+ * Query vertices are matched in a fixed order, planned once per query,
+ * where every vertex after the first of its component has an already
+ * matched neighbour (its parent);
+ * candidates for it are then drawn from the adjacency row of the parent's
+ * image instead of from the whole graph. The search is iterative over int
+ * arrays and allocates nothing until a complete mapping is found, so one
+ * matcher can be reused for every candidate graph of a query.
+ *
+ * As in VF2, both sides keep a terminal set: unmapped vertices adjacent to
+ * the mapped part. Membership is stamped with the depth that added it, so
+ * backtracking clears exactly the stamps of the undone pair. A candidate
+ * pair (u, v) is rejected when u has more terminal neighbours than v, or
+ * more unmapped neighbours than v; both rules stay sound for non-induced
+ * matching because an injective embedding maps each such neighbour of u to
+ * a distinct one of v.
+ *
+ * A matcher keeps per-search scratch arrays and is not thread-safe; give
+ * each worker its own instance.
+ */
+public class VF2Matcher {
+
+    private final CSRGraph query;
+    private final int n;
+    private final int[] order;
+    private final int[] parent;
+    private final int seeded;
+
+    private final int[] core1;
+    private int[] core2 = new int[0];
+    private final int[] term1;
+    private int[] term2 = new int[0];
+    private final int[] cursor;
+    private final int[] limit;
+    private int[] first;
+
+    /**
+     * Plan the matching order of a query; label rarity is taken from the
+     * database the query will be matched against (null: degree only).
+     */
+    public VF2Matcher(CSRGraph query, GraphDatabase database) {
+        this(query, new int[query.size()], new int[query.size()], 0);
+        planOrder(database);
+    }
+
+    /**
+     * Plan a matcher that extends embeddings of a smaller query: query
+     * vertices [0, seeded) are taken from a given mapping (see
+     * {@link #extend}) and only the remaining vertices are searched.
+     */
+    public VF2Matcher(CSRGraph query, GraphDatabase database, int seeded) {
+        this(query, new int[query.size()], new int[query.size()], seeded);
+        planExtension(database);
+    }
+
+    private VF2Matcher(
+        CSRGraph query,
+        int[] order,
+        int[] parent,
+        int seeded
+    ) {
+        this.query = query;
+        this.n = query.size();
+        this.order = order;
+        this.parent = parent;
+        this.seeded = seeded;
+        this.core1 = new int[n];
+        this.term1 = new int[n];
+        this.cursor = new int[n];
+        this.limit = new int[n];
+    }
+
+    /**
+     * A matcher with the same plan and its own scratch state, for another
+     * worker thread.
+     */
+    public VF2Matcher copy() {
+        return new VF2Matcher(query, order, parent, seeded);
+    }
+
+    /**
+     * VF2++ style order. Each component is rooted at its vertex with the
+     * rarest label in the database (then the highest degree) and explored
+     * breadth first; within a BFS level the next vertex is the one with the
+     * most already ordered neighbours, then the highest degree, then the
+     * rarest label. Starting from rare labels keeps the first levels of the
+     * search narrow, e.g. a query around a heteroatom does not start from
+     * one of many carbons.
+     */
+    private void planOrder(GraphDatabase database) {
+        long[] rarity = new long[n];
+        for (int u = 0; u < n; u++) {
+            rarity[u] = database == null
+                ? 0
+                : database.labelFrequency(query.label(u));
+        }
+
+        boolean[] ordered = new boolean[n];
+        boolean[] queued = new boolean[n];
+        int[] links = new int[n];
+        int[] level = new int[n];
+        int count = 0;
+        while (count < n) {
+            int root = -1;
+            for (int u = 0; u < n; u++) {
+                if (
+                    !ordered[u] &&
+                    (root < 0 ||
+                        rarity[u] < rarity[root] ||
+                        (rarity[u] == rarity[root] &&
+                            query.degree(u) > query.degree(root)))
+                ) {
+                    root = u;
+                }
+            }
+
+            int levelSize = 0;
+            level[levelSize++] = root;
+            queued[root] = true;
+            while (levelSize > 0) {
+                // order the current level, then collect the next one
+                for (int placed = 0; placed < levelSize; placed++) {
+                    int best = placed;
+                    for (int k = placed + 1; k < levelSize; k++) {
+                        if (before(level[k], level[best], links, rarity)) {
+                            best = k;
+                        }
+                    }
+                    int u = level[best];
+                    level[best] = level[placed];
+                    level[placed] = u;
+
+                    parent[count] = -1;
+                    for (int s = query.begin(u); s < query.end(u); s++) {
+                        int w = query.target(s);
+                        if (ordered[w] && parent[count] < 0) {
+                            parent[count] = w;
+                        }
+                        links[w]++;
+                    }
+                    ordered[u] = true;
+                    order[count++] = u;
+                }
+
+                int nextSize = 0;
+                for (int k = 0; k < levelSize; k++) {
+                    int u = level[k];
+                    for (int s = query.begin(u); s < query.end(u); s++) {
+                        int w = query.target(s);
+                        if (!queued[w]) {
+                            queued[w] = true;
+                            level[levelSize + nextSize++] = w;
+                        }
+                    }
+                }
+                System.arraycopy(level, levelSize, level, 0, nextSize);
+                levelSize = nextSize;
+            }
+        }
+    }
+
+    /**
+     * Seeded vertices first, in id order; then repeatedly the unplanned
+     * vertex with the most planned neighbours (then highest degree, then
+     * rarest label). A new vertex is usually attached to the seeded part,
+     * so its candidates come from one adjacency row.
+     */
+    private void planExtension(GraphDatabase database) {
+        long[] rarity = new long[n];
+        for (int u = 0; u < n; u++) {
+            rarity[u] = database == null
+                ? 0
+                : database.labelFrequency(query.label(u));
+        }
+
+        boolean[] ordered = new boolean[n];
+        int[] links = new int[n];
+        for (int count = 0; count < n; count++) {
+            int u = count;
+            if (count >= seeded) {
+                u = -1;
+                for (int w = seeded; w < n; w++) {
+                    if (!ordered[w] && (u < 0 || before(w, u, links, rarity))) {
+                        u = w;
+                    }
+                }
+            }
+
+            parent[count] = -1;
+            for (int s = query.begin(u); s < query.end(u); s++) {
+                int w = query.target(s);
+                if (ordered[w] && parent[count] < 0) {
+                    parent[count] = w;
+                }
+                links[w]++;
+            }
+            ordered[u] = true;
+            order[count] = u;
+        }
+    }
+
+    private boolean before(int a, int b, int[] links, long[] rarity) {
+        if (links[a] != links[b]) return links[a] > links[b];
+        if (query.degree(a) != query.degree(b)) {
+            return query.degree(a) > query.degree(b);
+        }
+        return rarity[a] < rarity[b];
+    }
+
+    public CSRGraph query() {
+        return query;
+    }
+
+    /**
+     * @return the image of every query vertex in target, or null when the
+     *         query does not occur in target
+     */
+    public int[] match(CSRGraph target) {
+        return match(target, 0, target.size(), null);
+    }
+
+    /**
+     * Search only the part of the tree whose first query vertex is mapped
+     * into [rootFrom, rootTo). Disjoint root ranges split one large graph
+     * between workers; the lowest range that succeeds yields the same
+     * embedding as a full search.
+     *
+     * @param cancelled polled periodically; the search gives up and
+     *                  returns null once it reports true (may be null)
+     */
+    public int[] match(
+        CSRGraph target,
+        int rootFrom,
+        int rootTo,
+        BooleanSupplier cancelled
+    ) {
+        int found = search(
+            target,
+            null,
+            rootFrom,
+            rootTo,
+            cancelled,
+            1,
+            1,
+            null
+        );
+        return found > 0 ? first : null;
+    }
+
+    /**
+     * Enumerate embeddings in search order until maxFound of them are found.
+     * The first keep embeddings are added to out; later ones are only
+     * counted. A target vertex reached through parallel edges is tried
+     * once, so no embedding is reported twice.
+     *
+     * @param out receives copies of the kept mappings (may be null)
+     * @return the number of embeddings found, at most maxFound
+     */
+    public int matchAll(
+        CSRGraph target,
+        int rootFrom,
+        int rootTo,
+        int maxFound,
+        int keep,
+        List<int[]> out
+    ) {
+        return search(
+            target,
+            null,
+            rootFrom,
+            rootTo,
+            null,
+            maxFound,
+            keep,
+            out
+        );
+    }
+
+    /**
+     * Extend an embedding of the seeded query prefix, as planned by
+     * {@link #VF2Matcher(CSRGraph, GraphDatabase, int)}. The seed is first
+     * checked against the edges added among seeded vertices; embeddings
+     * are then enumerated as in {@link #matchAll}.
+     *
+     * @param seed image of query vertices [0, seeded) in target
+     * @return the number of extensions found, at most maxFound
+     */
+    public int extend(
+        CSRGraph target,
+        int[] seed,
+        int maxFound,
+        int keep,
+        List<int[]> out
+    ) {
+        return search(
+            target,
+            seed,
+            0,
+            target.size(),
+            null,
+            maxFound,
+            keep,
+            out
+        );
+    }
+
+    private int search(
+        CSRGraph target,
+        int[] seed,
+        int rootFrom,
+        int rootTo,
+        BooleanSupplier cancelled,
+        int maxFound,
+        int keep,
+        List<int[]> out
+    ) {
+        first = null;
+        int m = target.size();
+        if (n == 0 || n > m || maxFound <= 0) return 0;
+
+        if (core2.length < m) {
+            core2 = new int[m];
+            term2 = new int[m];
+        }
+        Arrays.fill(core1, -1);
+        Arrays.fill(core2, 0, m, -1);
+        Arrays.fill(term1, 0);
+        Arrays.fill(term2, 0, m, 0);
+
+        int start = 0;
+        if (seed != null) {
+            for (; start < seeded; start++) {
+                int u = order[start];
+                int v = seed[u];
+                if (
+                    v < 0 || v >= m || core2[v] >= 0 || !feasible(target, u, v)
+                ) {
+                    return 0;
+                }
+                map(target, start, u, v);
+            }
+            if (start == n) {
+                first = core1.clone();
+                if (out != null && keep > 0) out.add(first);
+                return 1;
+            }
+        }
+
+        boolean distinct = maxFound > 1 && target.hasParallelEdges();
+        int found = 0;
+        int depth = start;
+        open(target, depth);
+        if (start == 0) {
+            cursor[0] = Math.max(rootFrom, 0);
+            limit[0] = Math.min(rootTo, m);
+        }
+        int steps = 0;
+        while (depth >= start) {
+            if (
+                cancelled != null &&
+                (++steps & 1023) == 0 &&
+                cancelled.getAsBoolean()
+            ) {
+                return found;
+            }
+            int u = order[depth];
+            int v = next(target, depth, distinct);
+            if (v < 0) {
+                // candidates exhausted: undo the choice one level up
+                if (--depth >= start) {
+                    unmap(target, depth, order[depth]);
+                }
+                continue;
+            }
+            if (!feasible(target, u, v)) continue;
+
+            if (depth + 1 == n) {
+                core1[u] = v;
+                if (found == 0) {
+                    first = core1.clone();
+                }
+                if (out != null && found < keep) {
+                    out.add(found == 0 ? first : core1.clone());
+                }
+                core1[u] = -1;
+                if (++found == maxFound) return found;
+                continue;
+            }
+            map(target, depth, u, v);
+            open(target, ++depth);
+        }
+        return found;
+    }
+
+    /**
+     * Position the candidate cursor of a depth: the adjacency row of the
+     * parent's image, or every target vertex for a component root.
+     */
+    private void open(CSRGraph target, int depth) {
+        int p = parent[depth];
+        if (p >= 0) {
+            cursor[depth] = target.begin(core1[p]);
+            limit[depth] = target.end(core1[p]);
+        } else {
+            cursor[depth] = 0;
+            limit[depth] = target.size();
+        }
+    }
+
+    private int next(CSRGraph target, int depth, boolean distinct) {
+        boolean row = parent[depth] >= 0;
+        while (cursor[depth] < limit[depth]) {
+            int c = cursor[depth]++;
+            int v = row ? target.target(c) : c;
+            if (
+                core2[v] < 0 &&
+                !(distinct && row && seenInRow(target, depth, c))
+            ) {
+                return v;
+            }
+        }
+        return -1;
+    }
+
+    /** True when the row being scanned reaches the target of c earlier. */
+    private boolean seenInRow(CSRGraph target, int depth, int c) {
+        int v = target.target(c);
+        for (int s = target.begin(core1[parent[depth]]); s < c; s++) {
+            if (target.target(s) == v) return true;
+        }
+        return false;
+    }
+
+    private void map(CSRGraph target, int depth, int u, int v) {
+        int stamp = depth + 1;
+        core1[u] = v;
+        core2[v] = u;
+        if (term1[u] == 0) term1[u] = stamp;
+        if (term2[v] == 0) term2[v] = stamp;
+        for (int s = query.begin(u); s < query.end(u); s++) {
+            int w = query.target(s);
+            if (term1[w] == 0) term1[w] = stamp;
+        }
+        for (int s = target.begin(v); s < target.end(v); s++) {
+            int x = target.target(s);
+            if (term2[x] == 0) term2[x] = stamp;
+        }
+    }
+
+    private void unmap(CSRGraph target, int depth, int u) {
+        int stamp = depth + 1;
+        int v = core1[u];
+        for (int s = query.begin(u); s < query.end(u); s++) {
+            int w = query.target(s);
+            if (term1[w] == stamp) term1[w] = 0;
+        }
+        for (int s = target.begin(v); s < target.end(v); s++) {
+            int x = target.target(s);
+            if (term2[x] == stamp) term2[x] = 0;
+        }
+        if (term1[u] == stamp) term1[u] = 0;
+        if (term2[v] == stamp) term2[v] = 0;
+        core2[v] = -1;
+        core1[u] = -1;
+    }
+
+    private boolean feasible(CSRGraph target, int u, int v) {
+        if (query.label(u) != target.label(v)) return false;
+        if (query.degree(u) > target.degree(v)) return false;
+
+        int queryTerm = 0;
+        int queryNew = 0;
+        for (int s = query.begin(u); s < query.end(u); s++) {
+            int w = query.target(s);
+            if (w == u) {
+                if (!target.hasEdge(v, v, query.edgeLabel(s))) return false;
+            } else if (core1[w] >= 0) {
+                if (!target.hasEdge(v, core1[w], query.edgeLabel(s))) {
+                    return false;
+                }
+            } else if (term1[w] != 0) {
+                queryTerm++;
+            } else {
+                queryNew++;
+            }
+        }
+
+        int targetTerm = 0;
+        int targetNew = 0;
+        for (int s = target.begin(v); s < target.end(v); s++) {
+            int x = target.target(s);
+            if (x == v || core2[x] >= 0) continue;
+            if (term2[x] != 0) {
+                targetTerm++;
+            } else {
+                targetNew++;
+            }
+        }
+
+        return (
+            queryTerm <= targetTerm &&
+            queryTerm + queryNew <= targetTerm + targetNew
+        );
+    }
+}
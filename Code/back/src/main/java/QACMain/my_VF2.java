@@ -1,23 +1,31 @@
 package QACMain;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
-import java.io.FileReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicInteger;
+import model.CSRGraph;
 
 public class my_VF2 {
 
@@ -77,723 +85,459 @@ public class my_VF2 {
         );
     }
 
-    static class GraphSet {
-
-        private List<Object[]> graphSet = new ArrayList<>();
-        private List<Map<Integer, String>> vertexSet = new ArrayList<>();
-        private List<Map<String, String>> edgeSet = new ArrayList<>();
-        private Map<Integer, Map<Integer, List<Integer>>> neighborCache =
-            new HashMap<>();
-
-        public GraphSet(String inputFile) {
-            try (
-                BufferedReader br = new BufferedReader(
-                    new FileReader(inputFile)
-                )
-            ) {
-                int lineNum = -1;
-                Map<Integer, String> curVertexSet = new HashMap<>();
-                Map<String, String> curEdgeSet = new HashMap<>();
-
-                String line;
-                while ((line = br.readLine()) != null) {
-                    String[] lineList = line.trim().split(" ");
-                    if (lineList.length == 0) {
-                        System.out.println(
-                            "Class GraphSet __init__() line split error!"
-                        );
-                        System.exit(1);
-                    }
-
-                    if (lineList[0].equals("t")) {
-                        if (lineNum > -1) {
-                            Object[] currentGraph = {
-                                lineNum,
-                                curVertexSet,
-                                curEdgeSet,
-                            };
-                            graphSet.add(currentGraph);
-                            vertexSet.add(curVertexSet);
-                            edgeSet.add(curEdgeSet);
-                        }
-                        lineNum += 1;
-                        curVertexSet = new HashMap<>();
-                        curEdgeSet = new HashMap<>();
-                    } else if (lineList[0].equals("v")) {
-                        if (lineList.length != 3) {
-                            System.out.println(
-                                "Class GraphSet __init__() line vertex error!"
-                            );
-                            System.exit(1);
-                        }
-                        curVertexSet.put(
-                            Integer.parseInt(lineList[1]),
-                            lineList[2]
-                        );
-                    } else if (lineList[0].equals("e")) {
-                        if (lineList.length != 4) {
-                            System.out.println(
-                                "Class GraphSet __init__() line edge error!"
-                            );
-                            System.exit(1);
-                        }
-
-                        int v1 = Integer.parseInt(lineList[1]);
-                        int v2 = Integer.parseInt(lineList[2]);
-                        String edgeKey =
-                            Math.min(v1, v2) + ":" + Math.max(v1, v2);
-                        curEdgeSet.put(edgeKey, lineList[3]);
-                    }
-                }
-            } catch (IOException e) {
-                System.out.println(
-                    "Class GraphSet __init__() Cannot open Graph file: " + e
-                );
-                System.exit(1);
-            }
-        }
-
-        public List<Object[]> graphSet() {
-            return graphSet;
-        }
-
-        public Map<Integer, String> curVSet(int offset) {
-            if (offset >= vertexSet.size()) {
-                System.out.println(
-                    "Class GraphSet curVSet() offset out of index!"
-                );
-                System.exit(1);
-            }
-            return vertexSet.get(offset);
-        }
-
-        public Map<String, String> curESet(int offset) {
-            if (offset >= edgeSet.size()) {
-                System.out.println(
-                    "Class GraphSet curESet() offset out of index!"
-                );
-                System.exit(1);
-            }
-            return edgeSet.get(offset);
-        }
-
-        public List<List<String>> curVESet(int offset) {
-            if (offset >= vertexSet.size()) {
-                System.out.println(
-                    "Class GraphSet curVESet() offset out of index!"
-                );
-                System.exit(1);
-            }
-
-            int vertexNum = vertexSet.get(offset).size();
-            List<List<String>> result = new ArrayList<>(vertexNum);
-            for (int i = 0; i < vertexNum; i++) {
-                result.add(new ArrayList<>());
-            }
-
-            if (offset < edgeSet.size()) {
-                for (String key : edgeSet.get(offset).keySet()) {
-                    String[] parts = key.split(":");
-                    int v1 = Integer.parseInt(parts[0]);
-                    int v2 = Integer.parseInt(parts[1]);
-
-                    if (v1 < vertexNum && v2 < vertexNum) {
-                        result.get(v1).add(key);
-                        result.get(v2).add(key);
-                    } else {
-                        System.out.println(
-                            "Warning: Vertex index out of bounds for edge: " +
-                            key
-                        );
-                    }
-                }
-            } else {
-                System.out.println(
-                    "Warning: edgeSet is not valid for the current offset: " +
-                    offset
-                );
-            }
-
-            return result;
-        }
-
-        public List<Integer> neighbor(int offset, int vertexIndex) {
-            if (offset >= vertexSet.size()) {
-                System.out.println(
-                    "Class GraphSet neighbor() offset out of index!"
-                );
-                System.exit(1);
-            }
+    static class Vf {
 
-            if (!neighborCache.containsKey(offset)) {
-                neighborCache.put(offset, new HashMap<>());
-            }
+        /** Candidate graphs matched by one leaf task. */
+        private static final int CANDIDATE_GRAIN = 32;
 
-            Map<Integer, List<Integer>> offsetCache = neighborCache.get(offset);
-            if (offsetCache.containsKey(vertexIndex)) {
-                return offsetCache.get(vertexIndex);
-            }
+        /** Graphs with at least this many vertices are split by root. */
+        private static final int SPLIT_GRAPH_SIZE = 512;
 
-            List<List<String>> VESet = curVESet(offset);
-            List<String> aList = VESet.get(vertexIndex);
-            List<Integer> neighborSet = new ArrayList<>();
+        private static final ForkJoinPool MATCH_POOL = new ForkJoinPool(
+            Runtime.getRuntime().availableProcessors()
+        );
 
-            for (String edge : aList) {
-                String[] parts = edge.split(":");
-                int v1 = Integer.parseInt(parts[0]);
-                int v2 = Integer.parseInt(parts[1]);
+        private GraphDatabase origin = null;
+        private GraphDatabase sub = null;
 
-                if (v1 != vertexIndex) {
-                    neighborSet.add(v1);
-                } else if (v2 != vertexIndex) {
-                    neighborSet.add(v2);
-                } else {
-                    System.exit(1);
-                }
-            }
+        private boolean useParallelProcessing = true;
+        private boolean enableProgressReporting = true;
+        private MatchMode matchMode = MatchMode.EXISTS;
 
-            offsetCache.put(vertexIndex, neighborSet);
-            return neighborSet;
-        }
-    }
+        /** Matches of the previous query while extending them, else null. */
+        private MatchStore extending = null;
+        private VF2Matcher extendPlan = null;
+        private final AtomicInteger extendedCount = new AtomicInteger();
+        private final AtomicInteger researchedCount = new AtomicInteger();
 
-    static class Mapping {
+        /** Collects the matches of query 0 for the next run. */
+        private MatchStore.Builder recording = null;
 
-        private List<Integer> subMap = new ArrayList<>();
-        private List<Integer> gMap = new ArrayList<>();
+        private Set<Integer> filterCandidatesByLabels(
+            int queryId,
+            int totalGraphs
+        ) {
+            GraphIndex index = GraphIndexer.forDatabase(origin);
+            BitSet hits = index.getCandidateGraphs(sub.graph(queryId));
 
-        public Mapping(java.util.Map<Integer, Integer> result) {
-            if (result != null) {
-                for (Integer key : result.keySet()) {
-                    subMap.add(key);
-                    gMap.add(result.get(key));
-                }
+            Set<Integer> candidates = new HashSet<>();
+            for (
+                int graphId = hits.nextSetBit(0);
+                graphId >= 0 && graphId < totalGraphs;
+                graphId = hits.nextSetBit(graphId + 1)
+            ) {
+                candidates.add(graphId);
             }
+            return candidates;
         }
 
-        public List<Integer> subMap() {
-            return subMap;
-        }
-
-        public List<Integer> gMap() {
-            return gMap;
-        }
-
-        public boolean isCovered(java.util.Map<Integer, String> vertexSet) {
-            return subMap.size() == vertexSet.size();
-        }
+        private void processInParallel(
+            int queryId,
+            Set<Integer> candidates,
+            List<Integer> matches,
+            BufferedWriter writer
+        ) throws IOException {
+            final VF2Matcher planned = new VF2Matcher(
+                sub.graph(queryId),
+                origin
+            );
+            final int queryVertexCount = planned.query().size();
 
-        public List<Integer> neighbor(
-            int offset,
-            GraphSet graph,
-            int type,
-            boolean isInMap
-        ) {
-            List<List<String>> VESet = graph.curVESet(offset);
-            List<Integer> neighbor = new ArrayList<>();
-            List<Integer> curMap = (type == 1) ? gMap : subMap;
-
-            for (int index : curMap) {
-                List<String> aList = VESet.get(index);
-                for (String edge : aList) {
-                    String[] parts = edge.split(":");
-                    int v1 = Integer.parseInt(parts[0]);
-                    int v2 = Integer.parseInt(parts[1]);
-
-                    int v;
-                    if (v1 != index) {
-                        v = v1;
-                    } else if (v2 != index) {
-                        v = v2;
-                    } else {
-                        System.out.println(
-                            "Class Mapping subNeighbor() VESet error!"
-                        );
-                        System.exit(1);
-                        return null;
-                    }
+            AtomicInteger processedCount = new AtomicInteger(0);
+            AtomicInteger matchedCount = new AtomicInteger(0);
+            final int totalCandidates = candidates.size();
 
-                    if (isInMap && !neighbor.contains(v)) {
-                        neighbor.add(v);
-                    } else if (
-                        !isInMap && !neighbor.contains(v) && !curMap.contains(v)
-                    ) {
-                        neighbor.add(v);
-                    }
-                }
+            int[] candidateIds = new int[totalCandidates];
+            int k = 0;
+            for (int graphId : candidates) {
+                candidateIds[k++] = graphId;
             }
+            Arrays.sort(candidateIds);
 
-            if (neighbor.isEmpty()) {
-                for (Integer index : graph.curVSet(offset).keySet()) {
-                    if (!curMap.contains(index)) {
-                        neighbor.add(index);
+            Thread progressThread = null;
+            if (enableProgressReporting && totalCandidates > 100) {
+                progressThread = new Thread(() -> {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        try {
+                            Thread.sleep(2000);
+                            int processed = processedCount.get();
+                            int matched = matchedCount.get();
+                            if (processed > 0) {
+                                System.out.printf(
+                                    "Progress: %d/%d (%.1f%%) candidates processed, %d matches found%n",
+                                    processed,
+                                    totalCandidates,
+                                    (processed * 100.0) / totalCandidates,
+                                    matched
+                                );
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
                     }
-                }
+                });
+                progressThread.setDaemon(true);
+                progressThread.start();
             }
 
-            return neighbor;
-        }
-    }
-
-    static class Vf {
-
-        private GraphSet origin = null;
-        private GraphSet sub = null;
-        private Map<String, String> edgeLabelCache = new HashMap<>();
-
-        private boolean useParallelProcessing = true;
-        private boolean enableProgressReporting = true;
-
-        public List<String> candidate(
-            List<Integer> subMNeighbor,
-            List<Integer> gMNeighbor,
-            int i,
-            int j
-        ) {
-            if (
-                subMNeighbor == null ||
-                subMNeighbor.isEmpty() ||
-                gMNeighbor == null ||
-                gMNeighbor.isEmpty()
-            ) {
-                System.out.println(
-                    "Class Vf candidate() arguments value error! subMNeighbor or gMNeighbor is empty!"
+            MatchBuffer found;
+            try {
+                found = MATCH_POOL.invoke(
+                    new CandidateTask(
+                        planned,
+                        candidateIds,
+                        0,
+                        candidateIds.length,
+                        processedCount,
+                        matchedCount
+                    )
                 );
-                System.exit(1);
+            } catch (RuntimeException e) {
+                System.err.println(
+                    "Error in parallel execution: " + e.getMessage()
+                );
+                found = new MatchBuffer();
             }
 
-            List<String> pairs = new ArrayList<>();
-
-            Map<Integer, String> subNodeLabels = new HashMap<>();
-            for (int v1 : subMNeighbor) {
-                subNodeLabels.put(v1, sub.curVSet(i).get(v1));
+            if (progressThread != null) {
+                progressThread.interrupt();
             }
 
-            for (int v1 : subMNeighbor) {
-                String label1 = subNodeLabels.get(v1);
-                for (int v2 : gMNeighbor) {
-                    if (label1.equals(origin.curVSet(j).get(v2))) {
-                        pairs.add(v1 + ":" + v2);
-                    }
-                }
+            // leaves cover ascending candidate ranges and merge in order
+            for (int i = 0; i < found.size; i++) {
+                matches.add(found.matches[i].graphId);
+                writeMatches(writer, found.matches[i], queryVertexCount);
             }
-            return pairs;
         }
 
-        public List<Integer> preSucc(
-            List<Integer> vertexNeighbor,
-            List<Integer> map,
-            int type
-        ) {
-            if (type != 0 && type != 1) {
-                System.out.println(
-                    "Class Vf preSucc() arguments value error! type expected 0 or 1!"
-                );
-            }
+        /**
+         * Embeddings of the query in one graph: the kept mappings, in
+         * search order, and how many were found in total.
+         */
+        private static class GraphMatch {
 
-            List<Integer> result = new ArrayList<>();
+            private final int graphId;
+            private final int[][] embeddings;
+            private final int count;
 
-            if (type == 1) {
-                for (int vertex : vertexNeighbor) {
-                    if (!map.contains(vertex)) {
-                        result.add(vertex);
-                    }
-                }
-            } else {
-                for (int vertex : vertexNeighbor) {
-                    if (map.contains(vertex)) {
-                        result.add(vertex);
-                    }
-                }
+            GraphMatch(int graphId, int[][] embeddings, int count) {
+                this.graphId = graphId;
+                this.embeddings = embeddings;
+                this.count = count;
             }
-            return result;
         }
 
-        public String edgeLabel(int offset, int index1, int index2, int type) {
-            String key;
-            if (index1 < index2) {
-                key = index1 + ":" + index2;
-            } else {
-                key = index2 + ":" + index1;
-            }
-
-            String cacheKey = offset + ":" + key + ":" + type;
-            if (edgeLabelCache.containsKey(cacheKey)) {
-                return edgeLabelCache.get(cacheKey);
-            }
-
-            java.util.Map<String, String> ESet;
-            if (type == 1) {
-                ESet = origin.curESet(offset);
-            } else {
-                ESet = sub.curESet(offset);
-            }
+        /**
+         * Matches found by one task, in ascending graph order.
+         */
+        private static class MatchBuffer {
 
-            String result = null;
-            if (ESet.containsKey(key)) {
-                result = ESet.get(key);
-            }
-
-            edgeLabelCache.put(cacheKey, result);
-            return result;
-        }
+            private GraphMatch[] matches = new GraphMatch[8];
+            private int size = 0;
 
-        public boolean isMatchInV2Succ(
-            int j,
-            String vertex,
-            String edge,
-            int v2,
-            List<Integer> v2Succ
-        ) {
-            for (int succ : v2Succ) {
-                String vLabel = origin.curVSet(j).get(succ);
-                String eLabel = edgeLabel(j, v2, succ, 1);
-                if (
-                    vLabel.equals(vertex) &&
-                    eLabel != null &&
-                    eLabel.equals(edge)
-                ) {
-                    return true;
+            void add(GraphMatch match) {
+                if (size == matches.length) {
+                    matches = Arrays.copyOf(matches, size * 2);
                 }
+                matches[size++] = match;
             }
-            return false;
-        }
 
-        public boolean isMeetRules(
-            int v1,
-            int v2,
-            int i,
-            int j,
-            java.util.Map<Integer, Integer> result,
-            List<Integer> subMap,
-            List<Integer> gMap,
-            List<Integer> subMNeighbor,
-            List<Integer> gMNeighbor
-        ) {
-            if (!sub.curVSet(i).get(v1).equals(origin.curVSet(j).get(v2))) {
-                return false;
-            }
-
-            for (Map.Entry<Integer, Integer> entry : result.entrySet()) {
-                int i_a = entry.getKey();
-                int j_a = entry.getValue();
-
-                String sKey1 = Math.min(v1, i_a) + ":" + Math.max(v1, i_a);
-                String gKey1 = Math.min(v2, j_a) + ":" + Math.max(v2, j_a);
-
-                if (sub.curESet(i).containsKey(sKey1)) {
-                    if (!origin.curESet(j).containsKey(gKey1)) {
-                        return false;
-                    }
-                    if (
-                        !sub
-                            .curESet(i)
-                            .get(sKey1)
-                            .equals(origin.curESet(j).get(gKey1))
-                    ) {
-                        return false;
-                    }
+            MatchBuffer append(MatchBuffer other) {
+                for (int i = 0; i < other.size; i++) {
+                    add(other.matches[i]);
                 }
+                return this;
             }
-
-            return true;
         }
 
-        public java.util.Map<Integer, Integer> dfsMatch(
-            int i,
-            int j,
-            java.util.Map<Integer, Integer> result
-        ) {
-            if (sub.curVSet(i).size() > origin.curVSet(j).size()) {
-                return result;
-            }
-
-            Mapping curMap = new Mapping(result);
-
-            if (curMap.isCovered(sub.curVSet(i))) {
-                return result;
+        /**
+         * Matches a range of candidate graphs, halving the range until it
+         * is small enough; idle workers steal the forked halves. A
+         * candidate graph that is large on its own is further split by
+         * root ranges.
+         */
+        private class CandidateTask extends RecursiveTask<MatchBuffer> {
+
+            private static final long serialVersionUID = 1L;
+
+            private final VF2Matcher planned;
+            private final int[] candidateIds;
+            private final int from;
+            private final int to;
+            private final AtomicInteger processedCount;
+            private final AtomicInteger matchedCount;
+
+            CandidateTask(
+                VF2Matcher planned,
+                int[] candidateIds,
+                int from,
+                int to,
+                AtomicInteger processedCount,
+                AtomicInteger matchedCount
+            ) {
+                this.planned = planned;
+                this.candidateIds = candidateIds;
+                this.from = from;
+                this.to = to;
+                this.processedCount = processedCount;
+                this.matchedCount = matchedCount;
             }
 
-            List<Integer> subMNeighbor = curMap.neighbor(i, sub, 0, true);
-            List<Integer> gMNeighbor = curMap.neighbor(j, origin, 1, true);
-
-            List<Integer> subNMNeighbor = curMap.neighbor(i, sub, 0, false);
-            List<Integer> gNMNeighbor = curMap.neighbor(j, origin, 1, false);
-
-            if (result.isEmpty()) {
-                subNMNeighbor.clear();
-                gNMNeighbor.clear();
-                subNMNeighbor.add(0);
-
-                for (Integer vertex : origin.curVSet(j).keySet()) {
-                    gNMNeighbor.add(vertex);
+            @Override
+            protected MatchBuffer compute() {
+                if (to - from > CANDIDATE_GRAIN) {
+                    int mid = (from + to) >>> 1;
+                    CandidateTask left = new CandidateTask(
+                        planned,
+                        candidateIds,
+                        from,
+                        mid,
+                        processedCount,
+                        matchedCount
+                    );
+                    CandidateTask right = new CandidateTask(
+                        planned,
+                        candidateIds,
+                        mid,
+                        to,
+                        processedCount,
+                        matchedCount
+                    );
+                    left.fork();
+                    MatchBuffer rightResult = right.compute();
+                    return left.join().append(rightResult);
                 }
-            }
-
-            while (subNMNeighbor.size() > 1) {
-                subNMNeighbor.remove(subNMNeighbor.size() - 1);
-            }
-
-            List<String> pairs = candidate(subNMNeighbor, gNMNeighbor, i, j);
-            if (pairs.isEmpty()) {
-                return result;
-            }
-
-            for (String pair : pairs) {
-                String[] parts = pair.split(":");
-                int v1 = Integer.parseInt(parts[0]);
-                int v2 = Integer.parseInt(parts[1]);
 
-                if (
-                    isMeetRules(
-                        v1,
-                        v2,
-                        i,
-                        j,
-                        result,
-                        curMap.subMap(),
-                        curMap.gMap(),
-                        subMNeighbor,
-                        gMNeighbor
-                    )
-                ) {
-                    result.put(v1, v2);
-                    dfsMatch(i, j, result);
-
-                    if (result.size() == sub.curVSet(i).size()) {
-                        return result;
+                MatchBuffer buffer = new MatchBuffer();
+                VF2Matcher matcher = planned.copy();
+                VF2Matcher extender = extendPlan == null
+                    ? null
+                    : extendPlan.copy();
+                for (int i = from; i < to; i++) {
+                    int graphId = candidateIds[i];
+                    try {
+                        GraphMatch result = findMatches(
+                            planned,
+                            matcher,
+                            extender,
+                            graphId
+                        );
+                        if (result != null) {
+                            buffer.add(result);
+                            matchedCount.incrementAndGet();
+                        }
+                    } catch (RuntimeException e) {
+                        System.err.println(
+                            "Error processing graph " +
+                            graphId +
+                            ": " +
+                            e.getMessage()
+                        );
                     }
-                    result.remove(v1);
+                    processedCount.incrementAndGet();
                 }
+                return buffer;
             }
-            return result;
         }
 
-        private Map<String, Integer> extractNodeLabelFrequency(
-            GraphSet graphSet,
+        /**
+         * Match one candidate graph, extending the previous query's
+         * embeddings of it when there are any.
+         */
+        private GraphMatch findMatches(
+            VF2Matcher planned,
+            VF2Matcher matcher,
+            VF2Matcher extender,
             int graphId
         ) {
-            Map<String, Integer> frequency = new HashMap<>();
-            Map<Integer, String> vertices = graphSet.curVSet(graphId);
+            int index = extender == null ? -1 : extending.indexOf(graphId);
+            if (index < 0) {
+                return matchGraph(planned, matcher, graphId);
+            }
 
-            for (String label : vertices.values()) {
-                frequency.put(label, frequency.getOrDefault(label, 0) + 1);
+            CSRGraph graph = origin.graph(graphId);
+            List<int[]> kept = new ArrayList<>();
+            int count = 0;
+            for (int k = 0; k < extending.embeddingCount(index); k++) {
+                count += extender.extend(
+                    graph,
+                    extending.embedding(index, k),
+                    matchMode.limit() - count,
+                    matchMode.keep() - kept.size(),
+                    kept
+                );
+                if (count >= matchMode.limit()) break;
             }
 
-            return frequency;
+            // without every old embedding a miss proves nothing, and a
+            // partial list may not reach the requested number of embeddings
+            boolean complete = extending.isComplete(index);
+            if (
+                (count > 0 &&
+                    (matchMode.kind() == MatchMode.Kind.EXISTS ||
+                        count >= matchMode.limit() ||
+                        complete)) ||
+                (count == 0 && complete)
+            ) {
+                extendedCount.incrementAndGet();
+                return count == 0
+                    ? null
+                    : new GraphMatch(graphId, kept.toArray(new int[0][]), count);
+            }
+            researchedCount.incrementAndGet();
+            return matchGraph(planned, matcher, graphId);
         }
 
-        private Map<String, Integer> extractEdgeLabelFrequency(
-            GraphSet graphSet,
+        /**
+         * Match one candidate graph in the current mode.
+         *
+         * @param matcher a copy of planned owned by the calling thread
+         * @return the embeddings found, or null when the query does not
+         *         occur in the graph
+         */
+        private GraphMatch matchGraph(
+            VF2Matcher planned,
+            VF2Matcher matcher,
             int graphId
         ) {
-            Map<String, Integer> frequency = new HashMap<>();
-            Map<String, String> edges = graphSet.curESet(graphId);
-
-            for (String label : edges.values()) {
-                frequency.put(label, frequency.getOrDefault(label, 0) + 1);
+            CSRGraph graph = origin.graph(graphId);
+            // only split inside MATCH_POOL, so sequential mode stays sequential
+            boolean split =
+                graph.size() >= SPLIT_GRAPH_SIZE &&
+                ForkJoinTask.getPool() == MATCH_POOL;
+            if (matchMode.kind() == MatchMode.Kind.EXISTS) {
+                int[] result = split
+                    ? matchSplit(planned, graph)
+                    : matcher.match(graph);
+                return result == null
+                    ? null
+                    : new GraphMatch(graphId, new int[][] { result }, 1);
             }
 
-            return frequency;
+            List<int[]> kept = new ArrayList<>();
+            int count = split
+                ? matchSplitAll(planned, graph, matchMode, kept)
+                : matcher.matchAll(
+                    graph,
+                    0,
+                    graph.size(),
+                    matchMode.limit(),
+                    matchMode.keep(),
+                    kept
+                );
+            return count == 0
+                ? null
+                : new GraphMatch(graphId, kept.toArray(new int[0][]), count);
         }
 
-        private Set<Integer> filterCandidatesByLabels(
-            int queryId,
-            int totalGraphs
-        ) {
-            Set<Integer> candidates = new HashSet<>();
-
-            Map<String, Integer> queryNodeLabels = extractNodeLabelFrequency(
-                sub,
-                queryId
+        /**
+         * Search one large graph with the root vertex range divided among
+         * workers. Ranges above the lowest successful one are cancelled, so
+         * the embedding is the one a sequential search would report.
+         */
+        private static int[] matchSplit(VF2Matcher planned, CSRGraph graph) {
+            int m = graph.size();
+            int chunk = Math.max(
+                1,
+                m / (MATCH_POOL.getParallelism() * 4)
             );
-            Map<String, Integer> queryEdgeLabels = extractEdgeLabelFrequency(
-                sub,
-                queryId
-            );
-
-            for (int graphId = 0; graphId < totalGraphs; graphId++) {
-                boolean isCandidate = true;
-
-                if (
-                    sub.curVSet(queryId).size() > origin.curVSet(graphId).size()
-                ) {
-                    continue;
-                }
-
-                Map<String, Integer> graphNodeLabels =
-                    extractNodeLabelFrequency(origin, graphId);
-                for (Map.Entry<
-                    String,
-                    Integer
-                > entry : queryNodeLabels.entrySet()) {
-                    String label = entry.getKey();
-                    int requiredCount = entry.getValue();
-                    if (
-                        graphNodeLabels.getOrDefault(label, 0) < requiredCount
-                    ) {
-                        isCandidate = false;
-                        break;
-                    }
-                }
-
-                if (!isCandidate) continue;
-
-                Map<String, Integer> graphEdgeLabels =
-                    extractEdgeLabelFrequency(origin, graphId);
-                for (Map.Entry<
-                    String,
-                    Integer
-                > entry : queryEdgeLabels.entrySet()) {
-                    String label = entry.getKey();
-                    int requiredCount = entry.getValue();
-                    if (
-                        graphEdgeLabels.getOrDefault(label, 0) < requiredCount
-                    ) {
-                        isCandidate = false;
-                        break;
+            int chunks = (m + chunk - 1) / chunk;
+            AtomicInteger winner = new AtomicInteger(Integer.MAX_VALUE);
+
+            List<RecursiveTask<int[]>> tasks = new ArrayList<>(chunks);
+            for (int c = 0; c < chunks; c++) {
+                final int index = c;
+                final int rootFrom = c * chunk;
+                final int rootTo = Math.min(m, rootFrom + chunk);
+                tasks.add(
+                    new RecursiveTask<int[]>() {
+                        @Override
+                        protected int[] compute() {
+                            if (winner.get() < index) {
+                                return null;
+                            }
+                            int[] result = planned
+                                .copy()
+                                .match(graph, rootFrom, rootTo, () ->
+                                    winner.get() < index
+                                );
+                            if (result != null) {
+                                winner.accumulateAndGet(index, Math::min);
+                            }
+                            return result;
+                        }
                     }
-                }
+                );
+            }
+            ForkJoinTask.invokeAll(tasks);
 
-                if (isCandidate) {
-                    candidates.add(graphId);
+            for (RecursiveTask<int[]> task : tasks) {
+                int[] result = task.join();
+                if (result != null) {
+                    return result;
                 }
             }
-
-            return candidates;
+            return null;
         }
 
-        private void processInParallel(
-            int queryId,
-            Set<Integer> candidates,
-            List<Integer> matches,
-            BufferedWriter writer
-        ) throws IOException {
-            int processorCount = Runtime.getRuntime().availableProcessors();
-            ExecutorService executor = Executors.newFixedThreadPool(
-                processorCount
+        /**
+         * Enumerate embeddings of one large graph with the root range
+         * divided among workers. Every range is searched up to the limit
+         * and the results are concatenated in range order, which is the
+         * order a sequential search reports them in.
+         */
+        private static int matchSplitAll(
+            VF2Matcher planned,
+            CSRGraph graph,
+            MatchMode mode,
+            List<int[]> kept
+        ) {
+            int m = graph.size();
+            int chunk = Math.max(
+                1,
+                m / (MATCH_POOL.getParallelism() * 4)
             );
-            Map<Integer, Map<Integer, Integer>> allResults =
-                new ConcurrentHashMap<>();
-
-            final int queryVertexCount = sub.curVSet(queryId).size();
-
-            AtomicInteger processedCount = new AtomicInteger(0);
-            AtomicInteger matchedCount = new AtomicInteger(0);
-            final int totalCandidates = candidates.size();
-
-            List<Integer> candidatesList = new ArrayList<>(candidates);
-            int batchSize = Math.max(1, candidatesList.size() / processorCount);
-            List<Future<?>> futures = new ArrayList<>();
-
-            Thread progressThread = null;
-            if (enableProgressReporting && totalCandidates > 100) {
-                progressThread = new Thread(() -> {
-                    while (!Thread.currentThread().isInterrupted()) {
-                        try {
-                            Thread.sleep(2000);
-                            int processed = processedCount.get();
-                            int matched = matchedCount.get();
-                            if (processed > 0) {
-                                System.out.printf(
-                                    "Progress: %d/%d (%.1f%%) candidates processed, %d matches found%n",
-                                    processed,
-                                    totalCandidates,
-                                    (processed * 100.0) / totalCandidates,
-                                    matched
+            int chunks = (m + chunk - 1) / chunk;
+
+            List<RecursiveTask<List<int[]>>> tasks = new ArrayList<>(chunks);
+            int[] counts = new int[chunks];
+            for (int c = 0; c < chunks; c++) {
+                final int index = c;
+                final int rootFrom = c * chunk;
+                final int rootTo = Math.min(m, rootFrom + chunk);
+                tasks.add(
+                    new RecursiveTask<List<int[]>>() {
+                        @Override
+                        protected List<int[]> compute() {
+                            List<int[]> found = new ArrayList<>();
+                            counts[index] = planned
+                                .copy()
+                                .matchAll(
+                                    graph,
+                                    rootFrom,
+                                    rootTo,
+                                    mode.limit(),
+                                    mode.keep(),
+                                    found
                                 );
-                            }
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                            break;
+                            return found;
                         }
                     }
-                });
-                progressThread.setDaemon(true);
-                progressThread.start();
-            }
-
-            for (
-                int batchStart = 0;
-                batchStart < candidatesList.size();
-                batchStart += batchSize
-            ) {
-                int batchEnd = Math.min(
-                    batchStart + batchSize,
-                    candidatesList.size()
-                );
-                List<Integer> batch = candidatesList.subList(
-                    batchStart,
-                    batchEnd
                 );
-
-                futures.add(
-                    executor.submit(() -> {
-                        for (int graphId : batch) {
-                            try {
-                                Map<Integer, Integer> result = new HashMap<>();
-                                result = dfsMatch(queryId, graphId, result);
-
-                                if (
-                                    result != null &&
-                                    result.size() == queryVertexCount
-                                ) {
-                                    synchronized (matches) {
-                                        matches.add(graphId);
-                                    }
-                                    allResults.put(graphId, result);
-                                    matchedCount.incrementAndGet();
-                                }
-
-                                processedCount.incrementAndGet();
-                            } catch (Exception e) {
-                                System.err.println(
-                                    "Error processing graph " +
-                                    graphId +
-                                    ": " +
-                                    e.getMessage()
-                                );
-                                processedCount.incrementAndGet();
-                            }
-                        }
-                    })
-                );
-            }
-
-            for (Future<?> future : futures) {
-                try {
-                    future.get();
-                } catch (Exception e) {
-                    System.err.println(
-                        "Error in parallel execution: " + e.getMessage()
-                    );
-                }
-            }
-
-            executor.shutdown();
-            try {
-                executor.awaitTermination(1, TimeUnit.HOURS);
-            } catch (InterruptedException e) {
-                System.err.println("Executor interrupted: " + e.getMessage());
-            }
-
-            if (progressThread != null) {
-                progressThread.interrupt();
             }
+            ForkJoinTask.invokeAll(tasks);
 
-            Collections.sort(matches);
-
-            for (int graphId : matches) {
-                Map<Integer, Integer> result = allResults.get(graphId);
-                if (result != null) {
-                    writeMatchDetails(
-                        writer,
-                        graphId,
-                        result,
-                        queryVertexCount
-                    );
+            long total = 0;
+            for (int c = 0; c < chunks; c++) {
+                for (int[] mapping : tasks.get(c).join()) {
+                    if (kept.size() < mode.keep()) {
+                        kept.add(mapping);
+                    }
                 }
+                total += counts[c];
             }
+            return (int) Math.min(total, mode.limit());
         }
 
         private void processSequentially(
@@ -802,10 +546,11 @@ public class my_VF2 {
             List<Integer> matches,
             BufferedWriter writer
         ) throws IOException {
-            int queryVertexCount = sub.curVSet(queryId).size();
+            VF2Matcher matcher = new VF2Matcher(sub.graph(queryId), origin);
+            int queryVertexCount = matcher.query().size();
             int processedCount = 0;
             int totalCandidates = candidates.size();
-            Map<Integer, Map<Integer, Integer>> allResults = new HashMap<>();
+            Map<Integer, GraphMatch> allResults = new HashMap<>();
 
             for (int graphId : candidates) {
                 try {
@@ -825,10 +570,14 @@ public class my_VF2 {
                         );
                     }
 
-                    Map<Integer, Integer> result = new HashMap<>();
-                    result = dfsMatch(queryId, graphId, result);
+                    GraphMatch result = findMatches(
+                        matcher,
+                        matcher,
+                        extendPlan,
+                        graphId
+                    );
 
-                    if (result != null && result.size() == queryVertexCount) {
+                    if (result != null) {
                         matches.add(graphId);
                         allResults.put(graphId, result);
                     }
@@ -845,31 +594,46 @@ public class my_VF2 {
             Collections.sort(matches);
 
             for (int graphId : matches) {
-                Map<Integer, Integer> result = allResults.get(graphId);
+                GraphMatch result = allResults.get(graphId);
                 if (result != null) {
-                    writeMatchDetails(
-                        writer,
-                        graphId,
-                        result,
-                        queryVertexCount
-                    );
+                    writeMatches(writer, result, queryVertexCount);
                 }
             }
         }
 
+        /**
+         * Record a match in the store and, when G.txt is exported (writer
+         * not null), write one "In:" line per kept embedding; in count mode
+         * a "Count:" line follows with the number of embeddings found.
+         */
+        private void writeMatches(
+            BufferedWriter writer,
+            GraphMatch match,
+            int vertexCount
+        ) throws IOException {
+            if (recording != null) {
+                recording.add(match.graphId, match.embeddings, match.count);
+            }
+            if (writer == null) {
+                return;
+            }
+            for (int[] mapping : match.embeddings) {
+                writeMatchDetails(writer, match.graphId, mapping, vertexCount);
+            }
+            if (matchMode.kind() == MatchMode.Kind.COUNT) {
+                writer.write(
+                    "Count: Graph " + match.graphId + " " + match.count + "\n"
+                );
+            }
+        }
+
         private void writeMatchDetails(
             BufferedWriter writer,
             int graphId,
-            Map<Integer, Integer> result,
+            int[] mappingArray,
             int vertexCount
         ) throws IOException {
             writer.write("In: Graph " + graphId + " [");
-            int[] mappingArray = new int[vertexCount];
-            for (Map.Entry<Integer, Integer> entry : result.entrySet()) {
-                if (entry.getKey() < vertexCount) {
-                    mappingArray[entry.getKey()] = entry.getValue();
-                }
-            }
             for (int k = 0; k < mappingArray.length; k++) {
                 writer.write(String.valueOf(mappingArray[k]));
                 if (k < mappingArray.length - 1) {
@@ -887,45 +651,121 @@ public class my_VF2 {
             this.enableProgressReporting = enableProgress;
         }
 
+        public void setMatchMode(MatchMode mode) {
+            this.matchMode = mode == null ? MatchMode.EXISTS : mode;
+        }
+
         public void mainWithSpecificGraphs(
             String f1,
             String f2,
             String outputFile,
             boolean rerun,
             Arguments arguments
+        ) {
+            GraphDatabase database;
+            try {
+                database = GraphDatabase.load(f1);
+            } catch (IOException e) {
+                System.out.println(
+                    "Class GraphSet __init__() Cannot open Graph file: " + e
+                );
+                System.exit(1);
+                return;
+            }
+            mainWithSpecificGraphs(database, f2, outputFile, rerun, arguments);
+        }
+
+        public void mainWithSpecificGraphs(
+            GraphDatabase database,
+            String f2,
+            String outputFile,
+            boolean rerun,
+            Arguments arguments
         ) {
             System.out.println("Loading graph data...");
             long loadStart = System.currentTimeMillis();
-            origin = new GraphSet(f1);
-            sub = new GraphSet(f2);
+            origin = database;
+            if (arguments != null) {
+                setMatchMode(arguments.matchMode);
+            }
+            if (matchMode.kind() != MatchMode.Kind.EXISTS) {
+                System.out.println("VF2 match mode: " + matchMode);
+            }
+            try {
+                sub = GraphDatabase.read(f2);
+            } catch (IOException e) {
+                System.out.println(
+                    "Class GraphSet __init__() Cannot open Graph file: " + e
+                );
+                System.exit(1);
+            }
             long loadEnd = System.currentTimeMillis();
             System.out.println(
                 "Graph data loaded in " + (loadEnd - loadStart) + " ms"
             );
 
-            int subLen = sub.graphSet().size();
-            int gLen = origin.graphSet().size();
+            int subLen = sub.size();
+            int gLen = origin.size();
+
+            boolean exportText = arguments == null || arguments.exportTextMatches;
+            if (!exportText && new File(outputFile).exists()) {
+                System.out.println(
+                    "Warning: text export skipped, " +
+                    outputFile +
+                    " is left from an earlier run"
+                );
+            }
 
             try (
-                BufferedWriter writer = new BufferedWriter(
-                    new FileWriter(outputFile)
-                )
+                BufferedWriter writer = exportText
+                    ? new BufferedWriter(new FileWriter(outputFile))
+                    : null
             ) {
                 List<Integer> allMatches = new ArrayList<>();
+                MatchStore previous = rerun && subLen == 1 && arguments != null
+                    ? loadPrevious(arguments.matchStorePath)
+                    : null;
+                MatchStore.Builder store = subLen > 0 && arguments != null
+                    ? new MatchStore.Builder(origin, sub.graph(0), matchMode)
+                    : null;
 
                 for (int i = 0; i < subLen; i++) {
                     List<Integer> matches = new ArrayList<>();
-                    writer.write("Maps for: Query " + i + "\n");
+                    if (writer != null) {
+                        writer.write("Maps for: Query " + i + "\n");
+                    }
+                    recording = i == 0 ? store : null;
 
                     Set<Integer> candidates;
 
-                    if (
+                    if (previous != null && i == 0) {
+                        extending = previous;
+                        extendPlan = new VF2Matcher(
+                            sub.graph(i),
+                            origin,
+                            previous.query().size()
+                        );
+                        extendedCount.set(0);
+                        researchedCount.set(0);
+                        candidates = new HashSet<>();
+                        for (int k = 0; k < previous.size(); k++) {
+                            if (previous.graphId(k) < gLen) {
+                                candidates.add(previous.graphId(k));
+                            }
+                        }
+                        System.out.println(
+                            "Incremental VF2: extending embeddings of the previous query in " +
+                            candidates.size() +
+                            " graphs"
+                        );
+                    } else if (
                         rerun &&
                         arguments != null &&
                         arguments.IDs != null &&
                         !arguments.IDs.isEmpty()
                     ) {
                         candidates = new HashSet<>(arguments.IDs);
+                        candidates.removeIf(id -> id < 0 || id >= gLen);
                         System.out.println(
                             "VF2 reusing " +
                             arguments.IDs.size() +
@@ -952,7 +792,9 @@ public class my_VF2 {
                             System.out.println(
                                 "No candidates found for query " + i
                             );
-                            writer.write("[]\n");
+                            if (writer != null) {
+                                writer.write("[]\n");
+                            }
                             continue;
                         }
                     }
@@ -982,12 +824,40 @@ public class my_VF2 {
                         " matches"
                     );
 
+                    if (extending != null) {
+                        System.out.println(
+                            "Incremental VF2: " +
+                            extendedCount.get() +
+                            " graphs decided by extension, " +
+                            researchedCount.get() +
+                            " searched again"
+                        );
+                        extending = null;
+                        extendPlan = null;
+                    }
+
                     Collections.sort(matches);
-                    writer.write(matches.toString() + "\n");
+                    if (writer != null) {
+                        writer.write(matches.toString() + "\n");
+                    }
 
                     allMatches.addAll(matches);
                 }
 
+                recording = null;
+                if (store != null) {
+                    try {
+                        store.build().write(arguments.matchStorePath);
+                    } catch (IOException e) {
+                        System.err.println(
+                            "Could not write " +
+                            arguments.matchStorePath +
+                            ": " +
+                            e.getMessage()
+                        );
+                    }
+                }
+
                 System.out.println("Total matches found: " + allMatches.size());
                 if (!allMatches.isEmpty()) {
                     System.out.println(
@@ -1006,6 +876,31 @@ public class my_VF2 {
             }
         }
 
+        /**
+         * The matches of the previous run, when they can be extended to the
+         * current query: computed on this database as it is now, for a
+         * query that the current one contains vertex for vertex.
+         */
+        private MatchStore loadPrevious(String path) {
+            MatchStore previous;
+            try {
+                previous = MatchStore.read(path);
+            } catch (IOException e) {
+                System.err.println(
+                    "Ignoring unreadable " + path + ": " + e.getMessage()
+                );
+                return null;
+            }
+            if (
+                previous == null ||
+                !previous.isFreshFor(origin) ||
+                !previous.isExtendedBy(sub.graph(0))
+            ) {
+                return null;
+            }
+            return previous;
+        }
+
         public void vf2run(
             String f1,
             String f2,
@@ -1044,6 +939,35 @@ public class my_VF2 {
             mainWithSpecificGraphs(f1, f2, outputFile, rerun, arguments);
         }
 
+        public void vf2run(
+            GraphDatabase database,
+            String f2,
+            String outputFile,
+            boolean rerun,
+            Arguments arguments
+        ) {
+            if (!rerun && arguments != null) {
+                arguments.IDs = null;
+            }
+
+            if (
+                arguments != null &&
+                arguments.IDs != null &&
+                !arguments.IDs.isEmpty()
+            ) {
+                System.out.println(
+                    "VF2: Will only search through previously matched graphs"
+                );
+            } else if (rerun) {
+                System.out.println(
+                    "VF2: Rerun mode is enabled but no matching graph IDs were received"
+                );
+                System.out.println("VF2: Will search the entire database");
+            }
+
+            mainWithSpecificGraphs(database, f2, outputFile, rerun, arguments);
+        }
+
         public void vf2runOptimized(
             String f1,
             String f2,
@@ -1079,192 +1003,528 @@ public class my_VF2 {
         }
     }
 
-    public static List<Integer> extractGraphIDs(String filePath) {
-        List<Integer> graphIDs = new ArrayList<>();
+    /**
+     * Graphs of a database sorted by how often they contain one feature
+     * (a label, or the vertex count itself), most first. The graphs having
+     * at least k occurrences are therefore a prefix of the list.
+     */
+    static class Postings {
 
-        try (
-            BufferedReader reader = new BufferedReader(
-                new FileReader(filePath),
-                16384
-            )
-        ) {
-            String line;
+        private final int[] graphs;
+        private final int[] counts;
 
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("[") && line.endsWith("]")) {
-                    String content = line.substring(1, line.length() - 1);
+        Postings(int[] graphs, int[] counts) {
+            this.graphs = graphs;
+            this.counts = counts;
+        }
 
-                    if (!content.contains(",") && !content.trim().isEmpty()) {
-                        try {
-                            int singleId = Integer.parseInt(content.trim());
-                            graphIDs.add(singleId);
-                        } catch (NumberFormatException e) {
-                            System.err.println(
-                                "VF2: Error parsing single ID: " + content
-                            );
-                        }
-                    } else if (content.contains(",")) {
-                        String[] idStrings = content.split(", ");
-                        for (String idString : idStrings) {
-                            try {
-                                graphIDs.add(Integer.parseInt(idString.trim()));
-                            } catch (NumberFormatException e) {
-                                System.err.println(
-                                    "VF2: Error parsing ID in array: " +
-                                    idString
-                                );
-                            }
-                        }
-                    }
-                    break;
+        /**
+         * Sort (graph, count) pairs by count descending, then graph id.
+         */
+        static Postings of(int[] graphs, int[] counts, int size) {
+            long[] packed = new long[size];
+            for (int i = 0; i < size; i++) {
+                packed[i] =
+                    ((long) (Integer.MAX_VALUE - counts[i]) << 32) | graphs[i];
+            }
+            Arrays.sort(packed);
+
+            int[] sortedGraphs = new int[size];
+            int[] sortedCounts = new int[size];
+            for (int i = 0; i < size; i++) {
+                sortedGraphs[i] = (int) packed[i];
+                sortedCounts[i] = Integer.MAX_VALUE - (int) (packed[i] >>> 32);
+            }
+            return new Postings(sortedGraphs, sortedCounts);
+        }
+
+        /**
+         * @return how many leading entries have a count of at least k
+         */
+        int prefix(int k) {
+            int lo = 0;
+            int hi = counts.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (counts[mid] >= k) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
                 }
             }
-        } catch (IOException e) {
-            System.err.println(
-                "VF2: Error reading VF2 results file: " + e.getMessage()
-            );
+            return lo;
+        }
+
+        void retain(BitSet candidates, int length) {
+            BitSet hits = new BitSet();
+            for (int i = 0; i < length; i++) {
+                hits.set(graphs[i]);
+            }
+            candidates.and(hits);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(graphs.length);
+            for (int graph : graphs) {
+                out.writeInt(graph);
+            }
+            for (int count : counts) {
+                out.writeInt(count);
+            }
+        }
+
+        static Postings read(ByteBuffer in) {
+            int size = in.getInt();
+            int[] graphs = new int[size];
+            int[] counts = new int[size];
+            in.asIntBuffer().get(graphs).get(counts);
+            in.position(in.position() + 8 * size);
+            return new Postings(graphs, counts);
         }
-        return graphIDs;
     }
 
+    /**
+     * Inverted index from (feature, minimum count) to the graphs of a
+     * database, used to pick VF2 candidates without visiting every graph.
+     * Features are vertex labels, edge labels and labeled edge triples
+     * (smaller vertex label, edge label, larger vertex label); the triples
+     * separate molecules far better than labels alone, since nearly every
+     * graph has carbons and single bonds. Graph ids are offsets into the
+     * GraphDatabase.
+     */
     static class GraphIndex {
 
-        private Map<String, Set<Integer>> nodeLabelIndex = new HashMap<>();
-        private Map<String, Set<Integer>> edgeLabelIndex = new HashMap<>();
-        private Map<Integer, Map<String, Integer>> graphNodeCounts =
-            new HashMap<>();
-        private Map<Integer, Map<String, Integer>> graphEdgeCounts =
+        private static final int MAGIC = 0x47494458; // "GIDX"
+        private static final int VERSION = 2;
+
+        private long sourceLength;
+        private long sourceModified;
+        private int graphCount;
+        private Postings bySize;
+        private Map<Integer, Postings> nodeLabelIndex = new HashMap<>();
+        private Map<Integer, Postings> edgeLabelIndex = new HashMap<>();
+        private Map<Integer, Map<Long, Postings>> edgeTripleIndex =
             new HashMap<>();
 
-        public void addGraph(
-            int graphId,
-            Map<Integer, String> vertices,
-            Map<String, String> edges
-        ) {
-            Map<String, Integer> nodeCounts = new HashMap<>();
-            for (String label : vertices.values()) {
-                nodeLabelIndex
-                    .computeIfAbsent(label, k -> new HashSet<>())
-                    .add(graphId);
-                nodeCounts.put(label, nodeCounts.getOrDefault(label, 0) + 1);
-            }
-            graphNodeCounts.put(graphId, nodeCounts);
-
-            Map<String, Integer> edgeCounts = new HashMap<>();
-            for (String label : edges.values()) {
-                edgeLabelIndex
-                    .computeIfAbsent(label, k -> new HashSet<>())
-                    .add(graphId);
-                edgeCounts.put(label, edgeCounts.getOrDefault(label, 0) + 1);
-            }
-            graphEdgeCounts.put(graphId, edgeCounts);
+        static GraphIndex build(GraphDatabase database) {
+            GraphIndex index = new GraphIndex();
+            index.sourceLength = database.getLength();
+            index.sourceModified = database.getLastModified();
+            index.graphCount = database.size();
+
+            int[] allGraphs = new int[index.graphCount];
+            int[] sizes = new int[index.graphCount];
+            Map<Integer, int[][]> nodeLists = new HashMap<>();
+            Map<Integer, int[][]> edgeLists = new HashMap<>();
+            Map<Integer, Map<Long, int[][]>> tripleLists = new HashMap<>();
+
+            for (int i = 0; i < index.graphCount; i++) {
+                CSRGraph graph = database.graph(i);
+                allGraphs[i] = i;
+                sizes[i] = graph.size();
+                addCounts(nodeLists, i, labelFrequency(graph, false));
+                addCounts(edgeLists, i, labelFrequency(graph, true));
+                for (Map.Entry<
+                    Integer,
+                    Map<Long, Integer>
+                > entry : tripleFrequency(graph).entrySet()) {
+                    Map<Long, int[][]> lists = tripleLists.computeIfAbsent(
+                        entry.getKey(),
+                        e -> new HashMap<>()
+                    );
+                    for (Map.Entry<Long, Integer> pair : entry
+                        .getValue()
+                        .entrySet()) {
+                        append(lists, pair.getKey(), i, pair.getValue());
+                    }
+                }
+            }
+
+            index.bySize = Postings.of(allGraphs, sizes, index.graphCount);
+            index.nodeLabelIndex = toPostings(nodeLists);
+            index.edgeLabelIndex = toPostings(edgeLists);
+            for (Map.Entry<
+                Integer,
+                Map<Long, int[][]>
+            > entry : tripleLists.entrySet()) {
+                index.edgeTripleIndex.put(
+                    entry.getKey(),
+                    toPostings(entry.getValue())
+                );
+            }
+            return index;
         }
 
-        public Set<Integer> getCandidateGraphs(
-            Map<String, Integer> queryNodeLabels,
-            Map<String, Integer> queryEdgeLabels
+        /**
+         * Count of every labeled edge triple of a graph: edge label to
+         * (smaller vertex label, larger vertex label) packed in a long.
+         */
+        static Map<Integer, Map<Long, Integer>> tripleFrequency(
+            CSRGraph graph
         ) {
-            Set<Integer> candidates = null;
-
-            for (Map.Entry<
-                String,
-                Integer
-            > entry : queryNodeLabels.entrySet()) {
-                String label = entry.getKey();
-                int requiredCount = entry.getValue();
-
-                Set<Integer> graphsWithLabel = nodeLabelIndex.get(label);
-                if (graphsWithLabel == null) {
-                    return new HashSet<>();
+            Map<Integer, Map<Long, Integer>> frequency = new HashMap<>();
+            for (int v = 0; v < graph.size(); v++) {
+                for (int s = graph.begin(v); s < graph.end(v); s++) {
+                    int w = graph.target(s);
+                    if (v > w) continue;
+                    int a = Math.min(graph.label(v), graph.label(w));
+                    int b = Math.max(graph.label(v), graph.label(w));
+                    frequency
+                        .computeIfAbsent(graph.edgeLabel(s), e -> new HashMap<>())
+                        .merge(((long) a << 32) | (b & 0xFFFFFFFFL), 1, Integer::sum);
                 }
+            }
+            return frequency;
+        }
 
-                Set<Integer> validGraphs = new HashSet<>();
-                for (Integer graphId : graphsWithLabel) {
-                    Map<String, Integer> graphCounts = graphNodeCounts.get(
-                        graphId
-                    );
-                    if (
-                        graphCounts != null &&
-                        graphCounts.getOrDefault(label, 0) >= requiredCount
-                    ) {
-                        validGraphs.add(graphId);
+        /**
+         * Distinct vertex (or edge) labels of a graph with their counts, as
+         * {labels, counts}.
+         */
+        static int[][] labelFrequency(CSRGraph graph, boolean edges) {
+            int[] labels = new int[edges ? graph.slotCount() : graph.size()];
+            int count = 0;
+            for (int v = 0; v < graph.size(); v++) {
+                if (!edges) {
+                    labels[count++] = graph.label(v);
+                    continue;
+                }
+                for (int s = graph.begin(v); s < graph.end(v); s++) {
+                    if (v <= graph.target(s)) {
+                        labels[count++] = graph.edgeLabel(s);
                     }
                 }
-
-                if (candidates == null) {
-                    candidates = validGraphs;
-                } else {
-                    candidates.retainAll(validGraphs);
+            }
+            Arrays.sort(labels, 0, count);
+
+            int[] distinct = new int[count];
+            int[] frequency = new int[count];
+            int k = 0;
+            for (int i = 0; i < count; i++) {
+                if (k == 0 || distinct[k - 1] != labels[i]) {
+                    distinct[k++] = labels[i];
                 }
+                frequency[k - 1]++;
+            }
+            return new int[][] {
+                Arrays.copyOf(distinct, k),
+                Arrays.copyOf(frequency, k),
+            };
+        }
 
-                if (candidates.isEmpty()) {
-                    return candidates;
-                }
+        /**
+         * Append one graph's counts to growable {graphs, counts, size}
+         * lists per label.
+         */
+        private static void addCounts(
+            Map<Integer, int[][]> lists,
+            int graphId,
+            int[][] frequency
+        ) {
+            for (int k = 0; k < frequency[0].length; k++) {
+                append(lists, frequency[0][k], graphId, frequency[1][k]);
+            }
+        }
+
+        private static <K> void append(
+            Map<K, int[][]> lists,
+            K key,
+            int graphId,
+            int count
+        ) {
+            int[][] list = lists.computeIfAbsent(key, l ->
+                new int[][] { new int[16], new int[16], new int[1] }
+            );
+            int size = list[2][0];
+            if (size == list[0].length) {
+                list[0] = Arrays.copyOf(list[0], size * 2);
+                list[1] = Arrays.copyOf(list[1], size * 2);
+            }
+            list[0][size] = graphId;
+            list[1][size] = count;
+            list[2][0] = size + 1;
+        }
+
+        private static <K> Map<K, Postings> toPostings(
+            Map<K, int[][]> lists
+        ) {
+            Map<K, Postings> postings = new HashMap<>();
+            for (Map.Entry<K, int[][]> entry : lists.entrySet()) {
+                int[][] list = entry.getValue();
+                postings.put(
+                    entry.getKey(),
+                    Postings.of(list[0], list[1], list[2][0])
+                );
+            }
+            return postings;
+        }
+
+        public boolean isFreshFor(GraphDatabase database) {
+            return (
+                sourceLength == database.getLength() &&
+                sourceModified == database.getLastModified() &&
+                graphCount == database.size()
+            );
+        }
+
+        /**
+         * Graphs with at least as many vertices as the query and at least
+         * as many vertices, edges and labeled edge triples of every kind as
+         * the query has.
+         */
+        public BitSet getCandidateGraphs(CSRGraph query) {
+            BitSet candidates = new BitSet(graphCount);
+            candidates.set(0, graphCount);
+
+            int[][] nodeLabels = labelFrequency(query, false);
+            int[][] edgeLabels = labelFrequency(query, true);
+
+            if (
+                !retain(candidates, nodeLabelIndex, nodeLabels) ||
+                !retain(candidates, edgeLabelIndex, edgeLabels) ||
+                !retainTriples(candidates, tripleFrequency(query))
+            ) {
+                return new BitSet();
             }
+            bySize.retain(candidates, bySize.prefix(query.size()));
+            return candidates;
+        }
 
-            if (candidates == null) {
-                candidates = new HashSet<>();
+        /**
+         * Intersect the candidates with the qualifying prefix of every
+         * required label, shortest prefix first.
+         *
+         * @return false when some label cannot be satisfied at all
+         */
+        private boolean retain(
+            BitSet candidates,
+            Map<Integer, Postings> index,
+            int[][] required
+        ) {
+            int features = required[0].length;
+            long[] order = new long[features];
+            for (int k = 0; k < features; k++) {
+                Postings postings = index.get(required[0][k]);
+                if (postings == null) {
+                    return false;
+                }
+                order[k] = ((long) postings.prefix(required[1][k]) << 32) | k;
+            }
+            Arrays.sort(order);
 
-                candidates.addAll(graphNodeCounts.keySet());
+            for (long entry : order) {
+                int length = (int) (entry >>> 32);
+                if (length == 0) {
+                    return false;
+                }
+                index.get(required[0][(int) entry]).retain(candidates, length);
+                if (candidates.isEmpty()) {
+                    return false;
+                }
             }
+            return true;
+        }
 
+        private boolean retainTriples(
+            BitSet candidates,
+            Map<Integer, Map<Long, Integer>> required
+        ) {
             for (Map.Entry<
-                String,
-                Integer
-            > entry : queryEdgeLabels.entrySet()) {
-                String label = entry.getKey();
-                int requiredCount = entry.getValue();
-
-                Set<Integer> graphsWithLabel = edgeLabelIndex.get(label);
-                if (graphsWithLabel == null) {
-                    return new HashSet<>();
+                Integer,
+                Map<Long, Integer>
+            > entry : required.entrySet()) {
+                Map<Long, Postings> section = edgeTripleIndex.get(
+                    entry.getKey()
+                );
+                if (section == null) {
+                    return false;
+                }
+                for (Map.Entry<Long, Integer> pair : entry
+                    .getValue()
+                    .entrySet()) {
+                    Postings postings = section.get(pair.getKey());
+                    int length = postings == null
+                        ? 0
+                        : postings.prefix(pair.getValue());
+                    if (length == 0) {
+                        return false;
+                    }
+                    postings.retain(candidates, length);
+                    if (candidates.isEmpty()) {
+                        return false;
+                    }
                 }
+            }
+            return true;
+        }
 
-                Set<Integer> validGraphs = new HashSet<>();
-                for (Integer graphId : graphsWithLabel) {
-                    Map<String, Integer> graphCounts = graphEdgeCounts.get(
-                        graphId
-                    );
-                    if (
-                        graphCounts != null &&
-                        graphCounts.getOrDefault(label, 0) >= requiredCount
-                    ) {
-                        validGraphs.add(graphId);
+        void write(String indexFile) throws IOException {
+            File target = new File(indexFile);
+            File temp = new File(indexFile + ".tmp" + System.nanoTime());
+            try (
+                DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(
+                        new FileOutputStream(temp),
+                        1 << 16
+                    )
+                )
+            ) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(sourceLength);
+                out.writeLong(sourceModified);
+                out.writeInt(graphCount);
+                bySize.write(out);
+                writeSection(out, nodeLabelIndex);
+                writeSection(out, edgeLabelIndex);
+                out.writeInt(edgeTripleIndex.size());
+                for (Map.Entry<
+                    Integer,
+                    Map<Long, Postings>
+                > entry : edgeTripleIndex.entrySet()) {
+                    out.writeInt(entry.getKey());
+                    out.writeInt(entry.getValue().size());
+                    for (Map.Entry<Long, Postings> pair : entry
+                        .getValue()
+                        .entrySet()) {
+                        out.writeLong(pair.getKey());
+                        pair.getValue().write(out);
                     }
                 }
+            } catch (IOException e) {
+                temp.delete();
+                throw e;
+            }
+            Files.move(
+                temp.toPath(),
+                target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING
+            );
+        }
 
-                candidates.retainAll(validGraphs);
+        private static void writeSection(
+            DataOutputStream out,
+            Map<Integer, Postings> section
+        ) throws IOException {
+            out.writeInt(section.size());
+            for (Map.Entry<Integer, Postings> entry : section.entrySet()) {
+                out.writeInt(entry.getKey());
+                entry.getValue().write(out);
+            }
+        }
 
-                if (candidates.isEmpty()) {
-                    return candidates;
+        /**
+         * @return the index stored in indexFile, or null when the file is
+         *         missing or has another format
+         */
+        static GraphIndex read(String indexFile) throws IOException {
+            File file = new File(indexFile);
+            if (!file.exists()) {
+                return null;
+            }
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            try {
+                if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                    return null;
+                }
+                GraphIndex index = new GraphIndex();
+                index.sourceLength = in.getLong();
+                index.sourceModified = in.getLong();
+                index.graphCount = in.getInt();
+                index.bySize = Postings.read(in);
+                index.nodeLabelIndex = readSection(in);
+                index.edgeLabelIndex = readSection(in);
+                int edgeLabels = in.getInt();
+                for (int i = 0; i < edgeLabels; i++) {
+                    int edgeLabel = in.getInt();
+                    int pairs = in.getInt();
+                    Map<Long, Postings> section = new HashMap<>();
+                    for (int k = 0; k < pairs; k++) {
+                        long pair = in.getLong();
+                        section.put(pair, Postings.read(in));
+                    }
+                    index.edgeTripleIndex.put(edgeLabel, section);
                 }
+                return index;
+            } catch (BufferUnderflowException e) {
+                return null;
             }
+        }
 
-            return candidates;
+        private static Map<Integer, Postings> readSection(ByteBuffer in) {
+            int size = in.getInt();
+            Map<Integer, Postings> section = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                int key = in.getInt();
+                section.put(key, Postings.read(in));
+            }
+            return section;
         }
     }
 
     static class GraphIndexer {
 
+        public static final String EXTENSION = ".index";
+
+        private static final Map<GraphDatabase, GraphIndex> loaded =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
         public static void buildIndex(String graphFile, String indexFile) {
             System.out.println("Building graph index...");
-            GraphSet graphSet = new GraphSet(graphFile);
-            GraphIndex index = new GraphIndex();
-
-            int graphCount = graphSet.graphSet().size();
-            for (int i = 0; i < graphCount; i++) {
-                Map<Integer, String> vertices = graphSet.curVSet(i);
-                Map<String, String> edges = graphSet.curESet(i);
-                index.addGraph(i, vertices, edges);
+            try {
+                GraphDatabase database = GraphDatabase.load(graphFile);
+                GraphIndex index = GraphIndex.build(database);
+                index.write(indexFile);
+                System.out.println(
+                    "Graph index built with " + database.size() + " graphs"
+                );
+            } catch (IOException e) {
+                System.err.println("Error building graph index: " + e.getMessage());
             }
-
-            System.out.println(
-                "Graph index built with " + graphCount + " graphs"
-            );
         }
 
         public static GraphIndex loadIndex(String indexFile) {
-            return null;
+            try {
+                return GraphIndex.read(indexFile);
+            } catch (IOException e) {
+                System.err.println("Error loading graph index: " + e.getMessage());
+                return null;
+            }
+        }
+
+        /**
+         * Index of a database: kept per database instance, read from
+         * "<database>.index" when that file is current, and otherwise built
+         * and written there once.
+         */
+        public static GraphIndex forDatabase(GraphDatabase database) {
+            synchronized (loaded) {
+                GraphIndex index = loaded.get(database);
+                if (index != null) {
+                    return index;
+                }
+
+                String indexFile = database.getPath() + EXTENSION;
+                index = loadIndex(indexFile);
+                if (index == null || !index.isFreshFor(database)) {
+                    long start = System.currentTimeMillis();
+                    index = GraphIndex.build(database);
+                    try {
+                        index.write(indexFile);
+                    } catch (IOException e) {
+                        System.err.println(
+                            "Could not write " + indexFile + ": " + e.getMessage()
+                        );
+                    }
+                    System.out.println(
+                        "Graph index built in " +
+                        (System.currentTimeMillis() - start) +
+                        " ms"
+                    );
+                }
+                loaded.put(database, index);
+                return index;
+            }
         }
     }
 }
@@ -0,0 +1,318 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Immutable compressed-sparse-row form of a Graph.
+ *
+ * Adjacency of vertex v lives in the slots [begin(v), end(v)) of the
+ * targets / edgeLabels / edgeIds arrays, in the same order as the edge list
+ * of the equivalent Vertex, and edge ids follow Graph.buildEdge(). This keeps
+ * a database graph in five int arrays instead of one object per edge.
+ */
+public final class CSRGraph {
+    private final int[] vertexLabels;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] edgeLabels;
+    private final int[] edgeIds;
+    private final int edgeSize;
+    private final boolean directed;
+    private byte parallelEdges; // 0 unknown, 1 no, 2 yes
+
+    public CSRGraph(int[] vertexLabels, int[] offsets, int[] targets, int[] edgeLabels, int[] edgeIds,
+            int edgeSize, boolean directed) {
+        this.vertexLabels = vertexLabels;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.edgeLabels = edgeLabels;
+        this.edgeIds = edgeIds;
+        this.edgeSize = edgeSize;
+        this.directed = directed;
+    }
+
+    /**
+     * Build the CSR form of an already finished graph (buildEdge() called).
+     */
+    public static CSRGraph of(Graph g) {
+        int n = g.size();
+        int[] labels = new int[n];
+        int[] offsets = new int[n + 1];
+        for (int v = 0; v < n; ++v) {
+            labels[v] = g.get(v).label;
+            offsets[v + 1] = offsets[v] + g.get(v).edge.size();
+        }
+
+        int[] targets = new int[offsets[n]];
+        int[] eLabels = new int[offsets[n]];
+        int[] ids = new int[offsets[n]];
+        int slot = 0;
+        for (int v = 0; v < n; ++v) {
+            for (Edge e : g.get(v).edge) {
+                targets[slot] = e.to;
+                eLabels[slot] = e.eLabel;
+                ids[slot] = e.id;
+                ++slot;
+            }
+        }
+
+        return new CSRGraph(labels, offsets, targets, eLabels, ids, g.edge_size, g.directed);
+    }
+
+    public int size() {
+        return vertexLabels.length;
+    }
+
+    public int edgeSize() {
+        return edgeSize;
+    }
+
+    public boolean isDirected() {
+        return directed;
+    }
+
+    public int label(int v) {
+        return vertexLabels[v];
+    }
+
+    public int begin(int v) {
+        return offsets[v];
+    }
+
+    public int end(int v) {
+        return offsets[v + 1];
+    }
+
+    public int degree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    /**
+     * Vertex whose row holds slot, found by binary search over the offsets.
+     */
+    public int source(int slot) {
+        int lo = 0, hi = size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (offsets[mid] <= slot) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    public int target(int slot) {
+        return targets[slot];
+    }
+
+    public int edgeLabel(int slot) {
+        return edgeLabels[slot];
+    }
+
+    public int edgeId(int slot) {
+        return edgeIds[slot];
+    }
+
+    /**
+     * Total number of adjacency slots (twice the edge count when undirected).
+     */
+    public int slotCount() {
+        return targets.length;
+    }
+
+    /**
+     * @return the first slot of from that points to to, or -1
+     */
+    public int findSlot(int from, int to) {
+        for (int s = offsets[from], end = offsets[from + 1]; s < end; ++s) {
+            if (targets[s] == to) return s;
+        }
+        return -1;
+    }
+
+    /**
+     * @return true when some vertex reaches the same neighbour through more
+     *         than one slot (edges that differ only in label); computed once
+     */
+    public boolean hasParallelEdges() {
+        if (parallelEdges == 0) {
+            int n = size();
+            int[] seen = new int[n];
+            boolean found = false;
+            for (int v = 0; v < n && !found; ++v) {
+                for (int s = offsets[v]; s < offsets[v + 1]; ++s) {
+                    if (seen[targets[s]] == v + 1) {
+                        found = true;
+                        break;
+                    }
+                    seen[targets[s]] = v + 1;
+                }
+            }
+            parallelEdges = (byte) (found ? 2 : 1);
+        }
+        return parallelEdges == 2;
+    }
+
+    public boolean hasEdge(int from, int to, int eLabel) {
+        for (int s = offsets[from], end = offsets[from + 1]; s < end; ++s) {
+            if (targets[s] == to && edgeLabels[s] == eLabel) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Count vertices carrying the given label.
+     */
+    public int countLabel(int label) {
+        int count = 0;
+        for (int l : vertexLabels) {
+            if (l == label) ++count;
+        }
+        return count;
+    }
+
+    /**
+     * Materialize a mutable Graph with identical vertex order, edge order and edge ids.
+     */
+    public Graph toGraph() {
+        Graph g = new Graph(directed);
+        g.ensureCapacity(size());
+        for (int v = 0; v < size(); ++v) {
+            Vertex vex = new Vertex();
+            vex.label = vertexLabels[v];
+            vex.edge.ensureCapacity(degree(v));
+            for (int s = offsets[v]; s < offsets[v + 1]; ++s) {
+                Edge e = new Edge();
+                e.from = v;
+                e.to = targets[s];
+                e.eLabel = edgeLabels[s];
+                e.id = edgeIds[s];
+                vex.edge.add(e);
+            }
+            g.add(vex);
+        }
+        g.edge_size = edgeSize;
+        return g;
+    }
+
+    /**
+     * Reusable accumulator that turns a stream of v/e records into a CSRGraph,
+     * following the same rules as Graph.read(): vertices are appended in order,
+     * an undirected edge is stored in both rows and an identical
+     * (from, to, eLabel) entry is only kept once.
+     */
+    public static final class Builder {
+        private final boolean directed;
+        private int[] labels = new int[64];
+        private int vertexCount = 0;
+        private int[] from = new int[64];
+        private int[] to = new int[64];
+        private int[] eLabel = new int[64];
+        private int edgeCount = 0;
+
+        public Builder(boolean directed) {
+            this.directed = directed;
+        }
+
+        public void clear() {
+            vertexCount = 0;
+            edgeCount = 0;
+        }
+
+        public boolean isEmpty() {
+            return vertexCount == 0;
+        }
+
+        public int vertexCount() {
+            return vertexCount;
+        }
+
+        public void addVertex(int label) {
+            if (vertexCount == labels.length) labels = Arrays.copyOf(labels, vertexCount * 2);
+            labels[vertexCount++] = label;
+        }
+
+        /**
+         * @return false when an endpoint has not been declared yet
+         */
+        public boolean addEdge(int f, int t, int l) {
+            if (f < 0 || t < 0 || f >= vertexCount || t >= vertexCount) return false;
+            if (edgeCount == from.length) {
+                from = Arrays.copyOf(from, edgeCount * 2);
+                to = Arrays.copyOf(to, edgeCount * 2);
+                eLabel = Arrays.copyOf(eLabel, edgeCount * 2);
+            }
+            from[edgeCount] = f;
+            to[edgeCount] = t;
+            eLabel[edgeCount] = l;
+            ++edgeCount;
+            return true;
+        }
+
+        public CSRGraph build() {
+            int n = vertexCount;
+            int[] offsets = new int[n + 1];
+            for (int i = 0; i < edgeCount; ++i) {
+                offsets[from[i] + 1]++;
+                if (!directed) offsets[to[i] + 1]++;
+            }
+            for (int v = 0; v < n; ++v) offsets[v + 1] += offsets[v];
+
+            int[] cursor = Arrays.copyOf(offsets, n);
+            int[] targets = new int[offsets[n]];
+            int[] eLabels = new int[offsets[n]];
+            for (int i = 0; i < edgeCount; ++i) {
+                cursor[from[i]] = place(offsets, cursor, targets, eLabels, from[i], to[i], eLabel[i]);
+                if (!directed) cursor[to[i]] = place(offsets, cursor, targets, eLabels, to[i], from[i], eLabel[i]);
+            }
+
+            // squeeze out the slots left empty by duplicates
+            int slotCount = 0;
+            int[] packed = new int[n + 1];
+            for (int v = 0; v < n; ++v) {
+                packed[v] = slotCount;
+                for (int s = offsets[v]; s < cursor[v]; ++s) {
+                    targets[slotCount] = targets[s];
+                    eLabels[slotCount] = eLabels[s];
+                    ++slotCount;
+                }
+            }
+            packed[n] = slotCount;
+            if (slotCount != targets.length) {
+                targets = Arrays.copyOf(targets, slotCount);
+                eLabels = Arrays.copyOf(eLabels, slotCount);
+            }
+
+            // same numbering as Graph.buildEdge(): first occurrence in row order wins
+            int[] ids = new int[slotCount];
+            int id = 0;
+            for (int v = 0; v < n; ++v) {
+                for (int s = packed[v]; s < packed[v + 1]; ++s) {
+                    int w = targets[s];
+                    if (directed || v <= w) {
+                        ids[s] = id++;
+                    } else {
+                        ids[s] = -1;
+                        for (int r = packed[w]; r < packed[w + 1]; ++r) {
+                            if (targets[r] == v && eLabels[r] == eLabels[s]) {
+                                ids[s] = ids[r];
+                                break;
+                            }
+                        }
+                        if (ids[s] == -1) ids[s] = id++;
+                    }
+                }
+            }
+
+            return new CSRGraph(Arrays.copyOf(labels, n), packed, targets, eLabels, ids, id, directed);
+        }
+
+        private static int place(int[] offsets, int[] cursor, int[] targets, int[] eLabels, int v, int w, int l) {
+            for (int s = offsets[v]; s < cursor[v]; ++s) {
+                if (targets[s] == w && eLabels[s] == l) return cursor[v];
+            }
+            targets[cursor[v]] = w;
+            eLabels[cursor[v]] = l;
+            return cursor[v] + 1;
+        }
+    }
+}
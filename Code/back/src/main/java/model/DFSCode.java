@@ -3,34 +3,14 @@ package model;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.Map;
-import java.util.HashMap;
 
 public class DFSCode extends ArrayList<DFS> {
     private static final long serialVersionUID = 1L;
     private ArrayList<Integer> rmPath;
     
-    // Add query graph node label protection
-    private static Map<Integer, Integer> queryNodeLabels = new HashMap<>();
-    
     public DFSCode() {
         rmPath = new ArrayList<>();
     }
-    
-    /**
-     * Set query graph node labels to protect original labels from being overwritten
-     */
-    public static void setQueryNodeLabels(Map<Integer, Integer> labels) {
-        queryNodeLabels.clear();
-        queryNodeLabels.putAll(labels);
-    }
-    
-    /**
-     * Clear query graph node label protection
-     */
-    public static void clearQueryNodeLabels() {
-        queryNodeLabels.clear();
-    }
 
     public void push(int from, int to, int fromLabel, int eLabel, int toLabel) {
         // Check for duplicate edges before adding DFS
@@ -56,6 +36,15 @@ public class DFSCode extends ArrayList<DFS> {
     }
 
     public void toGraph(Graph g) {
+        toGraph(g, null);
+    }
+
+    /**
+     * Build the graph of this code. Vertices whose label is not given by the
+     * code take the label of the same vertex in query (protecting the
+     * original query labels), or 0 beyond it.
+     */
+    public void toGraph(Graph g, Graph query) {
         g.clear();
 
         // First pass: determine the required size and initialize all nodes
@@ -82,8 +71,8 @@ public class DFSCode extends ArrayList<DFS> {
         for (int i = 0; i < g.size(); i++) {
             if (g.get(i).label == -1) {
                 // If this is a query graph node, use original label
-                if (queryNodeLabels.containsKey(i)) {
-                    g.get(i).label = queryNodeLabels.get(i);
+                if (query != null && i < query.size()) {
+                    g.get(i).label = query.get(i).label;
                 } else {
                     // For newly extended nodes, use default label 0
                     g.get(i).label = 0;
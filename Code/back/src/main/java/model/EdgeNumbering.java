@@ -0,0 +1,63 @@
+package model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Dense global numbering of the edges of a graph list: edge e of graph g is
+ * start(g) + e, where start is the prefix sum of edgeSize() over the
+ * graphs before g. Numbers run from 0 to size() - 1 without gaps, whatever
+ * the number of graphs or edges per graph.
+ */
+public final class EdgeNumbering {
+    private final int[] starts;
+
+    public EdgeNumbering(List<CSRGraph> graphs) {
+        starts = new int[graphs.size() + 1];
+        long total = 0;
+        for (int g = 0; g < graphs.size(); g++) {
+            total += graphs.get(g).edgeSize();
+            if (total > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("More than " + Integer.MAX_VALUE + " edges");
+            }
+            starts[g + 1] = (int) total;
+        }
+    }
+
+    /** Number of graphs numbered. */
+    public int graphCount() {
+        return starts.length - 1;
+    }
+
+    /** Total number of edges. */
+    public int size() {
+        return starts[starts.length - 1];
+    }
+
+    public int edge(int graph, int edgeId) {
+        return starts[graph] + edgeId;
+    }
+
+    /** First edge number of graph. */
+    public int start(int graph) {
+        return starts[graph];
+    }
+
+    /** One past the last edge number of graph. */
+    public int end(int graph) {
+        return starts[graph + 1];
+    }
+
+    /** Graph an edge number belongs to. */
+    public int graphOf(int edge) {
+        int i = Arrays.binarySearch(starts, edge);
+        if (i < 0) {
+            return -i - 2;
+        }
+        // skip graphs without edges that share this start
+        while (i + 1 < starts.length && starts[i + 1] == edge) {
+            i++;
+        }
+        return i;
+    }
+}
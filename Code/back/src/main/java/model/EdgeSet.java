@@ -0,0 +1,208 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Set of edge numbers (see EdgeNumbering) as a bitmap split into blocks of
+ * 4096 bits; blocks without members are not allocated, so a pattern that
+ * covers a few graphs costs a few blocks rather than one bit per database
+ * edge. Union, difference counts and range counts work a word at a time.
+ */
+public final class EdgeSet {
+    private static final int BLOCK_SHIFT = 12;
+    private static final int BLOCK_WORDS = 1 << (BLOCK_SHIFT - 6);
+    private static final long[][] NO_BLOCKS = new long[0][];
+
+    private long[][] blocks = NO_BLOCKS;
+    private int size = 0;
+
+    public EdgeSet() {
+    }
+
+    public EdgeSet(EdgeSet other) {
+        blocks = new long[other.blocks.length][];
+        for (int b = 0; b < blocks.length; b++) {
+            if (other.blocks[b] != null) {
+                blocks[b] = other.blocks[b].clone();
+            }
+        }
+        size = other.size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int edge) {
+        int b = edge >>> BLOCK_SHIFT;
+        if (b >= blocks.length || blocks[b] == null) {
+            return false;
+        }
+        return (blocks[b][(edge >>> 6) & (BLOCK_WORDS - 1)] & (1L << edge)) != 0;
+    }
+
+    /** @return true when edge was not in the set */
+    public boolean add(int edge) {
+        int b = edge >>> BLOCK_SHIFT;
+        if (b >= blocks.length) {
+            blocks = Arrays.copyOf(blocks, Math.max(b + 1, blocks.length * 2));
+        }
+        long[] block = blocks[b];
+        if (block == null) {
+            block = blocks[b] = new long[BLOCK_WORDS];
+        }
+        int w = (edge >>> 6) & (BLOCK_WORDS - 1);
+        long bit = 1L << edge;
+        if ((block[w] & bit) != 0) {
+            return false;
+        }
+        block[w] |= bit;
+        size++;
+        return true;
+    }
+
+    /** @return true when edge was in the set */
+    public boolean remove(int edge) {
+        int b = edge >>> BLOCK_SHIFT;
+        if (b >= blocks.length || blocks[b] == null) {
+            return false;
+        }
+        long[] block = blocks[b];
+        int w = (edge >>> 6) & (BLOCK_WORDS - 1);
+        long bit = 1L << edge;
+        if ((block[w] & bit) == 0) {
+            return false;
+        }
+        block[w] &= ~bit;
+        size--;
+        if (isEmpty(block)) {
+            blocks[b] = null;
+        }
+        return true;
+    }
+
+    public void clear() {
+        blocks = NO_BLOCKS;
+        size = 0;
+    }
+
+    /** Add every member of other. */
+    public void addAll(EdgeSet other) {
+        if (other.blocks.length > blocks.length) {
+            blocks = Arrays.copyOf(blocks, other.blocks.length);
+        }
+        for (int b = 0; b < other.blocks.length; b++) {
+            long[] from = other.blocks[b];
+            if (from == null) {
+                continue;
+            }
+            long[] to = blocks[b];
+            if (to == null) {
+                blocks[b] = from.clone();
+                size += count(from);
+                continue;
+            }
+            for (int w = 0; w < BLOCK_WORDS; w++) {
+                long added = from[w] & ~to[w];
+                if (added != 0) {
+                    to[w] |= added;
+                    size += Long.bitCount(added);
+                }
+            }
+        }
+    }
+
+    /** Number of members that are not in other, i.e. |this \ other|. */
+    public int countNotIn(EdgeSet other) {
+        int count = 0;
+        for (int b = 0; b < blocks.length; b++) {
+            long[] mine = blocks[b];
+            if (mine == null) {
+                continue;
+            }
+            long[] theirs = b < other.blocks.length ? other.blocks[b] : null;
+            if (theirs == null) {
+                count += count(mine);
+                continue;
+            }
+            for (int w = 0; w < BLOCK_WORDS; w++) {
+                count += Long.bitCount(mine[w] & ~theirs[w]);
+            }
+        }
+        return count;
+    }
+
+    /** Number of members in [from, to). */
+    public int count(int from, int to) {
+        int count = 0;
+        for (int e = from; e < to;) {
+            int b = e >>> BLOCK_SHIFT;
+            if (b >= blocks.length) {
+                break;
+            }
+            int blockEnd = Math.min(to, (b + 1) << BLOCK_SHIFT);
+            long[] block = blocks[b];
+            if (block == null) {
+                e = blockEnd;
+                continue;
+            }
+            while (e < blockEnd) {
+                int w = (e >>> 6) & (BLOCK_WORDS - 1);
+                long word = block[w] & (-1L << e);
+                int wordEnd = ((e >>> 6) + 1) << 6;
+                if (blockEnd < wordEnd) {
+                    word &= (1L << blockEnd) - 1;
+                }
+                count += Long.bitCount(word);
+                e = wordEnd;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the smallest member not below from, or -1; iterate with
+     *         for (int e = s.next(0); e >= 0; e = s.next(e + 1))
+     */
+    public int next(int from) {
+        if (from < 0) {
+            from = 0;
+        }
+        int w = (from >>> 6) & (BLOCK_WORDS - 1);
+        long mask = -1L << from;
+        for (int b = from >>> BLOCK_SHIFT; b < blocks.length; b++, w = 0, mask = -1L) {
+            long[] block = blocks[b];
+            if (block == null) {
+                continue;
+            }
+            for (; w < BLOCK_WORDS; w++, mask = -1L) {
+                long word = block[w] & mask;
+                if (word != 0) {
+                    return (b << BLOCK_SHIFT) + (w << 6) + Long.numberOfTrailingZeros(word);
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int count(long[] block) {
+        int count = 0;
+        for (long word : block) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    private static boolean isEmpty(long[] block) {
+        for (long word : block) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,170 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Embeddings grouped by the DFS edge that extends them.
+ *
+ * An extension (from, to, eLabel, toLabel) is packed into one long, 16 bits
+ * per field in that order, each stored as value + 1 so that -1 ("label not
+ * given") packs to 0. Label fields hold the {@link LabelRanks} rank of the
+ * label rather than the label, so any label values fit, and ranks order
+ * like labels. Unsigned order of keys is thus the lexicographic order of
+ * the fields, which is the order the nested TreeMaps of gSpan visited them
+ * in. Root edges, whose from and to are always 0 and 1, are keyed by
+ * {@link #rootKey}, which puts the from label in the from field instead.
+ *
+ * A field holds -1 to {@link #MAX_VALUE}; the miner keeps vertex indexes
+ * and ranks in that range, so keys are packed without checking them.
+ *
+ * Buckets live in an open addressing table of primitive keys; iteration via
+ * {@link #keys()} is in key order, independent of hashing. Every bucket is a
+ * child table of the same parent Projected.
+ */
+public class ExtensionBuckets {
+    private static final int FIELD_BITS = 16;
+    private static final int FIELD_MASK = (1 << FIELD_BITS) - 1;
+
+    /** Largest label rank or vertex index a key field holds. */
+    public static final int MAX_VALUE = FIELD_MASK - 1;
+
+    private final Projected parent;
+    private long[] keys = new long[8];
+    private Projected[] values = new Projected[8];
+    private int size = 0;
+    // index + 1 into keys, 0 for a free slot
+    private int[] slots = new int[16];
+
+    /** Buckets of root edges, whose embeddings have no parent. */
+    public ExtensionBuckets() {
+        this(null);
+    }
+
+    /** Buckets of the extensions of the embeddings in parent. */
+    public ExtensionBuckets(Projected parent) {
+        this.parent = parent;
+    }
+
+    public static long key(int from, int to, int eLabel, int toLabel) {
+        return (field(from) << 48) | (field(to) << 32) | (field(eLabel) << 16) | field(toLabel);
+    }
+
+    /** Key of the root edge (0, 1, fromLabel, eLabel, toLabel). */
+    public static long rootKey(int fromLabel, int eLabel, int toLabel) {
+        return key(fromLabel, 1, eLabel, toLabel);
+    }
+
+    private static long field(int value) {
+        return value + 1;
+    }
+
+    public static int from(long key) {
+        return (int) (key >>> 48 & FIELD_MASK) - 1;
+    }
+
+    /** From label of a {@link #rootKey}. */
+    public static int fromLabel(long key) {
+        return from(key);
+    }
+
+    public static int to(long key) {
+        return (int) (key >>> 32 & FIELD_MASK) - 1;
+    }
+
+    public static int eLabel(long key) {
+        return (int) (key >>> 16 & FIELD_MASK) - 1;
+    }
+
+    public static int toLabel(long key) {
+        return (int) (key & FIELD_MASK) - 1;
+    }
+
+    /** The bucket of key, created empty if there is none yet. */
+    public Projected get(long key) {
+        int mask = slots.length - 1;
+        int slot = hash(key) & mask;
+        for (int index; (index = slots[slot]) != 0; slot = (slot + 1) & mask) {
+            if (keys[index - 1] == key) {
+                return values[index - 1];
+            }
+        }
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        Projected projected = new Projected(parent);
+        keys[size] = key;
+        values[size] = projected;
+        slots[slot] = ++size;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return projected;
+    }
+
+    /** The bucket of key, or null. */
+    public Projected find(long key) {
+        int mask = slots.length - 1;
+        for (int slot = hash(key) & mask, index; (index = slots[slot]) != 0; slot = (slot + 1) & mask) {
+            if (keys[index - 1] == key) {
+                return values[index - 1];
+            }
+        }
+        return null;
+    }
+
+    public void push(long key, int id, int slot, int parentRow) {
+        get(key).push(id, slot, parentRow);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** The keys in ascending order. */
+    public long[] keys() {
+        long[] sorted = Arrays.copyOf(keys, size);
+        // flip the sign bit so that a signed sort orders them unsigned
+        for (int i = 0; i < size; i++) {
+            sorted[i] ^= Long.MIN_VALUE;
+        }
+        Arrays.sort(sorted);
+        for (int i = 0; i < size; i++) {
+            sorted[i] ^= Long.MIN_VALUE;
+        }
+        return sorted;
+    }
+
+    /** The smallest key; the table must not be empty. */
+    public long firstKey() {
+        long first = keys[0];
+        for (int i = 1; i < size; i++) {
+            if (Long.compareUnsigned(keys[i], first) < 0) {
+                first = keys[i];
+            }
+        }
+        return first;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = hash(keys[i]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = i + 1;
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
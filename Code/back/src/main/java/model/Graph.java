@@ -4,7 +4,7 @@ import java.io.BufferedReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.NavigableMap;
 import java.util.NavigableSet;
@@ -66,41 +66,25 @@ public class Graph extends ArrayList<Vertex> {
     }
 
     public BufferedReader read(BufferedReader is) throws IOException {
-        ArrayList<String> result = new ArrayList<>();
+        GraphTextParser parser = new GraphTextParser();
         String line;
 
         clear();
 
         while ((line = is.readLine()) != null) {
-            result.clear();
-            String[] splitRead = line.split(" ");
-            Collections.addAll(result, splitRead);
-
-            if (!result.isEmpty()) {
-                if (result.get(0).equals("t")) {
-                    if (!this.isEmpty()) { // use as delimiter
-                        break;
-                    }
-                } else if (result.get(0).equals("v") && result.size() >= 3) {
-                    // int id = Integer.parseInt(result.get(1));
-                    Vertex vex = new Vertex();
-                    vex.label = Integer.parseInt(result.get(2));
-                    this.add(vex);
-                } else if (result.get(0).equals("e") && result.size() >= 4) {
-                    int from = Integer.parseInt(result.get(1));
-                    int to = Integer.parseInt(result.get(2));
-                    int eLabel = Integer.parseInt(result.get(3));
-
-                    if (this.size() <= from || this.size() <= to) {
-                        System.out.println("Format Error:  define vertex lists before edges");
-                        return null;
-                    }
-
-                    this.get(from).push(from, to, eLabel);
-
-                    if (!directed) {
-                        this.get(to).push(to, from, eLabel);
-                    }
+            char kind = parser.line(line);
+            if (kind == 't') {
+                if (!this.isEmpty()) { // use as delimiter
+                    break;
+                }
+            } else if (kind == 'v' && parser.fieldCount() >= 2) {
+                Vertex vex = new Vertex();
+                vex.label = parser.intField(1);
+                this.add(vex);
+            } else if (kind == 'e' && parser.fieldCount() >= 3) {
+                if (!pushEdge(parser.intField(0), parser.intField(1), parser.intField(2))) {
+                    System.out.println("Format Error:  define vertex lists before edges");
+                    return null;
                 }
             }
         }
@@ -110,48 +94,27 @@ public class Graph extends ArrayList<Vertex> {
         return is;
     }
     public BufferedReader read_spcificnum(BufferedReader is, List<Integer> numSet) throws IOException {
-        ArrayList<String> result = new ArrayList<>();
+        GraphTextParser parser = new GraphTextParser();
         String line;
         boolean readGraph = false;
     
         clear();
     
         while ((line = is.readLine()) != null) {
-            result.clear();
-            String[] splitRead = line.split(" ");
-            Collections.addAll(result, splitRead);
-    
-            if (!result.isEmpty()) {
-                if (result.get(0).equals("t")) {
-                    if (!this.isEmpty() && readGraph) { // use as delimiter
-                        break;
-                    }
-                    readGraph = false;
-                    if (result.size() >= 3) {
-                        int graphId = Integer.parseInt(result.get(2));
-                        if (numSet.contains(graphId)) {
-                            readGraph = true;
-                        }
-                    }
-                } else if (readGraph && result.get(0).equals("v") && result.size() >= 3) {
-                    Vertex vex = new Vertex();
-                    vex.label = Integer.parseInt(result.get(2));
-                    this.add(vex);
-                } else if (readGraph && result.get(0).equals("e") && result.size() >= 4) {
-                    int from = Integer.parseInt(result.get(1));
-                    int to = Integer.parseInt(result.get(2));
-                    int eLabel = Integer.parseInt(result.get(3));
-    
-                    if (this.size() <= from || this.size() <= to) {
-                        System.out.println("Format Error: define vertex lists before edges");
-                        return null;
-                    }
-    
-                    this.get(from).push(from, to, eLabel);
-    
-                    if (!directed) {
-                        this.get(to).push(to, from, eLabel);
-                    }
+            char kind = parser.line(line);
+            if (kind == 't') {
+                if (!this.isEmpty() && readGraph) { // use as delimiter
+                    break;
+                }
+                readGraph = parser.fieldCount() >= 1 && numSet.contains(parser.intField(0));
+            } else if (readGraph && kind == 'v' && parser.fieldCount() >= 2) {
+                Vertex vex = new Vertex();
+                vex.label = parser.intField(1);
+                this.add(vex);
+            } else if (readGraph && kind == 'e' && parser.fieldCount() >= 3) {
+                if (!pushEdge(parser.intField(0), parser.intField(1), parser.intField(2))) {
+                    System.out.println("Format Error: define vertex lists before edges");
+                    return null;
                 }
             }
         }
@@ -163,59 +126,39 @@ public class Graph extends ArrayList<Vertex> {
         return is;
     }
 
+    /**
+     * Read the next graph and report whether its id is in gl, which must be
+     * sorted (see Arguments.setIDs).
+     */
     public ReadResult readspnum(BufferedReader is, long[] gl) throws IOException {
-        ArrayList<String> result = new ArrayList<>();
+        GraphTextParser parser = new GraphTextParser();
         String line;
         boolean valid = false;
 
         clear();
 
         while ((line = is.readLine()) != null) {
-            result.clear();
-            String[] splitRead = line.split(" ");
-            Collections.addAll(result, splitRead);
+            char kind = parser.line(line);
 
-            if (line.trim().isEmpty()) { // If empty line is read, stop reading
+            if (kind == 0 && isBlank(line)) { // If empty line is read, stop reading
                 break;
             }
 
-            if (!result.isEmpty()) {
-                if (result.get(0).equals("t")) {
-
-                    if (!this.isEmpty()) { // use as delimiter
-                        break;
-                    }
-                    else {
-                        if (result.size() >= 3) {
-                            long thirdChar = Long.parseLong(result.get(2));
-                            for (long num : gl) {
-                                if (num == thirdChar) {
-                                    valid = true;
-                                    break;
-                                }
-                            }
-                        }
-                    }
-                } else if (result.get(0).equals("v") && result.size() >= 3) {
-                    // int id = Integer.parseInt(result.get(1));
-                    Vertex vex = new Vertex();
-                    vex.label = Integer.parseInt(result.get(2));
-                    this.add(vex);
-                } else if (result.get(0).equals("e") && result.size() >= 4) {
-                    int from = Integer.parseInt(result.get(1));
-                    int to = Integer.parseInt(result.get(2));
-                    int eLabel = Integer.parseInt(result.get(3));
-
-                    if (this.size() <= from || this.size() <= to) {
-                        System.out.println("Format Error:  define vertex lists before edges");
-                        return null;
-                    }
-
-                    this.get(from).push(from, to, eLabel);
-
-                    if (!directed) {
-                        this.get(to).push(to, from, eLabel);
-                    }
+            if (kind == 't') {
+                if (!this.isEmpty()) { // use as delimiter
+                    break;
+                }
+                else if (parser.fieldCount() >= 1) {
+                    valid = Arrays.binarySearch(gl, parser.field(0)) >= 0;
+                }
+            } else if (kind == 'v' && parser.fieldCount() >= 2) {
+                Vertex vex = new Vertex();
+                vex.label = parser.intField(1);
+                this.add(vex);
+            } else if (kind == 'e' && parser.fieldCount() >= 3) {
+                if (!pushEdge(parser.intField(0), parser.intField(1), parser.intField(2))) {
+                    System.out.println("Format Error:  define vertex lists before edges");
+                    return null;
                 }
             }
         }
@@ -225,6 +168,29 @@ public class Graph extends ArrayList<Vertex> {
         return new ReadResult(is, valid);
     }
 
+    /**
+     * Store an edge in its row (and the reverse row when undirected).
+     *
+     * @return false when an endpoint has not been declared yet
+     */
+    private boolean pushEdge(int from, int to, int eLabel) {
+        if (from < 0 || to < 0 || this.size() <= from || this.size() <= to) return false;
+
+        this.get(from).push(from, to, eLabel);
+
+        if (!directed) {
+            this.get(to).push(to, from, eLabel);
+        }
+        return true;
+    }
+
+    private static boolean isBlank(String line) {
+        for (int i = 0; i < line.length(); ++i) {
+            if (line.charAt(i) > ' ') return false;
+        }
+        return true;
+    }
+
     public void write(FileWriter os) throws IOException {
         String buf;
         
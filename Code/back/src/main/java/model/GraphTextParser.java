@@ -0,0 +1,159 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Allocation-free tokenizer for the gSpan text format.
+ *
+ * Recognized records are "t # id ...", "v id label" and "e from to label";
+ * a header may also carry one leading word, as in "Final t # 3 * 0" lines of
+ * TED.txt. Numbers are accumulated straight from the input into a long[]
+ * field buffer, so no String or token array is created per line. Blank
+ * lines, '\r' and unknown records are skipped.
+ *
+ * The parser can either be pushed a whole file through {@link #parse} or be
+ * fed one line at a time through {@link #line} by BufferedReader callers.
+ */
+public final class GraphTextParser {
+
+    /** Graph id reported for a header line that has no id. */
+    public static final long NO_ID = Long.MIN_VALUE;
+
+    public interface Handler {
+        void graph(long id);
+
+        void vertex(int id, int label);
+
+        void edge(int from, int to, int eLabel);
+    }
+
+    private static final int MAX_FIELDS = 8;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final long[] fields = new long[MAX_FIELDS];
+    private int fieldCount;
+    private int tokenCount;
+    private char kind;
+    private int tokenLength;
+    private int firstByte;
+    private boolean numeric;
+    private boolean negative;
+    private long value;
+
+    /**
+     * Stream a whole file through the handler.
+     */
+    public static void parse(String path, Handler handler) throws IOException {
+        GraphTextParser parser = new GraphTextParser();
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            byte[] bytes = buffer.array();
+            int n;
+            while ((n = channel.read(buffer)) != -1) {
+                for (int i = 0; i < n; ++i) {
+                    if (parser.step(bytes[i])) parser.dispatch(handler);
+                }
+                buffer.clear();
+            }
+        }
+        if (parser.step('\n')) parser.dispatch(handler);
+    }
+
+    /**
+     * Tokenize one line without a trailing newline.
+     *
+     * @return 't', 'v' or 'e' for a recognized record, 0 otherwise
+     */
+    public char line(CharSequence s) {
+        for (int i = 0, n = s.length(); i < n; ++i) step(s.charAt(i));
+        return step('\n') ? kind : 0;
+    }
+
+    /** Number of numeric fields on the last completed line. */
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    public long field(int i) {
+        return fields[i];
+    }
+
+    public int intField(int i) {
+        return (int) fields[i];
+    }
+
+    private void dispatch(Handler handler) {
+        switch (kind) {
+            case 't':
+                handler.graph(fieldCount > 0 ? fields[0] : NO_ID);
+                break;
+            case 'v':
+                if (fieldCount >= 2) handler.vertex((int) fields[0], (int) fields[1]);
+                break;
+            case 'e':
+                if (fieldCount >= 3) handler.edge((int) fields[0], (int) fields[1], (int) fields[2]);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Consume one character.
+     *
+     * @return true when it completed a t/v/e record; kind and fields then
+     *         describe that record until the next call
+     */
+    private boolean step(int c) {
+        if (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+            if (tokenLength > 0) endToken();
+            if (c != '\n') return false;
+
+            boolean complete = tokenCount > 0 && (kind == 't' || kind == 'v' || kind == 'e');
+            if (!complete) fieldCount = 0;
+            tokenCount = 0;
+            return complete;
+        }
+
+        if (tokenLength == 0) {
+            if (tokenCount == 0) {
+                kind = 0;
+                fieldCount = 0;
+            }
+            firstByte = c;
+            numeric = true;
+            negative = false;
+            value = 0;
+        }
+        ++tokenLength;
+
+        if (numeric) {
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+            } else if (c == '-' && tokenLength == 1) {
+                negative = true;
+            } else {
+                numeric = false;
+            }
+        }
+        return false;
+    }
+
+    private void endToken() {
+        if (tokenCount == 0) {
+            // a record letter, or a leading word such as "Final"
+            kind = tokenLength == 1 && (firstByte == 't' || firstByte == 'v' || firstByte == 'e')
+                ? (char) firstByte : '?';
+        } else if (tokenCount == 1 && kind == '?' && tokenLength == 1 && firstByte == 't') {
+            kind = 't';
+        } else if (numeric && !(negative && tokenLength == 1) && fieldCount < MAX_FIELDS) {
+            fields[fieldCount++] = negative ? -value : value;
+        }
+        ++tokenCount;
+        tokenLength = 0;
+    }
+}
@@ -1,55 +1,96 @@
 package model;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Vector;
-
-public class History extends ArrayList<Edge> {
-    private static final long serialVersionUID = 1L;
-    private Vector<Integer> edge;
-    private Vector<Integer> vertex;
-
-    public History(Graph g, PDFS p) {
-        edge = new Vector<>();
-        vertex = new Vector<>();
-        build(g, p);
-    }
+import java.util.Arrays;
+
+/**
+ * The edges of one embedding in DFS code order, as CSRGraph slots, with the
+ * graph edges and vertices it already uses as bitsets.
+ *
+ * A history is a reusable buffer owned by one thread: {@link #load} fills it
+ * from a row of a Projected table by following the parent rows, and clears
+ * only the bits the previous embedding set. Tables keep nothing but their
+ * slot and parent row columns, and loading a row allocates nothing once the
+ * buffer has grown to the largest graph and pattern.
+ */
+public class History {
+    private static final long[] NONE = new long[0];
+
+    private int[] slots = new int[8];
+    private int size = 0;
+    private long[] edge = NONE;
+    private long[] vertex = NONE;
+    // graph of the loaded embedding, to clear its bits on the next load
+    private CSRGraph graph = null;
 
-    private void build(Graph graph, PDFS e) {
-        // first build history
+    /**
+     * Replace the contents by the embedding in row of table, whose graph is
+     * graph.
+     *
+     * @return this history
+     */
+    public History load(CSRGraph graph, Projected table, int row) {
         clear();
-        edge.clear();
-        edge.setSize(graph.edge_size);
-        vertex.clear();
-        vertex.setSize(graph.size());
-
-        if (e != null) {
-            add(e.edge);
-            edge.set(e.edge.id, 1);
-            vertex.set(e.edge.from, 1);
-            vertex.set(e.edge.to, 1);
-
-            for (PDFS p = e.prev; p != null; p = p.prev) {
-                add(p.edge); // this line eats 8% of overall instructions(!)
-                edge.set(p.edge.id, 1);
-                vertex.set(p.edge.from, 1);
-                vertex.set(p.edge.to, 1);
-            }
-            Collections.reverse(this);
+        this.graph = graph;
+        edge = grow(edge, graph.edgeSize());
+        vertex = grow(vertex, graph.size());
+
+        int length = 0;
+        int r = row;
+        for (Projected t = table; t != null && r >= 0; ++length) {
+            r = t.parentRow(r);
+            t = t.parent();
+        }
+        if (slots.length < length) {
+            slots = new int[Math.max(length, slots.length * 2)];
         }
+        size = length;
+        for (int i = length - 1; i >= 0; --i) {
+            int slot = table.slot(row);
+            slots[i] = slot;
+            int id = graph.edgeId(slot);
+            int from = graph.source(slot);
+            int to = graph.target(slot);
+            edge[id >>> 6] |= 1L << id;
+            vertex[from >>> 6] |= 1L << from;
+            vertex[to >>> 6] |= 1L << to;
+            row = table.parentRow(row);
+            table = table.parent();
+        }
+        return this;
     }
 
-    public boolean hasEdge(int id) {
-        if (edge.get(id) != null) {
-            return edge.get(id) != 0;
+    private void clear() {
+        for (int i = 0; i < size; ++i) {
+            int slot = slots[i];
+            int id = graph.edgeId(slot);
+            int from = graph.source(slot);
+            int to = graph.target(slot);
+            edge[id >>> 6] &= ~(1L << id);
+            vertex[from >>> 6] &= ~(1L << from);
+            vertex[to >>> 6] &= ~(1L << to);
         }
-        return false;
+        size = 0;
+    }
+
+    private static long[] grow(long[] bits, int size) {
+        int words = (size + 63) >>> 6;
+        return bits.length < words ? Arrays.copyOf(bits, words) : bits;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Slot of the i-th DFS edge. */
+    public int get(int i) {
+        return slots[i];
+    }
+
+    public boolean hasEdge(int id) {
+        return (id >>> 6) < edge.length && (edge[id >>> 6] & (1L << id)) != 0;
     }
 
     public boolean hasVertex(int id) {
-        if (vertex.get(id) != null) {
-            return vertex.get(id) != 0;
-        }
-        return false;
+        return (id >>> 6) < vertex.length && (vertex[id >>> 6] & (1L << id)) != 0;
     }
 }
@@ -0,0 +1,80 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Dense ranks of the vertex and edge labels of one mining run.
+ *
+ * Label l gets its position among the distinct labels in ascending order,
+ * so ranks compare like the labels they stand for and fit the 16-bit fields
+ * of {@link ExtensionBuckets} whatever the label values are. -1 ("label not
+ * given") is its own rank.
+ */
+public final class LabelRanks {
+    private final int[] labels;
+    // rank of label min + i, for label ranges small enough to index directly
+    private final int[] dense;
+    private final int min;
+
+    private LabelRanks(int[] labels) {
+        this.labels = labels;
+        int n = labels.length;
+        long span = n == 0 ? 0 : (long) labels[n - 1] - labels[0] + 1;
+        if (n > 0 && span <= 4L * n + 1024) {
+            min = labels[0];
+            dense = new int[(int) span];
+            Arrays.fill(dense, -2);
+            for (int r = 0; r < n; ++r) dense[labels[r] - min] = r;
+        } else {
+            min = 0;
+            dense = null;
+        }
+    }
+
+    /**
+     * Rank the given labels, in any order and with duplicates.
+     *
+     * @throws IllegalArgumentException when there are more distinct labels
+     *         than a key field holds
+     */
+    public static LabelRanks of(int[] labels) {
+        int[] sorted = labels.clone();
+        Arrays.sort(sorted);
+        int n = 0;
+        for (int i = 0; i < sorted.length; ++i) {
+            if (sorted[i] != -1 && (n == 0 || sorted[i] != sorted[n - 1])) sorted[n++] = sorted[i];
+        }
+        if (n > ExtensionBuckets.MAX_VALUE + 1) {
+            throw new IllegalArgumentException(n + " distinct labels, at most " + (ExtensionBuckets.MAX_VALUE + 1)
+                    + " are supported");
+        }
+        return new LabelRanks(Arrays.copyOf(sorted, n));
+    }
+
+    /** Number of distinct labels, without -1. */
+    public int size() {
+        return labels.length;
+    }
+
+    /**
+     * @return the rank of label, -1 for -1
+     * @throws IllegalArgumentException for a label that was not ranked
+     */
+    public int rank(int label) {
+        if (label == -1) return -1;
+        int r;
+        if (dense != null) {
+            long i = (long) label - min;
+            r = i >= 0 && i < dense.length ? dense[(int) i] : -2;
+        } else {
+            r = Arrays.binarySearch(labels, label);
+        }
+        if (r < 0) throw new IllegalArgumentException("Label " + label + " was not ranked");
+        return r;
+    }
+
+    /** Label of rank, -1 for -1. */
+    public int label(int rank) {
+        return rank == -1 ? -1 : labels[rank];
+    }
+}
@@ -1,12 +1,69 @@
 package model;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
-public class Projected extends ArrayList<PDFS> {
-    private static final long serialVersionUID = 1L;
+/**
+ * Embeddings of one pattern as a columnar table.
+ *
+ * Row r holds the input graph id, the CSRGraph slot of the graph edge
+ * matched by the last DFS edge and the row in the parent table, i.e. the
+ * table of the pattern one edge smaller, of the embedding it extends. Rows
+ * of a table without a parent have parent row -1. A row costs three ints
+ * instead of an object per embedding, and sibling patterns share one parent
+ * table. The history of an embedding is not stored but loaded from these
+ * columns when needed, see {@link History#load}.
+ */
+public class Projected {
+    private final Projected parent;
+    private int[] ids = new int[8];
+    private int[] slots = new int[8];
+    private int[] parents = new int[8];
+    private int size = 0;
 
-    public void push(int id, Edge edge, PDFS prev) {
-        PDFS d = new PDFS(id, edge, prev);
-        this.add(d);
+    public Projected() {
+        this(null);
+    }
+
+    public Projected(Projected parent) {
+        this.parent = parent;
+    }
+
+    public void push(int id, int slot, int parentRow) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            slots = Arrays.copyOf(slots, size * 2);
+            parents = Arrays.copyOf(parents, size * 2);
+        }
+        ids[size] = id;
+        slots[size] = slot;
+        parents[size] = parentRow;
+        size++;
+    }
+
+    public Projected parent() {
+        return parent;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** ID of the original input graph of row. */
+    public int id(int row) {
+        return ids[row];
+    }
+
+    /** Slot of the graph edge matched by the last DFS edge in row. */
+    public int slot(int row) {
+        return slots[row];
+    }
+
+    /** Row in the parent table extended by row, or -1. */
+    public int parentRow(int row) {
+        return parents[row];
     }
 }
@@ -0,0 +1,35 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of CSRGraph slots, cleared and refilled by the extension
+ * scans of the miner instead of a list of Edge objects.
+ */
+public class SlotList {
+    private int[] slots = new int[16];
+    private int size = 0;
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void add(int slot) {
+        if (size == slots.length) {
+            slots = Arrays.copyOf(slots, size * 2);
+        }
+        slots[size++] = slot;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int get(int i) {
+        return slots[i];
+    }
+}